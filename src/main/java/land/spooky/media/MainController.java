@@ -1,10 +1,12 @@
 package land.spooky.media;
 
 import javafx.animation.*;
+import javafx.beans.binding.Bindings;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -20,15 +22,20 @@ import javafx.util.Duration;
 import land.spooky.media.controls.*;
 import land.spooky.media.models.MainModel;
 import land.spooky.media.models.MovieModel;
+import land.spooky.media.models.SortOrder;
+import land.spooky.media.models.TransferScheduler;
 
 import java.io.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * @author Daniel Gelber
  * @version 1.0
  * Created 2018-07-14
- * Last Modified 2018-07-19
+ * Last Modified 2026-10-18
  *
  * The main controller. Interfaces the GUI and the logic.
  */
@@ -42,7 +49,9 @@ public class MainController {
     @FXML private Label activeInfo;
     @FXML private Label activeDesc;
     @FXML private Label pageIndicator;
-    @FXML private ProgressBar progressBar;
+    @FXML private ListView<TransferScheduler.Transfer> transferList;
+    @FXML private Label importLabel;
+    @FXML private Label searchLabel;
     @FXML private SmoothButton playBtn;
     @FXML private SmoothButton downloadBtn;
     @FXML private SmoothButton deleteBtn;
@@ -52,7 +61,22 @@ public class MainController {
     @FXML private TextField searchBar;
     @FXML private VBox infoBox;
     @FXML private BorderPane contentArea;
+    @FXML private Menu genreMenu;
+    @FXML private Menu decadeMenu;
+    @FXML private Menu sortMenu;
     private MainModel model;
+    private MovieModel shownMovie;
+
+    /**
+     * Waits for a short pause in typing before searching, so a burst of keystrokes
+     * becomes one search.
+     */
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(200));
+
+    /**
+     * The title suggestions shown under the search bar.
+     */
+    private final ContextMenu suggestions = new ContextMenu();
 
 
     // METHODS
@@ -69,16 +93,6 @@ public class MainController {
      */
     private void downloadMovie() {
 
-        // If it's already downloading something, notify and exit
-        if (model.isDownloading()) {
-            Alert alert = new Alert(Alert.AlertType.WARNING);
-            alert.setTitle("Alert");
-            alert.setHeaderText(null);
-            alert.setContentText("Please wait until your current download is finished.");
-            alert.showAndWait();
-            return;
-        }
-
         // Pick directory
         DirectoryChooser dirChooser = new DirectoryChooser();
         dirChooser.setTitle("Where do you want to put it?");
@@ -86,7 +100,7 @@ public class MainController {
         if (dir == null)
             return;
 
-        // Download
+        // Download, it shows up in the list of transfers
         model.downloadMovie(dir.toString());
 
     }
@@ -116,21 +130,72 @@ public class MainController {
     }
 
     /**
-     * When the user types something in the search bar, if it's enter,
-     * then update the filter, clear the search bar, and refresh display.
-     * @param event
+     * When the user presses enter in the search bar, search right away instead of
+     * waiting for the pause in typing, and move on to the results. Escape closes the
+     * suggestions.
+     * @param event the key that was pressed.
      */
     private void searchBarUpdate(KeyEvent event) {
 
         if (event.getCode() == KeyCode.ENTER) {
-            model.setFilter(searchBar.getText());
-            searchBar.setText("");
-            updateMoviesDisplay("l");
+            searchDelay.stop();
+            suggestions.hide();
+            model.search(searchBar.getText(), () -> updateMoviesDisplay("l"));
             nextBtn.requestFocus();
+        } else if (event.getCode() == KeyCode.ESCAPE) {
+            suggestions.hide();
         }
 
     }
 
+    /**
+     * Called once the user stopped typing for a moment. Searches for what is in the
+     * search bar and looks for titles to suggest, both in the background.
+     */
+    private void liveSearch() {
+
+        String text = searchBar.getText();
+        if (!text.equals(model.getFilter()))
+            model.search(text, () -> updateMoviesDisplay("x"));
+        model.suggest(text, 8, this::showSuggestions);
+
+    }
+
+    /**
+     * Fills the dropdown under the search bar with suggested titles.
+     * @param movies the suggested movies.
+     */
+    private void showSuggestions(List<MovieModel> movies) {
+
+        suggestions.getItems().clear();
+        for (MovieModel movie : movies) {
+            MenuItem item = new MenuItem(movie.getTitle() + " (" + movie.getYear() + ")");
+            item.setOnAction(e -> pickSuggestion(movie));
+            suggestions.getItems().add(item);
+        }
+
+        if (movies.isEmpty() || !searchBar.isFocused())
+            suggestions.hide();
+        else if (!suggestions.isShowing())
+            suggestions.show(searchBar, Side.BOTTOM, 0, 0);
+
+    }
+
+    /**
+     * Shows a suggested movie on the info bar and searches for its title.
+     * @param movie the movie that was picked.
+     */
+    private void pickSuggestion(MovieModel movie) {
+
+        searchBar.setText(movie.getTitle());
+        searchDelay.stop();
+        suggestions.hide();
+        model.setActiveMovie(movie);
+        updateInfoPaneDisplay();
+        model.search(movie.getTitle(), () -> updateMoviesDisplay("x"));
+
+    }
+
     /**
      * Empty the search filter and update the display.
      */
@@ -138,10 +203,53 @@ public class MainController {
 
         model.setFilter("");
         searchBar.setText("");
+        searchDelay.stop();
+        suggestions.hide();
         updateMoviesDisplay("r");
 
     }
 
+    /**
+     * Fills the browse menus with every genre and decade in the catalog and how many
+     * movies each has. The counts are kept up to date by the catalog, so this is
+     * quick however many movies there are.
+     */
+    @FXML private void showFacets() {
+
+        genreMenu.getItems().clear();
+        for (Map.Entry<String, Integer> genre : model.getGenreCounts().entrySet())
+            genreMenu.getItems().add(facetItem(genre.getKey() + " (" + genre.getValue() + ")",
+                    "genre:" + genre.getKey().toLowerCase()));
+
+        decadeMenu.getItems().clear();
+        for (Map.Entry<Integer, Integer> decade : model.getDecadeCounts().entrySet())
+            decadeMenu.getItems().add(facetItem(decade.getKey() + "s (" + decade.getValue() + ")",
+                    "decade:" + decade.getKey()));
+
+        genreMenu.setDisable(genreMenu.getItems().isEmpty());
+        decadeMenu.setDisable(decadeMenu.getItems().isEmpty());
+
+    }
+
+    /**
+     * Makes a browse menu item that searches for a condition.
+     * @param text the text of the item.
+     * @param condition the condition, like genre:drama.
+     * @return the item.
+     */
+    private MenuItem facetItem(String text, String condition) {
+
+        MenuItem item = new MenuItem(text);
+        item.setOnAction(e -> {
+            searchBar.setText(condition);
+            searchDelay.stop();
+            suggestions.hide();
+            model.search(condition, () -> updateMoviesDisplay("x"));
+        });
+        return item;
+
+    }
+
     /**
      * If the user has a download in progress, make sure they want to close.
      * Otherwise, close the app.
@@ -153,13 +261,12 @@ public class MainController {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Confirmation Dialog");
             alert.setHeaderText(null);
-            alert.setContentText("A download is in progress. Are you sure you want to close?");
+            alert.setContentText("A download is in progress. It will carry on where it stopped the next time "
+                    + "the app is opened. Are you sure you want to close?");
 
             // If they hit ok, close. Otherwise cancel the close.
             Optional<ButtonType> result = alert.showAndWait();
-            if (result.get() != ButtonType.OK)
-                System.exit(0);
-            else
+            if (!result.isPresent() || result.get() != ButtonType.OK)
                 return;
         }
 
@@ -194,9 +301,30 @@ public class MainController {
 
     }
 
+    /**
+     * Ask the user for a page and jump straight to it, with an animation in the
+     * direction of the new page.
+     */
+    private void goToPage() {
+
+        TextInputDialog dialog = new TextInputDialog(Integer.toString(model.getPage()));
+        dialog.setTitle("Go to Page");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Page (1-" + model.getNumPages() + "):");
+        Optional<String> input = dialog.showAndWait();
+        if (!input.isPresent() || !input.get().trim().matches("\\d{1,9}"))
+            return;
+
+        int currentPage = model.getPage();
+        model.setPage(Integer.parseInt(input.get().trim()));
+        if (model.getPage() != currentPage)
+            updateMoviesDisplay(model.getPage() > currentPage ? "r" : "l");
+
+    }
+
     /**
      * Add a movie to the model given a certain output path and IMDb link.
-     * Update the display when done.
+     * The display updates on its own once the movie is in the catalog.
      * @param movie the file which is the movie
      */
     @FXML private void newMovie(File movie) {
@@ -209,9 +337,8 @@ public class MainController {
         if (!link.isPresent())
             return;
 
-        // Pull data and add to disk
+        // Pull data and add to disk in the background, the grid updates once it's in the catalog
         model.addMovie(movie.toString(), link.get());
-        updateMoviesDisplay("x");
 
     }
 
@@ -233,6 +360,40 @@ public class MainController {
 
     }
 
+    /**
+     * Imports every movie in a folder the user picks, looking each one up on IMDb by
+     * its file name.
+     * @param event unused.
+     */
+    @FXML private void importFolder(ActionEvent event) {
+
+        DirectoryChooser dirChooser = new DirectoryChooser();
+        dirChooser.setTitle("Choose a Folder of Movies");
+        File dir = dirChooser.showDialog(movieGrid.getScene().getWindow());
+        if (dir == null)
+            return;
+
+        model.addMovies(Collections.singletonList(dir));
+
+    }
+
+    /**
+     * Builds the offline IMDb index of the target directory from the dumps in a folder
+     * the user picks. The import report says when it is done, or why it couldn't start.
+     * @param event unused.
+     */
+    @FXML private void buildOfflineIndex(ActionEvent event) {
+
+        DirectoryChooser dirChooser = new DirectoryChooser();
+        dirChooser.setTitle("Choose the Folder of IMDb Dumps");
+        File dir = dirChooser.showDialog(movieGrid.getScene().getWindow());
+        if (dir == null)
+            return;
+
+        model.buildOfflineIndex(dir);
+
+    }
+
     /**
      * Changes the target directory from where the app gets the list of
      * movies to display. Updates the display after the change.
@@ -270,27 +431,85 @@ public class MainController {
         clearBtn.getButton().addEventHandler(MouseEvent.MOUSE_CLICKED, e -> clearSearch());
         searchBar.setOnKeyPressed(e -> searchBarUpdate(e));
 
+        // Search as the user types, once they pause
+        searchDelay.setOnFinished(e -> liveSearch());
+        searchBar.textProperty().addListener((o, oldVal, newVal) -> searchDelay.playFromStart());
+        searchBar.focusedProperty().addListener((o, oldVal, newVal) -> {
+            if (!newVal)
+                suggestions.hide();
+        });
+
+        // One choice in the sort menu per sort order
+        ToggleGroup sortGroup = new ToggleGroup();
+        for (SortOrder order : SortOrder.values()) {
+            RadioMenuItem item = new RadioMenuItem(order.getLabel());
+            item.setToggleGroup(sortGroup);
+            item.setSelected(order == model.getSortOrder());
+            item.setOnAction(e -> model.setSortOrder(order, () -> updateMoviesDisplay("x")));
+            sortMenu.getItems().add(item);
+        }
+
         // Fill the randomized default selected movie
         updateInfoPaneDisplay();
 
         // Fill the grid with selectable movies
         updateMoviesDisplay("x");
 
-        // Bind progress bar to the model
-        progressBar.progressProperty().bind(model.downloadProgressProperty());
-        model.downloadingProperty().addListener((o, oldVal, newVal) -> {
-            if (!newVal) {
-                Alert alert = new Alert(Alert.AlertType.INFORMATION);
-                alert.setTitle("Congratulations");
-                alert.setHeaderText(null);
-                alert.setContentText("Your download is complete.");
-                alert.showAndWait();
-            }
+        // Show the downloads, each with its progress and a cancel button
+        transferList.setItems(model.getTransfers());
+        transferList.setCellFactory(list -> new TransferCell());
+        transferList.visibleProperty().bind(Bindings.isNotEmpty(model.getTransfers()));
+        transferList.managedProperty().bind(transferList.visibleProperty());
+        model.transferReportProperty().addListener((o, oldVal, newVal) -> {
+            if (newVal.isEmpty())
+                return;
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Download Finished");
+            alert.setHeaderText(null);
+            alert.setContentText(newVal);
+            alert.show();
+        });
+
+        // Say so while the search indexes are being built
+        searchLabel.textProperty().bind(model.searchStatusProperty());
+        searchLabel.visibleProperty().bind(model.searchStatusProperty().isNotEmpty());
+        searchLabel.managedProperty().bind(searchLabel.visibleProperty());
+
+        // Show what the imports are doing under the progress bar
+        importLabel.textProperty().bind(model.importStatusProperty());
+        importLabel.visibleProperty().bind(model.importStatusProperty().isNotEmpty());
+
+        // Tell the user how a batch import went
+        model.importReportProperty().addListener((o, oldVal, newVal) -> {
+            if (newVal.isEmpty())
+                return;
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Import Finished");
+            alert.setHeaderText(null);
+            alert.setContentText(newVal);
+            alert.show();
+        });
+
+        // Tell the user about settings that were ignored, those of the first catalog
+        // were checked before this listener was there
+        model.settingsReportProperty().addListener((o, oldVal, newVal) -> {
+            if (!newVal.isEmpty())
+                showSettingsReport(newVal);
+        });
+        if (!model.settingsReportProperty().get().isEmpty())
+            showSettingsReport(model.settingsReportProperty().get());
+
+        // Refresh when the catalog changes on its own
+        model.catalogVersionProperty().addListener((o, oldVal, newVal) -> {
+            updateMoviesDisplay("x");
+            if (model.getActiveMovie() != shownMovie)
+                updateInfoPaneDisplay();
         });
 
         // Bind navigation buttons to this Controller
         prevBtn.getButton().setOnMousePressed(e -> prevPage());
         nextBtn.getButton().setOnMouseClicked(e -> nextPage());
+        pageIndicator.setOnMouseClicked(e -> goToPage());
         movieGrid.setOnKeyPressed(e -> {
             if (e.getCode() == KeyCode.LEFT)
                 prevPage();
@@ -302,8 +521,7 @@ public class MainController {
         // Dragging over the movie grid
         contentArea.setOnDragOver(event -> {
             if (event.getGestureSource() != movieGrid
-                    && event.getDragboard().hasFiles()
-                    && event.getDragboard().getFiles().size() == 1) {
+                    && event.getDragboard().hasFiles()) {
                 event.acceptTransferModes(TransferMode.COPY);
             }
             event.consume();
@@ -311,8 +529,7 @@ public class MainController {
 
         contentArea.setOnDragEntered(event -> {
             if (event.getGestureSource() != movieGrid
-                    && event.getDragboard().hasFiles()
-                    && event.getDragboard().getFiles().size() == 1) {
+                    && event.getDragboard().hasFiles()) {
                 Color vColor = new Color(0.0274, .5607, 0.7176, 1);
                 Border border = new Border(
                         new BorderStroke(vColor, BorderStrokeStyle.DASHED, new CornerRadii(50), new BorderWidths(10), new Insets(20)));
@@ -331,18 +548,35 @@ public class MainController {
             @Override
             public void handle(DragEvent event) {
                 Dragboard db = event.getDragboard();
-                boolean success = db.hasFiles() && db.getFiles().size() == 1;
+                boolean success = db.hasFiles();
                 event.setDropCompleted(success);
                 event.consume();
 
-                if (success) {
+                // A single movie asks for its IMDb link, folders and many files are
+                // looked up by their names
+                if (success && db.getFiles().size() == 1 && db.getFiles().get(0).isFile())
                     newMovie(db.getFiles().get(0));
-                }
+                else if (success)
+                    model.addMovies(db.getFiles());
             }
         });
 
     }
 
+    /**
+     * Warns that some of the settings given as system properties were ignored.
+     * @param report which settings and why.
+     */
+    private void showSettingsReport(String report) {
+
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Settings Ignored");
+        alert.setHeaderText(null);
+        alert.setContentText(report);
+        alert.show();
+
+    }
+
     /**
      * Reloads the info bar with the updated information from model. Also
      * contains the animations for the switch.
@@ -374,6 +608,7 @@ public class MainController {
         };
 
         // Change info
+        shownMovie = model.getActiveMovie();
         fadeOut.setOnFinished(e -> {
             MovieModel activeMovie = model.getActiveMovie();
             if (activeMovie != null) {
@@ -13,13 +13,18 @@ import javafx.stage.Stage;
  * @author Daniel Gelber
  * @version 1.0
  * Created 2018-07-14
- * Last Modified 2018-07-16
+ * Last Modified 2026-10-18
  *
  * This application is a media center for people to put their movies in.
  * It comes with built in tools to gather the data of movies from IMDb.
  */
 public class MediaCenter extends Application {
 
+	/**
+	 * When the JVM loaded this class, used to measure the time to the first frame.
+	 */
+	private static final long LAUNCH_TIME = System.nanoTime();
+
 	/**
 	 * Called when the application is launched, it loads all the fonts into memory.
 	 */
@@ -47,6 +52,7 @@ public class MediaCenter extends Application {
 			primaryStage.setScene(scene);
 			primaryStage.setMinWidth(1500);
 			primaryStage.setMinHeight(800);
+			measureFirstFrame(scene);
 			primaryStage.show();
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -54,6 +60,25 @@ public class MediaCenter extends Application {
 
 	}
 
+	/**
+	 * Prints how long it took from launch until the first frame of the scene was laid
+	 * out and ready to render. The listener removes itself after the first pulse.
+	 * @param scene the main scene.
+	 */
+	private void measureFirstFrame(Scene scene) {
+
+		Runnable listener = new Runnable() {
+			@Override
+			public void run() {
+				scene.removePostLayoutPulseListener(this);
+				long millis = (System.nanoTime() - LAUNCH_TIME) / 1000000;
+				System.out.println("Time to first frame: " + millis + " ms");
+			}
+		};
+		scene.addPostLayoutPulseListener(listener);
+
+	}
+
 	/**
 	 * Exit gracefully. Remove this method to get a stack trace in case
 	 * of modifications to the code.
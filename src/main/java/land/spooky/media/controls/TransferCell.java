@@ -0,0 +1,65 @@
+package land.spooky.media.controls;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import land.spooky.media.models.TransferScheduler;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * One row of the list of transfers: the name of the movie being copied, its progress,
+ * its speed and time left, and a button to cancel it. Right clicking a transfer that is
+ * still waiting can move it to the front of the queue.
+ */
+public class TransferCell extends ListCell<TransferScheduler.Transfer> {
+
+    private static final String DEFAULT_STYLE_CLASS = "transfer-cell";
+
+    private final HBox row = new HBox(10);
+    private final Label name = new Label();
+    private final ProgressBar progress = new ProgressBar();
+    private final Label status = new Label();
+    private final Button cancel = new Button("Cancel");
+    private final ContextMenu menu = new ContextMenu();
+    private final MenuItem next = new MenuItem("Copy Next");
+
+
+    public TransferCell() {
+
+        getStyleClass().add(DEFAULT_STYLE_CLASS);
+        row.setAlignment(Pos.CENTER_LEFT);
+        name.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(name, Priority.ALWAYS);
+        row.getChildren().addAll(name, progress, status, cancel);
+        menu.getItems().add(next);
+
+    }
+
+    @Override
+    protected void updateItem(TransferScheduler.Transfer transfer, boolean empty) {
+
+        super.updateItem(transfer, empty);
+        progress.progressProperty().unbind();
+        status.textProperty().unbind();
+        if (empty || transfer == null) {
+            setGraphic(null);
+            setContextMenu(null);
+            return;
+        }
+
+        name.setText(transfer.getTarget().getName());
+        progress.progressProperty().bind(transfer.progressProperty());
+        status.textProperty().bind(transfer.statusProperty());
+        cancel.setOnAction(e -> transfer.cancel());
+        next.setOnAction(e -> transfer.setPriority(TransferScheduler.Priority.HIGH));
+        setContextMenu(menu);
+        setGraphic(row);
+
+    }
+
+}
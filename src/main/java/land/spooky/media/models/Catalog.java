@@ -0,0 +1,799 @@
+package land.spooky.media.models;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * The in-memory catalog of every movie in the target directory. It is loaded once
+ * from the catalog index, and kept in sync with the disk by the MainModel whenever
+ * it adds or deletes a movie, so paging and filtering never touch the disk. Changes
+ * made outside the app are picked up by rescanning in the background and applying
+ * the report with apply(CatalogScanner.Report), or folder by folder with apply(Map)
+ * as they happen.
+ *
+ * Every movie gets an int id that stays the same while it is in the catalog. Indexes
+ * built on top of the catalog refer to movies by id and are told about every change
+ * through the Listener interface. Adding, replacing and removing a movie take the same
+ * time however big the catalog is.
+ *
+ * Saving copies the list of movies and hands it to a background thread, which writes
+ * the snapshot. Saves that come faster than they are written are coalesced, so a burst
+ * of changes writes the catalog once or twice instead of once per change.
+ */
+public final class Catalog {
+
+    /**
+     * Writes the snapshots of every catalog, one at a time.
+     */
+    private static final ExecutorService SAVER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "catalog-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static {
+        // The app exits with System.exit, give a save that is still waiting the time to finish
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            SAVER.shutdown();
+            try {
+                SAVER.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Exiting anyway
+            }
+        }, "catalog-save-flush"));
+    }
+
+    /**
+     * Gets told about every movie that is added to or removed from the catalog.
+     * Replacing a movie is a removal followed by an addition with the same id.
+     */
+    public interface Listener {
+
+        /**
+         * @param id the id of the new movie.
+         * @param movie the new movie.
+         */
+        void movieAdded(int id, MovieModel movie);
+
+        /**
+         * @param id the id the movie had.
+         * @param movie the removed movie.
+         */
+        void movieRemoved(int id, MovieModel movie);
+
+    }
+
+    /**
+     * The target directory this catalog describes, or null if there is none.
+     */
+    private final File directory;
+
+    /**
+     * Every movie, in the order they were added, except that the last movie takes the
+     * place of a removed one.
+     */
+    private final ArrayList<MovieModel> movies = new ArrayList<>();
+
+    /**
+     * The movie with each id. Removed movies leave a null behind until the id is reused.
+     */
+    private final ArrayList<MovieModel> byId = new ArrayList<>();
+
+    /**
+     * The position in movies of the movie with each id, or -1 for ids not in use.
+     */
+    private final IntList positions = new IntList();
+
+    /**
+     * Ids of removed movies, ready to be reused.
+     */
+    private final IntList freeIds = new IntList();
+
+    /**
+     * The id of each movie, looked up by the name of its folder.
+     */
+    private final HashMap<String, Integer> idByFolder = new HashMap<>();
+
+    private final List<Listener> listeners = new ArrayList<>();
+
+    /**
+     * The search indexes, built in the background by prepare.
+     */
+    private SearchIndex searchIndex;
+    private FuzzyIndex fuzzyIndex;
+    private PrefixIndex prefixIndex;
+    private CatalogColumns columns;
+    private ResultCache resultCache;
+
+    /**
+     * The sort orders, built in the background by prepare.
+     */
+    private SortIndex sortIndex;
+
+    /**
+     * The indexes being built in the background, or null if none are.
+     */
+    private Build build;
+
+    /**
+     * The sort orders saved with the snapshot the catalog was opened from, or null if
+     * there were none. Until the sort index is built they serve sorted pages, as long as
+     * the catalog is still the same as the snapshot.
+     */
+    private CatalogOrderFile orderFile;
+    private int orderFileVersion;
+
+    /**
+     * Goes up with every change, so a search that ran in the background can tell if
+     * its ids still mean the same movies.
+     */
+    private int version = 0;
+
+    /**
+     * The newest save that the saver hasn't started writing yet, or null if there is none.
+     */
+    private final AtomicReference<Save> pendingSave = new AtomicReference<>();
+
+
+    /**
+     * Makes an empty catalog.
+     * @param directory the target directory, or null if there is none.
+     */
+    public Catalog(File directory) {
+
+        this.directory = directory;
+
+    }
+
+    /**
+     * Opens the catalog of a target directory from its index. This never scans the
+     * directory, so it is fast enough to run before the first frame. If there is no
+     * index yet, the catalog starts empty and is filled in by the first scan.
+     * @param directory the target directory.
+     * @return the catalog.
+     */
+    public static Catalog open(File directory) {
+
+        Catalog catalog = new Catalog(directory);
+        List<MovieModel> movies = CatalogIndex.load(directory);
+        if (movies != null) {
+            for (MovieModel movie : movies)
+                catalog.put(movie);
+            // Opened from the snapshot, every id is the movie's record number
+            catalog.orderFile = CatalogOrderFile.load(directory, movies.size());
+            catalog.orderFileVersion = catalog.version;
+        }
+        return catalog;
+
+    }
+
+    /**
+     * Brings the catalog in line with a rescan of the target directory.
+     * @param report the change report of the rescan.
+     * @return true if anything changed.
+     */
+    public boolean apply(CatalogScanner.Report report) {
+
+        for (MovieModel movie : report.getAdded())
+            put(movie);
+        for (MovieModel movie : report.getModified())
+            put(movie);
+        for (String folder : report.getRemoved())
+            remove(folder);
+        return report.hasChanges();
+
+    }
+
+    /**
+     * Applies changes to a few folders, without looking at the rest of the catalog.
+     * @param changes the movie now in each changed folder, or null if it has none.
+     * @return true if anything changed.
+     */
+    public boolean apply(Map<String, MovieModel> changes) {
+
+        boolean changed = false;
+        for (Map.Entry<String, MovieModel> change : changes.entrySet()) {
+            MovieModel movie = change.getValue();
+            MovieModel known = get(change.getKey());
+            if (movie == null) {
+                changed |= remove(change.getKey()) != null;
+            } else if (known == null || known.getModified() != movie.getModified()
+                    || known.getSize() != movie.getSize()) {
+                put(movie);
+                changed = true;
+            }
+        }
+
+        return changed;
+
+    }
+
+    /**
+     * Adds a movie, replacing the movie that used the same folder if there was one.
+     * A replaced movie keeps its id.
+     * @param movie the movie, which must have a folder.
+     * @return the id of the movie.
+     */
+    public int put(MovieModel movie) {
+
+        Integer id = idByFolder.get(movie.getFolder());
+        if (id != null) {
+            MovieModel old = byId.get(id);
+            for (Listener listener : listeners)
+                listener.movieRemoved(id, old);
+            byId.set(id, movie);
+            movies.set(positions.get(id), movie);
+        } else {
+            if (freeIds.size() > 0) {
+                id = freeIds.removeAt(freeIds.size() - 1);
+                byId.set(id, movie);
+                positions.set(id, movies.size());
+            } else {
+                id = byId.size();
+                byId.add(movie);
+                positions.add(movies.size());
+            }
+            idByFolder.put(movie.getFolder(), id);
+            movies.add(movie);
+        }
+
+        version++;
+        for (Listener listener : listeners)
+            listener.movieAdded(id, movie);
+        return id;
+
+    }
+
+    /**
+     * Removes a movie.
+     * @param folder the name of the movie's folder.
+     * @return the removed movie, or null if there was none.
+     */
+    public MovieModel remove(String folder) {
+
+        Integer id = idByFolder.remove(folder);
+        if (id == null)
+            return null;
+
+        MovieModel old = byId.set(id, null);
+        freeIds.add(id);
+
+        // The last movie moves into its place, so nothing after it has to shift
+        int position = positions.get(id);
+        MovieModel last = movies.remove(movies.size() - 1);
+        if (position < movies.size()) {
+            movies.set(position, last);
+            positions.set(idByFolder.get(last.getFolder()), position);
+        }
+        positions.set(id, -1);
+        version++;
+        for (Listener listener : listeners)
+            listener.movieRemoved(id, old);
+        return old;
+
+    }
+
+    /**
+     * Finds a movie by its folder.
+     * @param folder the name of the movie's folder.
+     * @return the movie, or null if there is none.
+     */
+    public MovieModel get(String folder) {
+
+        Integer id = idByFolder.get(folder);
+        return id == null ? null : byId.get(id);
+
+    }
+
+    /**
+     * Finds a movie by its id.
+     * @param id the id.
+     * @return the movie, or null if the id is not in use.
+     */
+    public MovieModel get(int id) {
+
+        return id >= 0 && id < byId.size() ? byId.get(id) : null;
+
+    }
+
+    /**
+     * Gets the id of a movie.
+     * @param folder the name of the movie's folder.
+     * @return the id, or -1 if there is no such movie.
+     */
+    public int idOf(String folder) {
+
+        Integer id = idByFolder.get(folder);
+        return id == null ? -1 : id;
+
+    }
+
+    /**
+     * Gets every movie in the catalog, in the order they were added except that the
+     * last movie takes the place of a removed one.
+     * @return an unmodifiable view of the movies.
+     */
+    public List<MovieModel> getMovies() {
+
+        return Collections.unmodifiableList(movies);
+
+    }
+
+    /**
+     * Gets every movie in the catalog in an order. Apart from relevance, this is a
+     * view of the sort order kept by the SortIndex, or of the one saved with the
+     * snapshot while the catalog hasn't changed since it was opened, so reading a page
+     * of it costs no more than the page and a binary search. Without either, before
+     * prepare is done, the movies come in catalog order, see getMovies().
+     * @param order the order.
+     * @return an unmodifiable view of the movies in that order, or as close as it can
+     * get for now.
+     */
+    public List<MovieModel> getMovies(SortOrder order) {
+
+        if (order == SortOrder.RELEVANCE)
+            return getMovies();
+
+        if (sortIndex == null && orderFile != null && version == orderFileVersion) {
+            CatalogOrderFile file = orderFile;
+            return new AbstractList<MovieModel>() {
+                @Override
+                public MovieModel get(int index) {
+                    // Catalog order if the file can't be read anymore
+                    int record = file.recordAt(order, index);
+                    return record < 0 ? movies.get(index) : byId.get(record);
+                }
+
+                @Override
+                public int size() {
+                    return file.size();
+                }
+            };
+        }
+
+        if (sortIndex == null)
+            return getMovies();
+        SortIndex sorted = sortIndex;
+        return new AbstractList<MovieModel>() {
+            @Override
+            public MovieModel get(int index) {
+                return byId.get(sorted.idAt(order, index));
+            }
+
+            @Override
+            public int size() {
+                return sorted.size();
+            }
+        };
+
+    }
+
+    /**
+     * Finds the movies matching a search, best match first.
+     * @param query what the user typed.
+     * @return the matching movies.
+     */
+    public List<MovieModel> search(String query) {
+
+        return search(query, SortOrder.RELEVANCE);
+
+    }
+
+    /**
+     * Finds the movies matching a search, in an order. The indexes must be prepared,
+     * see prepare.
+     * @param query what the user typed.
+     * @param order the order.
+     * @return the matching movies.
+     */
+    public List<MovieModel> search(String query, SortOrder order) {
+
+        return getMovies(searchIds(query, order));
+
+    }
+
+    /**
+     * Finds the ids of the movies matching a search, in an order. Recent searches
+     * are answered from the result cache. Like searchIds(String), this can run off the
+     * JavaFX thread once the indexes are prepared.
+     * @param query what the user typed.
+     * @param order the order.
+     * @return the ids of the matching movies, which must not be changed.
+     */
+    public int[] searchIds(String query, SortOrder order) {
+
+        int[] ids = resultCache.get(query, order);
+        if (ids != null)
+            return ids;
+
+        long stamp = resultCache.stamp();
+        ids = searchIds(query);
+        if (order != SortOrder.RELEVANCE)
+            ids = sortIndex.sort(ids, order);
+        resultCache.put(query, order, ids, stamp);
+        return ids;
+
+    }
+
+    /**
+     * Finds the ids of the movies matching a search. Exact matches come first, then
+     * titles that are only close to the query. Conditions like "year:>1990" are
+     * checked against the columns after that, see CatalogQuery. Only the search
+     * indexes are touched, so this can run off the JavaFX thread once they are
+     * prepared.
+     * @param query what the user typed.
+     * @return the ids of the matching movies.
+     */
+    public int[] searchIds(String query) {
+
+        CatalogQuery parsed = CatalogQuery.parse(query);
+        if (!parsed.hasConditions())
+            return textIds(parsed.getText());
+        // Conditions alone select from every movie, in id order
+        int[] ids = parsed.getText().isEmpty() ? null : textIds(parsed.getText());
+        return columns.select(ids, parsed);
+
+    }
+
+    /**
+     * Finds the ids of the movies matching the text of a search.
+     * @param text the words of the query that aren't conditions.
+     * @return the ids, exact matches first.
+     */
+    private int[] textIds(String text) {
+
+        int[] exact = searchIndex.search(text);
+        int[] fuzzy = fuzzyIndex.search(text);
+        if (fuzzy.length == 0)
+            return exact;
+
+        // Append the fuzzy matches the exact search didn't already find
+        int[] sortedExact = exact.clone();
+        Arrays.sort(sortedExact);
+        IntList ids = new IntList(exact.length + fuzzy.length);
+        for (int id : exact)
+            ids.add(id);
+        for (int id : fuzzy)
+            if (Arrays.binarySearch(sortedExact, id) < 0)
+                ids.add(id);
+        return ids.toArray();
+
+    }
+
+    /**
+     * Builds the search indexes and the sort orders on another thread, unless they are
+     * built or being built already. They aren't built on load, so the strings of a
+     * snapshot are decoded in the background and never on the JavaFX thread.
+     *
+     * The build works on a copy of the list of movies. Whatever changes in the catalog
+     * while it runs is written down, and played back into the new indexes on the
+     * thread that changes the catalog before they are put in place.
+     * @param background runs the build.
+     * @param owner runs code on the thread that changes the catalog, the JavaFX thread.
+     * @param ready run on that thread once the indexes are in place, right away if they
+     *              already are.
+     */
+    public void prepare(Executor background, Executor owner, Runnable ready) {
+
+        if (isPrepared()) {
+            ready.run();
+            return;
+        }
+        if (build != null) {
+            build.ready.add(ready);
+            return;
+        }
+
+        Build started = new Build(new ArrayList<>(byId));
+        started.ready.add(ready);
+        build = started;
+        listeners.add(started);
+        background.execute(() -> {
+            try {
+                started.run();
+                owner.execute(() -> install(started));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                owner.execute(() -> {
+                    listeners.remove(started);
+                    build = null;
+                });
+            }
+        });
+
+    }
+
+    /**
+     * @return true if the search indexes and sort orders are built, so searching
+     * doesn't wait for them.
+     */
+    public boolean isPrepared() {
+
+        return searchIndex != null;
+
+    }
+
+    /**
+     * Puts the indexes of a finished build in place, after catching them up with what
+     * changed while they were being built.
+     */
+    private void install(Build done) {
+
+        listeners.remove(done);
+        build = null;
+        for (Change change : done.changes)
+            for (Listener index : done.indexes)
+                change.applyTo(index);
+
+        searchIndex = done.searchIndex;
+        fuzzyIndex = done.fuzzyIndex;
+        prefixIndex = done.prefixIndex;
+        columns = done.columns;
+        resultCache = done.resultCache;
+        listeners.add(searchIndex);
+        listeners.add(fuzzyIndex);
+        listeners.add(prefixIndex);
+        listeners.add(columns);
+        // After the columns, which it checks new movies against
+        listeners.add(resultCache);
+        sortIndex = done.sortIndex;
+        listeners.add(sortIndex);
+
+        for (Runnable ready : done.ready)
+            ready.run();
+
+    }
+
+    /**
+     * Finds the ids of the movies to suggest for what the user typed so far. Like
+     * searchIds(String), this can run off the JavaFX thread once the indexes are
+     * prepared.
+     * @param prefix what the user typed so far.
+     * @param limit the most suggestions.
+     * @return the ids of the suggested movies.
+     */
+    public int[] suggestIds(String prefix, int limit) {
+
+        return prefixIndex.suggest(prefix, limit);
+
+    }
+
+    /**
+     * Gets the typed metadata of every movie, with the facet counts.
+     * @return the columns, or null until the indexes are prepared.
+     */
+    public CatalogColumns getColumns() {
+
+        return columns;
+
+    }
+
+    /**
+     * Looks up the movies with some ids. Nothing is copied, each movie is looked up
+     * when it is asked for, so a page of a large result costs only the page. The
+     * view is only good until the catalog changes.
+     * @param ids the ids, all in use.
+     * @return an unmodifiable view of the movies, in the same order.
+     */
+    public List<MovieModel> getMovies(int[] ids) {
+
+        return new AbstractList<MovieModel>() {
+            @Override
+            public MovieModel get(int index) {
+                return byId.get(ids[index]);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+
+    }
+
+    /**
+     * @return a number that changes every time the catalog does.
+     */
+    public int getVersion() {
+
+        return version;
+
+    }
+
+    /**
+     * Registers a listener and tells it about every movie already in the catalog.
+     * @param listener the listener.
+     */
+    public void addListener(Listener listener) {
+
+        for (int id = 0; id < byId.size(); id++)
+            if (byId.get(id) != null)
+                listener.movieAdded(id, byId.get(id));
+        listeners.add(listener);
+
+    }
+
+    /**
+     * @return the number of movies.
+     */
+    public int size() {
+
+        return movies.size();
+
+    }
+
+    /**
+     * @return one more than the highest id in use, or that was in use.
+     */
+    public int capacity() {
+
+        return byId.size();
+
+    }
+
+    /**
+     * @return the target directory, or null if there is none.
+     */
+    public File getDirectory() {
+
+        return directory;
+
+    }
+
+    /**
+     * Writes the catalog index to the target directory in the background, and its sort
+     * orders if they are built. Otherwise the old order file no longer matches and is
+     * deleted. Only the list of movies and the orders are copied on the calling thread;
+     * if an earlier save is still waiting to be written, this one replaces it.
+     */
+    public void save() {
+
+        if (directory == null)
+            return;
+
+        // The order file on disk is about to stop matching the catalog
+        orderFile = null;
+        Save save = new Save(directory, new ArrayList<>(movies), positions.toArray(),
+                sortIndex == null ? null : sortIndex.copyOrders());
+        if (pendingSave.getAndSet(save) == null)
+            SAVER.execute(() -> pendingSave.getAndSet(null).write());
+
+    }
+
+    /**
+     * A copy of the catalog waiting to be written by the saver.
+     */
+    private static final class Save {
+
+        private final File directory;
+        private final List<MovieModel> movies;
+        private final int[] records;
+        private final int[][] orders;
+
+        /**
+         * @param movies the movies in catalog order, which is the order of their records.
+         * @param records the record number, the position in movies, of each id, or -1.
+         * @param orders the ids of each sort order by ordinal, or null if not built.
+         */
+        Save(File directory, List<MovieModel> movies, int[] records, int[][] orders) {
+            this.directory = directory;
+            this.movies = movies;
+            this.records = records;
+            this.orders = orders;
+        }
+
+        void write() {
+            if (!CatalogIndex.save(directory, movies))
+                return;
+            // The sort orders point at the records just written
+            if (orders == null)
+                CatalogOrderFile.delete(directory);
+            else
+                CatalogOrderFile.save(directory, orders, records, movies.size());
+        }
+
+    }
+
+    /**
+     * A change to the catalog made while the indexes were being built.
+     */
+    private static final class Change {
+
+        private final boolean added;
+        private final int id;
+        private final MovieModel movie;
+
+        Change(boolean added, int id, MovieModel movie) {
+            this.added = added;
+            this.id = id;
+            this.movie = movie;
+        }
+
+        void applyTo(Listener listener) {
+            if (added)
+                listener.movieAdded(id, movie);
+            else
+                listener.movieRemoved(id, movie);
+        }
+
+    }
+
+    /**
+     * Builds every index from a copy of the movies on a background thread, and writes
+     * down the changes to the catalog meanwhile. Those are only touched on the thread
+     * that changes the catalog.
+     */
+    private static final class Build implements Listener, Runnable {
+
+        private final List<MovieModel> snapshot;
+        private final List<Change> changes = new ArrayList<>();
+        private final List<Runnable> ready = new ArrayList<>();
+
+        // Made on the background thread, nothing of them is needed before that
+        private SearchIndex searchIndex;
+        private FuzzyIndex fuzzyIndex;
+        private PrefixIndex prefixIndex;
+        private CatalogColumns columns;
+        private ResultCache resultCache;
+        private SortIndex sortIndex;
+
+        /**
+         * Every index the build made, in the order they listen to the catalog.
+         */
+        private Listener[] indexes;
+
+        Build(List<MovieModel> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run() {
+            searchIndex = new SearchIndex();
+            fuzzyIndex = new FuzzyIndex();
+            prefixIndex = new PrefixIndex();
+            columns = new CatalogColumns();
+            resultCache = new ResultCache(columns);
+            sortIndex = new SortIndex();
+            indexes = new Listener[] {searchIndex, fuzzyIndex, prefixIndex, columns, resultCache, sortIndex};
+
+            sortIndex.addAll(snapshot);
+            prefixIndex.addAll(snapshot);
+            for (int id = 0; id < snapshot.size(); id++) {
+                MovieModel movie = snapshot.get(id);
+                if (movie == null)
+                    continue;
+                searchIndex.movieAdded(id, movie);
+                fuzzyIndex.movieAdded(id, movie);
+                columns.movieAdded(id, movie);
+                resultCache.movieAdded(id, movie);
+            }
+        }
+
+        @Override
+        public void movieAdded(int id, MovieModel movie) {
+            changes.add(new Change(true, id, movie));
+        }
+
+        @Override
+        public void movieRemoved(int id, MovieModel movie) {
+            changes.add(new Change(false, id, movie));
+        }
+
+    }
+
+}
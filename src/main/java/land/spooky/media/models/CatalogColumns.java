@@ -0,0 +1,216 @@
+package land.spooky.media.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * The typed metadata of every movie, stored column by column in primitive arrays
+ * indexed by movie id: the year, the runtime in minutes, the age rating as a small code
+ * and the genres as a bitset. Query conditions like "year:>1990" are checked against
+ * these columns without touching a single string.
+ *
+ * The facet counts, how many movies there are of each genre and decade, are kept up
+ * to date as movies come and go, so showing them never needs a pass over the catalog.
+ * Like the search indexes, this is written from the JavaFX thread and read from the
+ * search thread, so every method is synchronized.
+ */
+public final class CatalogColumns implements Catalog.Listener {
+
+    private int[] years = new int[16];
+    private int[] runtimes = new int[16];
+    private byte[] ratings = new byte[16];
+    private long[] genres = new long[16];
+    private boolean[] present = new boolean[16];
+    private int capacity = 0;
+
+    /**
+     * Every rating seen so far. A rating's code is its position plus one, 0 means none.
+     */
+    private final List<String> ratingNames = new ArrayList<>();
+
+    private final int[] genreCounts = new int[InfoParser.GENRES.length];
+    private final TreeMap<Integer, Integer> decadeCounts = new TreeMap<>();
+
+
+    /**
+     * Parses and stores the metadata of a movie.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie.
+     */
+    @Override
+    public synchronized void movieAdded(int id, MovieModel movie) {
+
+        if (id >= years.length) {
+            int length = Math.max(id + 1, years.length * 2);
+            years = Arrays.copyOf(years, length);
+            runtimes = Arrays.copyOf(runtimes, length);
+            ratings = Arrays.copyOf(ratings, length);
+            genres = Arrays.copyOf(genres, length);
+            present = Arrays.copyOf(present, length);
+        }
+        capacity = Math.max(capacity, id + 1);
+
+        String info = movie.getInfo();
+        years[id] = InfoParser.parseYear(movie.getYear(), info);
+        runtimes[id] = InfoParser.parseRuntime(info);
+        ratings[id] = ratingCode(InfoParser.parseRating(info));
+        genres[id] = InfoParser.parseGenres(info);
+        present[id] = true;
+
+        count(id, 1);
+
+    }
+
+    /**
+     * Forgets the metadata of a movie.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie, as it was stored.
+     */
+    @Override
+    public synchronized void movieRemoved(int id, MovieModel movie) {
+
+        if (id >= capacity || !present[id])
+            return;
+        count(id, -1);
+        present[id] = false;
+
+    }
+
+    /**
+     * Keeps the movies that meet every condition of a query.
+     * @param ids the candidates in order, or null for every movie in id order.
+     * @param query the query.
+     * @return the ids of the candidates that meet the conditions, in the same order.
+     */
+    public synchronized int[] select(int[] ids, CatalogQuery query) {
+
+        IntList selected = new IntList();
+        if (ids == null) {
+            for (int id = 0; id < capacity; id++)
+                if (present[id] && query.matches(this, id))
+                    selected.add(id);
+        } else {
+            for (int id : ids)
+                if (id < capacity && present[id] && query.matches(this, id))
+                    selected.add(id);
+        }
+        return selected.toArray();
+
+    }
+
+    /**
+     * Gets how many movies there are of each genre.
+     * @return the count of every genre with at least one movie, in genre order.
+     */
+    public synchronized Map<String, Integer> getGenreCounts() {
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int bit = 0; bit < genreCounts.length; bit++)
+            if (genreCounts[bit] > 0)
+                counts.put(InfoParser.GENRES[bit], genreCounts[bit]);
+        return counts;
+
+    }
+
+    /**
+     * Gets how many movies there are of each decade.
+     * @return the count of every decade with at least one movie, like 1990, oldest first.
+     */
+    public synchronized Map<Integer, Integer> getDecadeCounts() {
+
+        return new TreeMap<>(decadeCounts);
+
+    }
+
+    /**
+     * @param id a movie id.
+     * @return the year, or 0 if unknown.
+     */
+    synchronized int year(int id) {
+
+        return years[id];
+
+    }
+
+    /**
+     * @param id a movie id.
+     * @return the runtime in minutes, or 0 if unknown.
+     */
+    synchronized int runtime(int id) {
+
+        return runtimes[id];
+
+    }
+
+    /**
+     * @param id a movie id.
+     * @return the genre bitset, see InfoParser.GENRES.
+     */
+    synchronized long genres(int id) {
+
+        return genres[id];
+
+    }
+
+    /**
+     * @param id a movie id.
+     * @return the rating, or null if unknown.
+     */
+    synchronized String rating(int id) {
+
+        return ratings[id] == 0 ? null : ratingNames.get(ratings[id] - 1);
+
+    }
+
+    /**
+     * Adds a movie to the facet counts, or takes it away.
+     * @param id the movie id.
+     * @param delta 1 to add, -1 to take away.
+     */
+    private void count(int id, int delta) {
+
+        for (int bit = 0; bit < genreCounts.length; bit++)
+            if ((genres[id] & 1L << bit) != 0)
+                genreCounts[bit] += delta;
+
+        if (years[id] != 0) {
+            int decade = years[id] / 10 * 10;
+            int count = decadeCounts.getOrDefault(decade, 0) + delta;
+            if (count == 0)
+                decadeCounts.remove(decade);
+            else
+                decadeCounts.put(decade, count);
+        }
+
+    }
+
+    /**
+     * Gets the code of a rating, giving it one if it is new.
+     * @param rating the rating, may be null.
+     * @return the code, 0 for none.
+     */
+    private byte ratingCode(String rating) {
+
+        if (rating == null)
+            return 0;
+        for (int i = 0; i < ratingNames.size(); i++)
+            if (ratingNames.get(i).equalsIgnoreCase(rating))
+                return (byte)(i + 1);
+        // A byte holds plenty of ratings, anything past that is treated as unknown
+        if (ratingNames.size() >= Byte.MAX_VALUE)
+            return 0;
+        ratingNames.add(rating);
+        return (byte)ratingNames.size();
+
+    }
+
+}
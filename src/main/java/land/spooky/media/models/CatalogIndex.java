@@ -0,0 +1,284 @@
+package land.spooky.media.models;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * This class reads and writes the catalog index, a single binary snapshot in the target
+ * directory that holds the title, year, info, description, poster path, folder and
+ * info file modification time and size of every movie.
+ *
+ * The snapshot is a header, a table of fixed size records and a block of UTF-8 string
+ * data that the records point into. At startup the file is read into memory with one
+ * sequential read and only the record table is walked; the strings of a movie are
+ * decoded from those bytes the first time they are asked for, so the first page can be
+ * shown without decoding the rest. The file isn't mapped: a mapping lasts until it is
+ * garbage collected, and on Windows a mapped file can't be replaced, so every save
+ * after startup would fail.
+ */
+public final class CatalogIndex {
+
+    /**
+     * The name of the index file inside the target directory.
+     */
+    public static final String FILE_NAME = "catalog.index";
+
+    /**
+     * "MCAT", marks the file as a catalog snapshot.
+     */
+    private static final int MAGIC = 0x4D434154;
+
+    /**
+     * Bumped whenever the layout changes, so old snapshots get rebuilt instead of misread.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Magic, version and record count.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * The strings stored for each movie, in record order.
+     */
+    private static final int POSTER = 0, TITLE = 1, YEAR = 2, INFO = 3, DESCRIPTION = 4, FOLDER = 5;
+    private static final int STRING_COUNT = 6;
+
+    /**
+     * The modified time and size, then an offset and length for every string.
+     */
+    private static final int RECORD_SIZE = 16 + STRING_COUNT * 8;
+
+    /**
+     * Loads the movies saved in the index of a target directory. The index is read into
+     * memory and the movies decode their strings from it lazily.
+     * @param targetDir the target directory.
+     * @return the movies in the index, or null if there is no readable index.
+     */
+    public static final List<MovieModel> load(File targetDir) {
+
+        File index = new File(targetDir, FILE_NAME);
+        if (!index.isFile())
+            return null;
+
+        ByteBuffer buffer = IOHelper.readBytes(index);
+        if (buffer == null)
+            return null;
+
+        // Check the header, an old or damaged index is treated as missing
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            return null;
+        int count = buffer.getInt(8);
+        long stringsStart = HEADER_SIZE + (long)count * RECORD_SIZE;
+        if (count < 0 || stringsStart > buffer.limit())
+            return null;
+
+        List<MovieModel> movies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            for (int s = 0; s < STRING_COUNT; s++) {
+                long end = stringsStart + buffer.getInt(record + 16 + s * 8) + buffer.getInt(record + 20 + s * 8);
+                if (end > buffer.limit())
+                    return null;
+            }
+            movies.add(new SnapshotMovie(buffer, record, (int)stringsStart));
+        }
+
+        return movies;
+
+    }
+
+    /**
+     * Writes the index of a target directory. The strings of movies from the last
+     * snapshot that were never decoded are copied over as they are, without decoding.
+     * @param targetDir the target directory.
+     * @param movies every movie in the target directory.
+     * @return true if successful.
+     */
+    public static final boolean save(File targetDir, Collection<MovieModel> movies) {
+
+        // Encode every string first so the record table knows where they will be
+        List<byte[]> strings = new ArrayList<>(movies.size() * STRING_COUNT);
+        for (MovieModel movie : movies) {
+            if (movie instanceof SnapshotMovie) {
+                for (int field = 0; field < STRING_COUNT; field++)
+                    strings.add(((SnapshotMovie)movie).bytes(field));
+                continue;
+            }
+            String[] fields = new String[STRING_COUNT];
+            fields[POSTER] = movie.getPoster();
+            fields[TITLE] = movie.getTitle();
+            fields[YEAR] = movie.getYear();
+            fields[INFO] = movie.getInfo();
+            fields[DESCRIPTION] = movie.getDescription();
+            fields[FOLDER] = movie.getFolder();
+            for (String field : fields)
+                strings.add(field == null ? new byte[0] : field.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Write next to the real index and swap it in, so a crash never leaves half an index
+        File temp = new File(targetDir, FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(movies.size());
+
+            int offset = 0;
+            int s = 0;
+            for (MovieModel movie : movies) {
+                out.writeLong(movie.getModified());
+                out.writeLong(movie.getSize());
+                for (int i = 0; i < STRING_COUNT; i++) {
+                    int length = strings.get(s++).length;
+                    out.writeInt(offset);
+                    out.writeInt(length);
+                    offset += length;
+                }
+            }
+
+            for (byte[] string : strings)
+                out.write(string);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return IOHelper.replaceFile(temp, new File(targetDir, FILE_NAME));
+
+    }
+
+    /**
+     * Reads a single movie folder.
+     * @param folder the movie's folder in the target directory.
+     * @return the movie, or null if the folder isn't a movie folder.
+     */
+    public static final MovieModel readMovie(File folder) {
+
+        File info = new File(folder, "info");
+        if (!info.isFile())
+            return null;
+        return readMovie(folder, info.lastModified(), info.length());
+
+    }
+
+    /**
+     * Reads a single movie folder whose info file attributes are already known.
+     * @param folder the movie's folder in the target directory.
+     * @param modified when the info file was last modified.
+     * @param size the size of the info file.
+     * @return the movie, or null if the folder isn't a movie folder.
+     */
+    public static final MovieModel readMovie(File folder, long modified, long size) {
+
+        List<String> lines = IOHelper.readLines(new File(folder, "info"));
+        if (lines == null || lines.size() < 4)
+            return null;
+
+        return new MovieModel(folder.getPath() + "/poster", lines.get(0), lines.get(1), lines.get(2),
+                lines.get(3), folder.getName(), modified, size);
+
+    }
+
+    /**
+     * A movie backed by a record of a snapshot read into memory. The folder is decoded
+     * right away because the catalog is keyed by it, everything else on first use.
+     */
+    private static final class SnapshotMovie extends MovieModel {
+
+        private final ByteBuffer buffer;
+        private final int record;
+        private final int stringsStart;
+        private final String[] strings = new String[STRING_COUNT];
+
+        SnapshotMovie(ByteBuffer buffer, int record, int stringsStart) {
+            super(null, null, null, null, null, null, buffer.getLong(record), buffer.getLong(record + 8));
+            this.buffer = buffer;
+            this.record = record;
+            this.stringsStart = stringsStart;
+            string(FOLDER);
+        }
+
+        /**
+         * Decodes one of the strings of this movie, or returns it if it already was.
+         * @param field which string.
+         * @return the string.
+         */
+        private String string(int field) {
+            String value = strings[field];
+            if (value == null) {
+                int offset = buffer.getInt(record + 16 + field * 8);
+                int length = buffer.getInt(record + 20 + field * 8);
+                byte[] bytes = new byte[length];
+                // Absolute reads on a duplicate, the shared buffer's position is never touched
+                ByteBuffer view = buffer.duplicate();
+                view.position(stringsStart + offset);
+                view.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+                strings[field] = value;
+            }
+            return value;
+        }
+
+        /**
+         * Gets one of the strings of this movie as UTF-8, from the snapshot if it wasn't
+         * decoded yet.
+         * @param field which string.
+         * @return the bytes.
+         */
+        private byte[] bytes(int field) {
+            String value = strings[field];
+            if (value != null)
+                return value.getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = new byte[buffer.getInt(record + 20 + field * 8)];
+            ByteBuffer view = buffer.duplicate();
+            view.position(stringsStart + buffer.getInt(record + 16 + field * 8));
+            view.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public String getPoster() {
+            return string(POSTER);
+        }
+
+        @Override
+        public String getTitle() {
+            return string(TITLE);
+        }
+
+        @Override
+        public String getYear() {
+            return string(YEAR);
+        }
+
+        @Override
+        public String getInfo() {
+            return string(INFO);
+        }
+
+        @Override
+        public String getDescription() {
+            return string(DESCRIPTION);
+        }
+
+        @Override
+        public String getFolder() {
+            return string(FOLDER);
+        }
+
+    }
+
+}
@@ -0,0 +1,267 @@
+package land.spooky.media.models;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * The sort orders of the catalog on disk, written next to the catalog index every time
+ * it is saved with its sort orders built. Each order is the number of every movie's
+ * record in the index, in sort order, cut into blocks of 4 KB. A table of how many
+ * records each block holds comes before the blocks, so the block holding any position
+ * is found with a binary search, and a sorted page needs nothing but the block or two
+ * its own 24 records are in.
+ *
+ * It lets a catalog that was just opened show sorted pages before its SortIndex is
+ * built in the background, see Catalog.prepare. Once that is done, or the catalog
+ * changes, the SortIndex takes over. Only the header and the table are kept in memory,
+ * a block is read when a page needs it and the last one read is kept. The file is
+ * opened for each block rather than kept open, so it can be replaced on the next save.
+ *
+ * The header remembers the length and modification time of the index it was written
+ * with. If the two files don't match, say after a crash between writing them, the
+ * order file is ignored.
+ */
+public final class CatalogOrderFile {
+
+    /**
+     * The name of the order file inside the target directory. It starts with the name
+     * of the index so the watcher ignores it the same way.
+     */
+    public static final String FILE_NAME = CatalogIndex.FILE_NAME + ".order";
+
+    /**
+     * "MCOR", marks the file as catalog sort orders.
+     */
+    private static final int MAGIC = 0x4D434F52;
+
+    /**
+     * Version 1 also held a sort key per record and a sparse index of them, version 2
+     * had each order in one piece without blocks.
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * Magic, version, record count and blocks per order, then the index length and
+     * modified time.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The index record number.
+     */
+    private static final int RECORD_SIZE = 4;
+
+    /**
+     * The size of a block, the most that is read for a page.
+     */
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BLOCK_RECORDS = BLOCK_SIZE / RECORD_SIZE;
+
+    /**
+     * The orders with a section in the file, every order but relevance.
+     */
+    private static final int ORDERS = SortOrder.values().length - 1;
+
+    private final File file;
+    private final int count;
+    private final int blocks;
+
+    /**
+     * Where the blocks start in the file.
+     */
+    private final long blocksStart;
+
+    /**
+     * For each order, by ordinal minus one, the position of the first record of every
+     * block, and the count after the last block.
+     */
+    private final int[][] firstRanks;
+
+    /**
+     * The block read last, and which block of which order it is.
+     */
+    private ByteBuffer block;
+    private int blockOrder = -1;
+    private int blockIndex = -1;
+
+
+    private CatalogOrderFile(File file, int count, int blocks, int[][] firstRanks) {
+
+        this.file = file;
+        this.count = count;
+        this.blocks = blocks;
+        this.blocksStart = HEADER_SIZE + (long)ORDERS * blocks * RECORD_SIZE;
+        this.firstRanks = firstRanks;
+
+    }
+
+    /**
+     * Opens the order file of a target directory. Only its header and the table of
+     * block counts are read.
+     * @param targetDir the target directory.
+     * @param count the number of movies in the index.
+     * @return the orders, or null if there is no order file matching the index.
+     */
+    public static final CatalogOrderFile load(File targetDir, int count) {
+
+        File file = new File(targetDir, FILE_NAME);
+        File index = new File(targetDir, CatalogIndex.FILE_NAME);
+        if (!file.isFile())
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                return null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            IOHelper.readFully(channel, header, 0);
+            int blocks = header.getInt(12);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != count
+                    || blocks != blockCount(count) || header.getLong(16) != index.length()
+                    || header.getLong(24) != index.lastModified()
+                    || channel.size() != HEADER_SIZE + (long)ORDERS * blocks * (RECORD_SIZE + BLOCK_SIZE))
+                return null;
+
+            ByteBuffer table = ByteBuffer.allocate(ORDERS * blocks * RECORD_SIZE);
+            IOHelper.readFully(channel, table, HEADER_SIZE);
+            int[][] firstRanks = new int[ORDERS][blocks + 1];
+            for (int order = 0; order < ORDERS; order++) {
+                for (int b = 0; b < blocks; b++) {
+                    int records = table.getInt();
+                    if (records < 0 || records > BLOCK_RECORDS)
+                        return null;
+                    firstRanks[order][b + 1] = firstRanks[order][b] + records;
+                }
+                if (firstRanks[order][blocks] != count)
+                    return null;
+            }
+            return new CatalogOrderFile(file, count, blocks, firstRanks);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+    }
+
+    /**
+     * Writes the order file of a target directory. The index must have been saved just
+     * before, with the movies in record order.
+     * @param targetDir the target directory.
+     * @param orders the movie ids of each sort order in that order, by ordinal.
+     * @param records the index record number of each movie id, or -1 for unused ids.
+     * @param count the number of records in the index.
+     * @return true if successful.
+     */
+    public static final boolean save(File targetDir, int[][] orders, int[] records, int count) {
+
+        File index = new File(targetDir, CatalogIndex.FILE_NAME);
+        File temp = new File(targetDir, FILE_NAME + ".tmp");
+        int blocks = blockCount(count);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(blocks);
+            out.writeLong(index.length());
+            out.writeLong(index.lastModified());
+
+            // Every block is full but the last of each order
+            for (int order = 0; order < ORDERS; order++)
+                for (int b = 0; b < blocks; b++)
+                    out.writeInt(Math.min(BLOCK_RECORDS, count - b * BLOCK_RECORDS));
+
+            for (SortOrder order : SortOrder.values()) {
+                if (order == SortOrder.RELEVANCE)
+                    continue;
+                for (int rank = 0; rank < blocks * BLOCK_RECORDS; rank++)
+                    out.writeInt(rank < count ? records[orders[order.ordinal()][rank]] : -1);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return IOHelper.replaceFile(temp, new File(targetDir, FILE_NAME));
+
+    }
+
+    /**
+     * Deletes the order file of a target directory, when the index was saved without
+     * the sort orders being built.
+     * @param targetDir the target directory.
+     */
+    public static final void delete(File targetDir) {
+
+        new File(targetDir, FILE_NAME).delete();
+
+    }
+
+    /**
+     * @return the number of movies in every order.
+     */
+    public int size() {
+
+        return count;
+
+    }
+
+    /**
+     * Gets the movie at a position of an order, reading its block unless it was the
+     * last one read.
+     * @param order the order, not relevance.
+     * @param rank the position.
+     * @return the index record number of the movie, or -1 if the file couldn't be read.
+     */
+    public synchronized int recordAt(SortOrder order, int rank) {
+
+        int section = order.ordinal() - 1;
+        int[] first = firstRanks[section];
+
+        // The last block whose first position isn't after the rank
+        int low = 0;
+        int high = blocks - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (first[middle] <= rank)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+
+        if (section != blockOrder || low != blockIndex) {
+            ByteBuffer read = ByteBuffer.allocate(BLOCK_SIZE);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                IOHelper.readFully(channel, read, blocksStart + ((long)section * blocks + low) * BLOCK_SIZE);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return -1;
+            }
+            block = read;
+            blockOrder = section;
+            blockIndex = low;
+        }
+        return block.getInt((rank - first[low]) * RECORD_SIZE);
+
+    }
+
+    /**
+     * @param count the number of records.
+     * @return the number of blocks an order of them takes.
+     */
+    private static int blockCount(int count) {
+
+        return (count + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+
+    }
+
+}
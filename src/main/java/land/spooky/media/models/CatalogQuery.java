@@ -0,0 +1,164 @@
+package land.spooky.media.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * A parsed search bar query. Words of the form field:value become conditions on the
+ * typed columns of the catalog, everything else is text for the search indexes. The
+ * fields are:
+ *
+ *   genre:drama          any of the genres starting with the value, commas for more
+ *   year:1994            also year:>1990, year:<=2000 and year:1990..1999
+ *   decade:1990          also decade:1990s
+ *   runtime:<120         in minutes, with the same comparisons as year
+ *   rating:pg-13         the age rating, in any case
+ *
+ * So "genre:drama year:>1990 runtime:<120 godfather" looks for godfather among the
+ * dramas after 1990 that are shorter than two hours.
+ */
+public final class CatalogQuery {
+
+    private static final Pattern CONDITION = Pattern.compile("^(genre|year|decade|runtime|rating):(.+)$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern NUMBER = Pattern.compile("^(>=|<=|>|<|=)?(\\d+)s?$");
+    private static final Pattern RANGE = Pattern.compile("^(\\d+)\\.\\.(\\d+)$");
+
+    private final String text;
+    private final List<Condition> conditions;
+
+
+    private CatalogQuery(String text, List<Condition> conditions) {
+
+        this.text = text;
+        this.conditions = conditions;
+
+    }
+
+    /**
+     * Parses a query.
+     * @param query what the user typed.
+     * @return the parsed query.
+     */
+    public static CatalogQuery parse(String query) {
+
+        StringBuilder text = new StringBuilder();
+        List<Condition> conditions = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            Condition condition = null;
+            Matcher matcher = CONDITION.matcher(word);
+            if (matcher.matches())
+                condition = condition(matcher.group(1).toLowerCase(), matcher.group(2));
+            if (condition != null) {
+                conditions.add(condition);
+            } else if (!word.isEmpty()) {
+                if (text.length() > 0)
+                    text.append(' ');
+                text.append(word);
+            }
+        }
+        return new CatalogQuery(text.toString(), conditions);
+
+    }
+
+    /**
+     * @return the words of the query that aren't conditions.
+     */
+    public String getText() {
+
+        return text;
+
+    }
+
+    /**
+     * @return true if the query has at least one condition.
+     */
+    public boolean hasConditions() {
+
+        return !conditions.isEmpty();
+
+    }
+
+    /**
+     * Checks a movie against every condition.
+     * @param columns the columns of the catalog.
+     * @param id the movie id.
+     * @return true if the movie meets all of them.
+     */
+    boolean matches(CatalogColumns columns, int id) {
+
+        for (Condition condition : conditions)
+            if (!condition.matches(columns, id))
+                return false;
+        return true;
+
+    }
+
+    /**
+     * Compiles one field:value word.
+     * @param field the field, lower case.
+     * @param value what comes after the colon.
+     * @return the condition, or null if the value doesn't make sense for the field.
+     */
+    private static Condition condition(String field, String value) {
+
+        if (field.equals("genre")) {
+            long wanted = 0;
+            for (String name : value.split(","))
+                for (int bit = 0; bit < InfoParser.GENRES.length; bit++)
+                    if (!name.isEmpty() && InfoParser.GENRES[bit].toLowerCase().startsWith(name.toLowerCase()))
+                        wanted |= 1L << bit;
+            long genres = wanted;
+            return (columns, id) -> (columns.genres(id) & genres) != 0;
+        }
+
+        if (field.equals("rating"))
+            return (columns, id) -> value.equalsIgnoreCase(columns.rating(id));
+
+        // The rest are numbers
+        int low;
+        int high;
+        Matcher range = RANGE.matcher(value);
+        Matcher number = NUMBER.matcher(value);
+        if (range.matches()) {
+            low = Integer.parseInt(range.group(1));
+            high = Integer.parseInt(range.group(2));
+        } else if (number.matches() && number.group(2).length() <= 6) {
+            int n = Integer.parseInt(number.group(2));
+            String op = number.group(1) == null ? "=" : number.group(1);
+            low = op.equals(">") ? n + 1 : op.equals(">=") ? n : op.startsWith("<") ? 1 : n;
+            high = op.equals("<") ? n - 1 : op.equals("<=") ? n : op.startsWith(">") ? Integer.MAX_VALUE : n;
+            if (field.equals("decade") && op.equals("=")) {
+                low = n / 10 * 10;
+                high = low + 9;
+            }
+        } else {
+            return null;
+        }
+
+        // Unknown values are stored as 0 and never match a number
+        int from = low;
+        int to = high;
+        if (field.equals("runtime"))
+            return (columns, id) -> columns.runtime(id) >= from && columns.runtime(id) <= to && columns.runtime(id) > 0;
+        return (columns, id) -> columns.year(id) >= from && columns.year(id) <= to && columns.year(id) > 0;
+
+    }
+
+    /**
+     * One compiled condition.
+     */
+    private interface Condition {
+
+        boolean matches(CatalogColumns columns, int id);
+
+    }
+
+}
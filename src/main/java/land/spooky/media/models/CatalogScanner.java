@@ -0,0 +1,244 @@
+package land.spooky.media.models;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Rescans a target directory against what the catalog already knows. The directory is
+ * listed once, then the info file of every folder is stat'ed in parallel, and only the
+ * folders whose info file has a different modified time or size are read again. On
+ * network mounts each stat is a round trip, so they are spread over a pool that is
+ * much wider than the number of cores.
+ */
+public final class CatalogScanner {
+
+    /**
+     * How many stat calls can be waiting on the disk or network at once.
+     */
+    private static final int PARALLELISM = 16;
+
+    /**
+     * Below this many folders a task stats them itself instead of splitting.
+     */
+    private static final int THRESHOLD = 32;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+
+    /**
+     * Scans a target directory.
+     * @param directory the target directory.
+     * @param known the movies in the catalog before the scan.
+     * @return what was added, removed and modified since the catalog was built.
+     */
+    public static Report scan(Path directory, Collection<MovieModel> known) {
+
+        long start = System.nanoTime();
+
+        // One listing of the target directory
+        List<Path> folders = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path folder : stream)
+                folders.add(folder);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new Report(directory, Collections.emptyList(), Collections.emptyList(),
+                    Collections.emptyList(), 0, 0);
+        }
+
+        Map<String, MovieModel> byFolder = new HashMap<>();
+        for (MovieModel movie : known)
+            byFolder.put(movie.getFolder(), movie);
+
+        // Stat everything in parallel, read only what changed
+        List<Result> results = POOL.invoke(new ScanTask(folders, 0, folders.size(), byFolder));
+
+        List<MovieModel> added = new ArrayList<>();
+        List<MovieModel> modified = new ArrayList<>();
+        int unchanged = 0;
+        for (Result result : results) {
+            MovieModel before = byFolder.remove(result.folder);
+            if (result.movie == null) {
+                // Still there but no longer a movie, it counts as removed
+                if (before != null)
+                    byFolder.put(result.folder, before);
+            } else if (before == null) {
+                added.add(result.movie);
+            } else if (before != result.movie) {
+                modified.add(result.movie);
+            } else {
+                unchanged++;
+            }
+        }
+
+        // Whatever wasn't found on disk is gone
+        List<String> removed = new ArrayList<>(byFolder.keySet());
+
+        return new Report(directory, added, removed, modified, unchanged, System.nanoTime() - start);
+
+    }
+
+    /**
+     * The outcome of checking one folder.
+     */
+    private static final class Result {
+
+        final String folder;
+
+        /**
+         * The known movie if nothing changed, a freshly read movie if something did,
+         * or null if the folder doesn't hold a movie.
+         */
+        final MovieModel movie;
+
+        Result(String folder, MovieModel movie) {
+            this.folder = folder;
+            this.movie = movie;
+        }
+
+    }
+
+    /**
+     * Checks a range of folders, splitting in half until the range is small.
+     */
+    private static final class ScanTask extends RecursiveTask<List<Result>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> folders;
+        private final int from;
+        private final int to;
+        private final Map<String, MovieModel> known;
+
+        ScanTask(List<Path> folders, int from, int to, Map<String, MovieModel> known) {
+            this.folders = folders;
+            this.from = from;
+            this.to = to;
+            this.known = known;
+        }
+
+        @Override
+        protected List<Result> compute() {
+
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(folders, from, middle, known);
+                left.fork();
+                List<Result> results = new ScanTask(folders, middle, to, known).compute();
+                results.addAll(left.join());
+                return results;
+            }
+
+            List<Result> results = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                Path folder = folders.get(i);
+                String name = folder.getFileName().toString();
+
+                // One stat per folder, on the info file that holds the movie
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(folder.resolve("info"), BasicFileAttributes.class);
+                } catch (FileSystemException e) {
+                    // No info file, or a plain file like the index, so not a movie folder
+                    continue;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    continue;
+                }
+
+                long modified = attributes.lastModifiedTime().toMillis();
+                long size = attributes.size();
+                MovieModel before = known.get(name);
+                if (before != null && before.getModified() == modified && before.getSize() == size)
+                    results.add(new Result(name, before));
+                else
+                    results.add(new Result(name, CatalogIndex.readMovie(folder.toFile(), modified, size)));
+            }
+            return results;
+
+        }
+
+    }
+
+    /**
+     * A change report of one scan.
+     */
+    public static final class Report {
+
+        private final Path directory;
+        private final List<MovieModel> added;
+        private final List<String> removed;
+        private final List<MovieModel> modified;
+        private final int unchanged;
+        private final long nanos;
+
+        Report(Path directory, List<MovieModel> added, List<String> removed, List<MovieModel> modified,
+               int unchanged, long nanos) {
+            this.directory = directory;
+            this.added = added;
+            this.removed = removed;
+            this.modified = modified;
+            this.unchanged = unchanged;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return movies whose folder is new.
+         */
+        public List<MovieModel> getAdded() {
+            return added;
+        }
+
+        /**
+         * @return folders that no longer hold a movie.
+         */
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return movies whose info file changed, read again.
+         */
+        public List<MovieModel> getModified() {
+            return modified;
+        }
+
+        /**
+         * @return how many folders did not have to be read.
+         */
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return true if the catalog needs to change.
+         */
+        public boolean hasChanges() {
+            return !added.isEmpty() || !removed.isEmpty() || !modified.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Rescan of " + directory + ": " + added.size() + " added, " + removed.size() + " removed, "
+                    + modified.size() + " modified, " + unchanged + " unchanged in " + nanos / 1000000 + " ms";
+        }
+
+    }
+
+}
@@ -0,0 +1,202 @@
+package land.spooky.media.models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Watches the target directory for movie folders being created, deleted or changed,
+ * including by other machines writing into a shared library. Events are collected
+ * until the directory has been quiet for a moment, then only the affected folders are
+ * read again and handed over as one batch.
+ */
+public final class CatalogWatcher {
+
+    /**
+     * How long the directory has to be quiet before a batch is sent.
+     */
+    private static final long QUIET_MILLIS = 300;
+
+    /**
+     * The longest a batch is held back while events keep arriving, for example
+     * while a large movie file is being copied in.
+     */
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final Consumer<Map<String, MovieModel>> listener;
+
+    /**
+     * Which folder each registered key belongs to. The key of the target directory
+     * itself maps to null.
+     */
+    private final Map<WatchKey, String> keys = new HashMap<>();
+
+
+    /**
+     * Starts watching a target directory on a background thread.
+     * @param directory the target directory.
+     * @param listener gets each batch, on the watcher's thread. Keys are folder
+     *                 names, values are the movie read from that folder, or null
+     *                 if the folder is gone or no longer holds a movie.
+     * @throws IOException if the directory can't be watched.
+     */
+    public CatalogWatcher(File directory, Consumer<Map<String, MovieModel>> listener) throws IOException {
+
+        this.directory = directory.toPath();
+        this.listener = listener;
+        this.watchService = this.directory.getFileSystem().newWatchService();
+
+        keys.put(register(this.directory), null);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+            for (Path folder : stream)
+                if (Files.isDirectory(folder) && !isCatalogFile(folder.getFileName()))
+                    keys.put(register(folder), folder.getFileName().toString());
+        }
+
+        Thread t = new Thread(this::run, "catalog-watcher");
+        t.setDaemon(true);
+        t.start();
+
+    }
+
+    /**
+     * Stops watching. No more batches are sent after this returns.
+     */
+    public void close() {
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    /**
+     * Registers a directory for every kind of event.
+     * @param dir the directory.
+     * @return its watch key.
+     * @throws IOException if it can't be registered.
+     */
+    private WatchKey register(Path dir) throws IOException {
+
+        return dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+    }
+
+    /**
+     * Tells the files and folders the app keeps next to the movies apart from movie
+     * folders, like the index and the cache of web answers. They all start with the
+     * name of the index and are never watched.
+     * @param name the name of something in the target directory.
+     * @return true if it belongs to the app.
+     */
+    private static boolean isCatalogFile(Path name) {
+
+        return name.toString().startsWith(CatalogIndex.FILE_NAME);
+
+    }
+
+    /**
+     * The watcher loop. Waits for a first event, then keeps collecting until the
+     * directory is quiet or the batch is too old, then sends the batch.
+     */
+    private void run() {
+
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                collect(watchService.take(), changed);
+
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                WatchKey key;
+                while (System.currentTimeMillis() < deadline
+                        && (key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null)
+                    collect(key, changed);
+
+                if (!changed.isEmpty())
+                    listener.accept(read(changed));
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed, stop watching
+        }
+
+    }
+
+    /**
+     * Turns the events of one key into the names of the folders they affect.
+     * @param key the signalled key.
+     * @param changed where the folder names are collected.
+     */
+    private void collect(WatchKey key, Set<String> changed) {
+
+        String owner = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, every folder we know of may have changed
+                for (String folder : keys.values())
+                    if (folder != null)
+                        changed.add(folder);
+                continue;
+            }
+
+            Path name = (Path)event.context();
+            if (owner != null) {
+                // Something inside a movie folder changed
+                changed.add(owner);
+            } else if (!isCatalogFile(name)) {
+                // A folder in the target directory was added, removed or changed
+                Path folder = directory.resolve(name);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(folder)) {
+                    try {
+                        keys.put(register(folder), name.toString());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                changed.add(name.toString());
+            }
+        }
+
+        // A key that can't be reset belongs to a folder that is gone
+        if (!key.reset())
+            keys.remove(key);
+
+    }
+
+    /**
+     * Reads the folders of a batch.
+     * @param changed the folder names.
+     * @return the movie in each folder, or null where there is none.
+     */
+    private Map<String, MovieModel> read(Set<String> changed) {
+
+        Map<String, MovieModel> batch = new HashMap<>();
+        for (String folder : changed)
+            batch.put(folder, CatalogIndex.readMovie(directory.resolve(folder).toFile()));
+        return batch;
+
+    }
+
+}
@@ -0,0 +1,263 @@
+package land.spooky.media.models;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Remembers how far an export got, so one that was cancelled by closing the app or a
+ * failing drive carries on from there instead of copying 50 GB again. An export is
+ * written to a part file next to its target, and every chunk that is safely on disk is
+ * added to a journal next to that:
+ *
+ *   header   "MCEJ", the path, size and modified time of the source, the chunk size
+ *   records  the offset, length and CRC32 of each chunk, in order
+ *
+ * A record is only written after its chunk was forced to disk, so the journal never
+ * claims more than the part file has. When an export starts again the journal is
+ * checked against the source, the last chunk it lists is read back and checked against
+ * its CRC, and the copy goes on from the end of it. A journal that doesn't match is
+ * thrown away with its part file and the export starts over.
+ */
+public final class ExportJournal implements Closeable {
+
+    /**
+     * Added to the name of the target for the file being written.
+     */
+    public static final String PART_SUFFIX = ".part";
+
+    /**
+     * Added to the name of the part file for its journal.
+     */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * "MCEJ", marks a file as an export journal.
+     */
+    private static final int MAGIC = 0x4D43454A;
+
+    private static final int RECORD_SIZE = 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private long verified;
+
+
+    private ExportJournal(FileChannel channel, long verified) {
+
+        this.channel = channel;
+        this.verified = verified;
+
+    }
+
+    /**
+     * @return the file an export is written to until it is done.
+     */
+    public static File partFile(File target) {
+
+        return new File(target.getPath() + PART_SUFFIX);
+
+    }
+
+    /**
+     * @return the journal of an export.
+     */
+    public static File journalFile(File target) {
+
+        return new File(target.getPath() + PART_SUFFIX + JOURNAL_SUFFIX);
+
+    }
+
+    /**
+     * Opens the journal of an export, or starts one.
+     * @param source the file being exported.
+     * @param target where it goes.
+     * @param chunkSize how big the chunks are.
+     * @return the journal, whose verified length is where the copy goes on from.
+     * @throws IOException if the journal couldn't be read or written.
+     */
+    public static ExportJournal open(File source, File target, int chunkSize) throws IOException {
+
+        File journal = journalFile(target);
+        byte[] header = header(source, chunkSize);
+        FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long verified = resume(channel, header, partFile(target));
+            if (verified < 0) {
+                // Nothing to go on from, start over
+                partFile(target).delete();
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(header), 0);
+                channel.force(true);
+                verified = 0;
+            }
+            channel.position(channel.size());
+            return new ExportJournal(channel, verified);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Deletes the part file and journal of an export, when it is cancelled or done.
+     * @param target where the export was going.
+     */
+    public static void discard(File target) {
+
+        partFile(target).delete();
+        journalFile(target).delete();
+
+    }
+
+    /**
+     * @return how many bytes from the start of the part file are known to be right.
+     */
+    public long getVerified() {
+
+        return verified;
+
+    }
+
+    /**
+     * Records a chunk, which must already be forced to disk and follow the last one.
+     * @param offset where the chunk starts.
+     * @param length how long it is.
+     * @param crc the CRC32 of its bytes.
+     * @throws IOException if the journal couldn't be written.
+     */
+    public void record(long offset, int length, int crc) throws IOException {
+
+        if (offset != verified)
+            throw new IOException("Chunk at " + offset + " doesn't follow the journal, which ends at " + verified);
+        record.clear();
+        record.putLong(offset).putInt(length).putInt(crc).flip();
+        while (record.hasRemaining())
+            channel.write(record);
+        channel.force(false);
+        verified += length;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        channel.close();
+
+    }
+
+    /**
+     * Reads a journal and checks it.
+     * @return the verified length, or -1 if the journal is no good.
+     */
+    private static long resume(FileChannel channel, byte[] header, File part) throws IOException {
+
+        if (channel.size() < header.length)
+            return -1;
+        ByteBuffer stored = ByteBuffer.allocate(header.length);
+        while (stored.hasRemaining() && channel.read(stored, stored.position()) >= 0) {
+            // Read the whole header
+        }
+        stored.flip();
+        if (!stored.equals(ByteBuffer.wrap(header)))
+            return -1;
+
+        // The records, as far as they follow each other. A torn last one is dropped.
+        long count = (channel.size() - header.length) / RECORD_SIZE;
+        ByteBuffer records = ByteBuffer.allocate((int)Math.min(count * RECORD_SIZE, Integer.MAX_VALUE));
+        while (records.hasRemaining() && channel.read(records, header.length + records.position()) >= 0) {
+            // Read every record
+        }
+        records.flip();
+        long verified = 0;
+        long valid = 0;
+        long lastOffset = -1;
+        int lastLength = 0;
+        int lastCrc = 0;
+        while (records.remaining() >= RECORD_SIZE) {
+            long offset = records.getLong();
+            int length = records.getInt();
+            int crc = records.getInt();
+            if (offset != verified || length <= 0)
+                break;
+            lastOffset = offset;
+            lastLength = length;
+            lastCrc = crc;
+            verified += length;
+            valid++;
+        }
+        if (lastOffset < 0) {
+            channel.truncate(header.length);
+            return 0;
+        }
+        if (part.length() < verified)
+            return -1;
+
+        // The last chunk is read back, in case the part file was touched since
+        try (FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+            if (crc(in, lastOffset, lastLength) != lastCrc) {
+                verified = lastOffset;
+                valid--;
+            }
+        }
+        channel.truncate(header.length + valid * RECORD_SIZE);
+        return verified;
+
+    }
+
+    /**
+     * @return the CRC32 of some of a file, as an int.
+     */
+    static int crc(FileChannel in, long offset, int length) throws IOException {
+
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.min(length, FileCopier.BUFFER_SIZE));
+        long end = offset + length;
+        while (offset < end) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), end - offset));
+            int read = in.read(buffer, offset);
+            if (read < 0)
+                break;
+            buffer.flip();
+            crc.update(buffer);
+            offset += read;
+        }
+        return (int)crc.getValue();
+
+    }
+
+    /**
+     * @return the header a journal of the export of a source has.
+     */
+    private static byte[] header(File source, int chunkSize) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            byte[] path = source.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(path.length);
+            out.write(path);
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+            out.writeInt(chunkSize);
+        }
+        return bytes.toByteArray();
+
+    }
+
+}
@@ -0,0 +1,390 @@
+package land.spooky.media.models;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Copies large files, like a movie being exported or moved to another drive, with file
+ * channels instead of streams. Within one drive the copy is handed to the operating
+ * system with transferTo, a chunk at a time so progress can still be reported, and the
+ * bytes never come up into Java. Between drives, where the system would fall back to
+ * mapping the source a piece at a time anyway, it reads and writes through one large
+ * direct buffer, which keeps the number of system calls low without touching the heap.
+ * A transfer the system won't do switches to the buffer where it stopped.
+ */
+public final class FileCopier {
+
+    /**
+     * How many bytes are handed to transferTo at a time, and so how often progress is
+     * reported within one drive.
+     */
+    public static final long CHUNK_SIZE = 16L << 20;
+
+    /**
+     * The size of the direct buffer used between drives.
+     */
+    public static final int BUFFER_SIZE = 4 << 20;
+
+    /**
+     * How many chunks each thread of a parallel export copies per round, before the
+     * speed of the round is measured.
+     */
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    /**
+     * How much faster a round has to be to try twice as many threads.
+     */
+    private static final double PARALLEL_GAIN = 1.15;
+
+    /**
+     * Smaller exports aren't worth measuring and are always copied in order.
+     */
+    private static final long PARALLEL_MIN_SIZE = 256L << 20;
+
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "copy-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Hears how far a copy is.
+     */
+    public interface Progress {
+
+        /**
+         * Some more of the file was copied.
+         * @param copied the bytes copied so far.
+         * @param total the size of the file.
+         */
+        void copied(long copied, long total);
+
+        /**
+         * An export carries on from where an earlier one stopped. Until now these bytes
+         * weren't copied; from now on they count as copied, without having taken any
+         * time.
+         * @param copied the bytes copied before.
+         * @param total the size of the file.
+         */
+        default void resumed(long copied, long total) {
+
+            copied(copied, total);
+
+        }
+
+    }
+
+    private FileCopier() {
+
+    }
+
+    /**
+     * Copies a file, replacing the target if it exists. The copy is forced to disk
+     * before this returns.
+     * @param source the file to copy.
+     * @param target where to copy it.
+     * @param progress told after every chunk, may be null.
+     * @return the number of bytes copied.
+     * @throws IOException if the copy failed; the target is left as far as it got. An
+     * interrupted copy closes its channels and stops with a ClosedByInterruptException.
+     */
+    public static long copy(File source, File target, Progress progress) throws IOException {
+
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            if (sameStore(source.toPath(), target.toPath()))
+                position = transfer(in, out, size, progress);
+            if (position < size)
+                position = buffered(in, out, position, size, progress);
+            out.force(true);
+            return position;
+        }
+
+    }
+
+    /**
+     * Exports a file one chunk at a time, see export(File, File, Progress, int).
+     */
+    public static long export(File source, File target, Progress progress) throws IOException {
+
+        return export(source, target, progress, 1);
+
+    }
+
+    /**
+     * Exports a file so that it can be picked up again if it stops, see ExportJournal.
+     * The copy goes to a part file a chunk at a time, each chunk forced to disk and its
+     * checksum journaled, and the part file replaces the target once it is whole. An
+     * export of the same source to the same target that stopped before carries on
+     * after its last verified chunk.
+     *
+     * The bytes have to pass through a buffer to be checksummed, so this doesn't use
+     * transferTo; the direct buffer keeps it close.
+     *
+     * Fast drives, like NVMe or RAID, only reach their speed with several requests in
+     * flight. With a parallelism above 1 a large export is copied in rounds of chunks,
+     * each round split between threads that read and write at their own positions of
+     * the same channels. The first round uses one thread and each next one twice as
+     * many, for as long as that makes the copy at least PARALLEL_GAIN faster; then it
+     * stays with the best, so a hard drive that slows down from seeking goes back to
+     * one thread after two rounds. The part file is extended to its full size first, so
+     * the threads never have to grow it.
+     * @param source the file to export.
+     * @param target where to export it.
+     * @param progress told after every chunk, may be null.
+     * @param maxParallel the most threads to copy with, 1 to copy in order.
+     * @return the number of bytes copied, this time.
+     * @throws IOException if the export failed; the part file and journal are kept so it
+     * can go on later. An interrupted export stops with a ClosedByInterruptException.
+     */
+    public static long export(File source, File target, Progress progress, int maxParallel) throws IOException {
+
+        File part = ExportJournal.partFile(target);
+        long start;
+        long size;
+        try (ExportJournal journal = ExportJournal.open(source, target, (int)CHUNK_SIZE);
+             FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            size = in.size();
+            start = journal.getVerified();
+            // Whatever is past the last verified chunk is written again
+            out.truncate(start);
+            if (progress != null && start > 0)
+                progress.resumed(start, size);
+
+            if (maxParallel > 1 && size - start >= PARALLEL_MIN_SIZE) {
+                out.write(ByteBuffer.wrap(new byte[1]), size - 1);
+                parallel(in, out, journal, start, size, progress, maxParallel);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                for (long position = start; position < size; ) {
+                    int length = (int)Math.min(CHUNK_SIZE, size - position);
+                    int crc = copyChunk(in, out, position, length, buffer);
+                    // On disk before the journal says so
+                    out.force(false);
+                    journal.record(position, length, crc);
+                    position += length;
+                    if (progress != null)
+                        progress.copied(position, size);
+                }
+            }
+            out.force(true);
+        }
+
+        if (!IOHelper.replaceFile(part, target))
+            throw new IOException("Couldn't rename " + part + " to " + target);
+        ExportJournal.journalFile(target).delete();
+        return size - start;
+
+    }
+
+    /**
+     * Copies the rest of an export in rounds of chunks, adapting the number of threads
+     * to the speed of each round.
+     */
+    private static void parallel(FileChannel in, FileChannel out, ExportJournal journal, long position, long size,
+                                 Progress progress, int maxParallel) throws IOException {
+
+        long[] copied = {position};
+        int parallel = 1;
+        int bestParallel = 1;
+        double best = 0;
+        boolean settled = false;
+
+        while (position < size) {
+            // The chunks of this round
+            int count = (int)Math.min(parallel * CHUNKS_PER_THREAD, (size - position + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            int[] crcs = new int[count];
+            long roundStart = position;
+            for (int i = 0; i < count; i++) {
+                offsets[i] = position;
+                lengths[i] = (int)Math.min(CHUNK_SIZE, size - position);
+                position += lengths[i];
+            }
+
+            // Each thread takes the next chunk until there are none left
+            long started = System.nanoTime();
+            AtomicInteger next = new AtomicInteger();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < Math.min(parallel, count); t++)
+                workers.add(POOL.submit(() -> {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                    for (int i; (i = next.getAndIncrement()) < count; ) {
+                        crcs[i] = copyChunk(in, out, offsets[i], lengths[i], buffer);
+                        if (progress != null)
+                            synchronized (copied) {
+                                copied[0] += lengths[i];
+                                progress.copied(copied[0], size);
+                            }
+                    }
+                    return null;
+                }));
+            await(workers);
+
+            // The whole round is on disk, so it can all be journaled in order
+            out.force(false);
+            for (int i = 0; i < count; i++)
+                journal.record(offsets[i], lengths[i], crcs[i]);
+
+            double speed = (position - roundStart) / ((System.nanoTime() - started) / 1e9);
+            if (settled)
+                continue;
+            if (speed > best * PARALLEL_GAIN) {
+                best = speed;
+                bestParallel = parallel;
+                if (parallel * 2 <= maxParallel)
+                    parallel *= 2;
+                else
+                    settled = true;
+            } else {
+                parallel = bestParallel;
+                settled = true;
+            }
+        }
+
+    }
+
+    /**
+     * Waits for the threads of a round. If one fails or this thread is interrupted, the
+     * others are stopped too.
+     */
+    private static void await(List<Future<?>> workers) throws IOException {
+
+        try {
+            for (Future<?> worker : workers)
+                worker.get();
+        } catch (InterruptedException e) {
+            for (Future<?> worker : workers)
+                worker.cancel(true);
+            throw new ClosedByInterruptException();
+        } catch (ExecutionException e) {
+            for (Future<?> worker : workers)
+                worker.cancel(true);
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+
+    }
+
+    /**
+     * Copies one chunk at its own position, leaving the positions of the channels alone.
+     * @return the CRC32 of the chunk, as an int.
+     */
+    private static int copyChunk(FileChannel in, FileChannel out, long offset, int length, ByteBuffer buffer)
+            throws IOException {
+
+        CRC32 crc = new CRC32();
+        long end = offset + length;
+        for (long at = offset; at < end; ) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), end - at));
+            if (in.read(buffer, at) < 0)
+                throw new IOException("The source ended at byte " + at);
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining())
+                at += out.write(buffer, at);
+        }
+        return (int)crc.getValue();
+
+    }
+
+    /**
+     * Copies with transferTo until done, or until the system stops taking chunks.
+     * @return the position reached.
+     * @throws ClosedChannelException if the copy was interrupted, which closes both.
+     */
+    private static long transfer(FileChannel in, FileChannel out, long size, Progress progress)
+            throws ClosedChannelException {
+
+        long position = 0;
+        try {
+            while (position < size) {
+                long sent = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+                if (sent <= 0)
+                    break;
+                position += sent;
+                if (progress != null)
+                    progress.copied(position, size);
+            }
+        } catch (ClosedChannelException e) {
+            throw e;
+        } catch (IOException e) {
+            // Not every file system can do it, the buffer carries on from here
+        }
+        return position;
+
+    }
+
+    /**
+     * Copies through a direct buffer.
+     * @return the position reached, which is the size.
+     */
+    private static long buffered(FileChannel in, FileChannel out, long position, long size, Progress progress)
+            throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        out.position(position);
+        long reported = position;
+        while (position < size) {
+            buffer.clear();
+            int read = in.read(buffer, position);
+            if (read < 0)
+                throw new IOException("The source ended at byte " + position + " of " + size);
+            buffer.flip();
+            while (buffer.hasRemaining())
+                out.write(buffer);
+            position += read;
+            if (progress != null && (position - reported >= CHUNK_SIZE || position == size)) {
+                progress.copied(position, size);
+                reported = position;
+            }
+        }
+        return position;
+
+    }
+
+    /**
+     * @return true if both files are on the same drive, as far as can be told.
+     */
+    private static boolean sameStore(Path source, Path target) {
+
+        try {
+            FileStore from = Files.getFileStore(source);
+            Path dir = target.toAbsolutePath().getParent();
+            return dir != null && from.equals(Files.getFileStore(Files.exists(target) ? target : dir));
+        } catch (IOException e) {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,323 @@
+package land.spooky.media.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * A typo tolerant index over the words of every title. Each distinct title word is
+ * split into trigrams, plus its first and last letter so that a swap in a short word
+ * still leaves something in common, and a query word is compared only against the
+ * words that share enough trigrams with it to possibly be within the allowed edit
+ * distance. Those few are then checked with a bounded edit distance, where swapping
+ * two neighbouring letters counts as one edit like any other typo.
+ *
+ * Like the exact index, a movie matches if every query word matches one of its title
+ * words. Movies are ranked by how close the words were. The index is read from the
+ * search thread and written from the JavaFX thread, so every method is synchronized.
+ */
+public final class FuzzyIndex implements Catalog.Listener {
+
+    /**
+     * Every distinct title word, by word id. Words no movie uses anymore become null.
+     */
+    private final ArrayList<String> words = new ArrayList<>();
+
+    /**
+     * The id of every title word.
+     */
+    private final HashMap<String, Integer> wordIds = new HashMap<>();
+
+    /**
+     * The movies that use each word, by word id, sorted.
+     */
+    private final ArrayList<IntList> movies = new ArrayList<>();
+
+    /**
+     * The word ids that contain each trigram, sorted.
+     */
+    private final HashMap<String, IntList> trigrams = new HashMap<>();
+
+    /**
+     * Ids of words that are gone, ready to be reused.
+     */
+    private final IntList freeWordIds = new IntList();
+
+    /**
+     * One more than the highest movie id seen.
+     */
+    private int capacity = 0;
+
+
+    /**
+     * Indexes the title of a movie.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie.
+     */
+    @Override
+    public synchronized void movieAdded(int id, MovieModel movie) {
+
+        capacity = Math.max(capacity, id + 1);
+        for (String word : SearchIndex.tokenize(movie.getTitle())) {
+            Integer wordId = wordIds.get(word);
+            if (wordId == null)
+                wordId = addWord(word);
+            movies.get(wordId).addSorted(id);
+        }
+
+    }
+
+    /**
+     * Removes the title of a movie from the index.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie, as it was indexed.
+     */
+    @Override
+    public synchronized void movieRemoved(int id, MovieModel movie) {
+
+        for (String word : SearchIndex.tokenize(movie.getTitle())) {
+            Integer wordId = wordIds.get(word);
+            if (wordId == null)
+                continue;
+            IntList list = movies.get(wordId);
+            list.removeSorted(id);
+            if (list.size() == 0)
+                removeWord(wordId);
+        }
+
+    }
+
+    /**
+     * Finds the movies whose title is close to a query.
+     * @param query what the user typed.
+     * @return the ids of the matching movies, closest first.
+     */
+    public synchronized int[] search(String query) {
+
+        List<String> terms = SearchIndex.tokenize(query);
+        if (terms.isEmpty())
+            return new int[0];
+
+        float[] score = new float[capacity];
+        int[] matched = new int[capacity];
+        IntList hits = new IntList();
+
+        for (int t = 0; t < terms.size(); t++) {
+            // The best similarity of any of the movie's words to this term
+            float[] best = new float[capacity];
+            IntList touched = new IntList();
+            for (int[] match : closeWords(terms.get(t))) {
+                float similarity = 1f - (float)match[1] / Math.max(terms.get(t).length(), words.get(match[0]).length());
+                IntList list = movies.get(match[0]);
+                for (int i = 0; i < list.size(); i++) {
+                    int id = list.get(i);
+                    if (matched[id] != t)
+                        continue;
+                    if (best[id] == 0)
+                        touched.add(id);
+                    best[id] = Math.max(best[id], similarity);
+                }
+            }
+
+            for (int i = 0; i < touched.size(); i++) {
+                int id = touched.get(i);
+                matched[id] = t + 1;
+                score[id] += best[id];
+            }
+            hits = touched;
+        }
+
+        // Closest first, ties in id order
+        Integer[] ranked = new Integer[hits.size()];
+        for (int i = 0; i < ranked.length; i++)
+            ranked[i] = hits.get(i);
+        Arrays.sort(ranked, (a, b) -> score[a] != score[b] ? Float.compare(score[b], score[a]) : a - b);
+        int[] ids = new int[ranked.length];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = ranked[i];
+        return ids;
+
+    }
+
+    /**
+     * How many edits a query word may be away from a title word. Short words have to
+     * match exactly, otherwise almost everything would match them.
+     * @param length the length of the query word.
+     * @return the largest allowed edit distance.
+     */
+    public static int maxDistance(int length) {
+
+        if (length <= 3)
+            return 0;
+        if (length <= 6)
+            return 1;
+        return 2;
+
+    }
+
+    /**
+     * Finds the title words within the allowed edit distance of a query word.
+     * @param term the query word.
+     * @return pairs of word id and edit distance.
+     */
+    private List<int[]> closeWords(String term) {
+
+        List<int[]> close = new ArrayList<>();
+        int maxDistance = maxDistance(term.length());
+        if (maxDistance == 0) {
+            Integer wordId = wordIds.get(term);
+            if (wordId != null)
+                close.add(new int[] {wordId, 0});
+            return close;
+        }
+
+        // Count shared trigrams. Every edit breaks at most four of them.
+        List<String> termTrigrams = trigrams(term);
+        int needed = Math.max(1, termTrigrams.size() - 4 * maxDistance);
+        int[] shared = new int[words.size()];
+        IntList candidates = new IntList();
+        for (String trigram : termTrigrams) {
+            IntList list = trigrams.get(trigram);
+            if (list == null)
+                continue;
+            for (int i = 0; i < list.size(); i++) {
+                int wordId = list.get(i);
+                if (shared[wordId]++ == 0)
+                    candidates.add(wordId);
+            }
+        }
+
+        for (int i = 0; i < candidates.size(); i++) {
+            int wordId = candidates.get(i);
+            if (shared[wordId] < needed)
+                continue;
+            String word = words.get(wordId);
+            int distance = distance(term, word, maxDistance);
+            if (distance <= maxDistance)
+                close.add(new int[] {wordId, distance});
+        }
+        return close;
+
+    }
+
+    /**
+     * The edit distance between two words, counting insertions, deletions, changes
+     * and swaps of neighbouring letters, giving up once it is sure to be more than a
+     * bound.
+     * @param a the first word.
+     * @param b the second word.
+     * @param max the bound.
+     * @return the distance, or max + 1 if it is more than max.
+     */
+    public static int distance(String a, String b, int max) {
+
+        if (Math.abs(a.length() - b.length()) > max)
+            return max + 1;
+
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+            previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max)
+                return max + 1;
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return Math.min(previous[b.length()], max + 1);
+
+    }
+
+    /**
+     * Splits a word into trigrams, padded so the start and end of the word count too,
+     * and adds the first and last letter on their own.
+     * @param word the word.
+     * @return its trigrams, without duplicates.
+     */
+    private static List<String> trigrams(String word) {
+
+        String padded = "$" + word + "$";
+        List<String> grams = new ArrayList<>();
+        grams.add(padded.substring(0, 2));
+        grams.add(padded.substring(padded.length() - 2));
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String gram = padded.substring(i, i + 3);
+            if (!grams.contains(gram))
+                grams.add(gram);
+        }
+        return grams;
+
+    }
+
+    /**
+     * Adds a word to the vocabulary and the trigram index.
+     * @param word the word.
+     * @return its word id.
+     */
+    private int addWord(String word) {
+
+        int wordId;
+        if (freeWordIds.size() > 0) {
+            wordId = freeWordIds.removeAt(freeWordIds.size() - 1);
+            words.set(wordId, word);
+            movies.set(wordId, new IntList());
+        } else {
+            wordId = words.size();
+            words.add(word);
+            movies.add(new IntList());
+        }
+        wordIds.put(word, wordId);
+
+        for (String trigram : trigrams(word)) {
+            IntList list = trigrams.get(trigram);
+            if (list == null) {
+                list = new IntList();
+                trigrams.put(trigram, list);
+            }
+            list.addSorted(wordId);
+        }
+        return wordId;
+
+    }
+
+    /**
+     * Removes a word no movie uses anymore.
+     * @param wordId the word id.
+     */
+    private void removeWord(int wordId) {
+
+        String word = words.get(wordId);
+        for (String trigram : trigrams(word)) {
+            IntList list = trigrams.get(trigram);
+            list.removeSorted(wordId);
+            if (list.size() == 0)
+                trigrams.remove(trigram);
+        }
+        wordIds.remove(word);
+        words.set(wordId, null);
+        movies.set(wordId, null);
+        freeWordIds.add(wordId);
+
+    }
+
+}
@@ -0,0 +1,362 @@
+package land.spooky.media.models;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Keeps the answers of web servers on disk, so scraping a page or downloading a poster
+ * again costs no request at all while the answer is fresh, as long as its Cache-Control
+ * max-age or Expires allow, a request that says "not modified" instead of the whole
+ * body after that, and no request either when offline. The WebClient uses it when it
+ * is given one.
+ *
+ * Each URL is one file in the cache folder, named by the SHA-1 of the URL: the time the
+ * answer is fresh until, the URL, its ETag, Last-Modified and Content-Type, then the
+ * body. Text bodies are gzipped,
+ * images are kept as they are since they are compressed already. The folder has a size
+ * limit, and when it is over the least recently used entries go first; an entry counts
+ * as used when it is read, which touches its file, so the order survives a restart.
+ */
+public final class HttpCache {
+
+    /**
+     * The name of the cache folder in the target directory. It starts with the name of
+     * the catalog index, so the watcher ignores it the same way.
+     */
+    public static final String DIR_NAME = CatalogIndex.FILE_NAME + ".http";
+
+    /**
+     * "MCHC", marks a file as a cache entry.
+     */
+    private static final int MAGIC = 0x4D434843;
+
+    /**
+     * Version 2 added the time an entry is fresh until.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Where the time an entry is fresh until is, after the magic and the version.
+     */
+    private static final int FRESH_UNTIL_OFFSET = 8;
+
+    private final File dir;
+    private final long maxBytes;
+
+    /**
+     * The size of every entry by file name, least recently used first.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+
+    /**
+     * Opens the cache in a folder, making it if it isn't there.
+     * @param dir the folder.
+     * @param maxBytes how big the entries may get altogether.
+     */
+    public HttpCache(File dir, long maxBytes) {
+
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        dir.mkdirs();
+
+        // Oldest first, so the least recently used are evicted first
+        File[] files = dir.listFiles((folder, name) -> name.endsWith(".entry"));
+        if (files == null)
+            return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            entries.put(file.getName(), file.length());
+            bytes += file.length();
+        }
+
+    }
+
+    /**
+     * Looks a URL up.
+     * @param url the URL.
+     * @return the cached answer, or null if there is none.
+     */
+    public Entry get(String url) {
+
+        File file = file(url);
+        synchronized (this) {
+            if (entries.get(file.getName()) == null) {
+                misses++;
+                return null;
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                forget(file);
+                return null;
+            }
+            long freshUntil = in.readLong();
+            if (!in.readUTF().equals(url)) {
+                // Another URL with the same hash, as good as never
+                forget(file);
+                return null;
+            }
+            Entry entry = new Entry(file, freshUntil, optional(in.readUTF()), optional(in.readUTF()),
+                    optional(in.readUTF()), in.readBoolean());
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                hits++;
+            }
+            return entry;
+        } catch (IOException e) {
+            // Gone or broken, either way there is nothing cached
+            forget(file);
+            return null;
+        }
+
+    }
+
+    /**
+     * Stores an answer, replacing what was cached for the URL.
+     * @param url the URL.
+     * @param etag the ETag header, may be null.
+     * @param lastModified the Last-Modified header, may be null.
+     * @param contentType the Content-Type header, may be null.
+     * @param freshUntil the time in milliseconds the answer may be used until without
+     *                   asking the server, 0 to always ask.
+     * @param body the body, read to the end but not closed.
+     * @return the new entry.
+     * @throws IOException if the body couldn't be read or the entry written.
+     */
+    public Entry put(String url, String etag, String lastModified, String contentType, long freshUntil,
+            InputStream body) throws IOException {
+
+        File file = file(url);
+        File temp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        boolean compressed = contentType == null || !contentType.toLowerCase().startsWith("image/");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(freshUntil);
+            out.writeUTF(url);
+            out.writeUTF(etag == null ? "" : etag);
+            out.writeUTF(lastModified == null ? "" : lastModified);
+            out.writeUTF(contentType == null ? "" : contentType);
+            out.writeBoolean(compressed);
+            OutputStream data = compressed ? new GZIPOutputStream(out, 16384) : out;
+            byte[] buffer = new byte[16384];
+            for (int read; (read = body.read(buffer)) >= 0; )
+                data.write(buffer, 0, read);
+            if (compressed)
+                ((GZIPOutputStream)data).finish();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!IOHelper.replaceFile(temp, file)) {
+            temp.delete();
+            throw new IOException("Couldn't write the cache entry for " + url);
+        }
+
+        synchronized (this) {
+            Long old = entries.put(file.getName(), file.length());
+            bytes += file.length() - (old == null ? 0 : old);
+            evict(file.getName());
+        }
+        return new Entry(file, freshUntil, etag, lastModified, contentType, compressed);
+
+    }
+
+    /**
+     * Makes an entry fresh for longer, when the server said it wasn't modified.
+     * @param entry the entry.
+     * @param freshUntil the time in milliseconds it may be used until without asking
+     *                   the server, 0 to always ask.
+     * @return the entry with its new time, or the old one if the file couldn't be written.
+     */
+    public Entry refresh(Entry entry, long freshUntil) {
+
+        try (RandomAccessFile file = new RandomAccessFile(entry.file, "rw")) {
+            file.seek(FRESH_UNTIL_OFFSET);
+            file.writeLong(freshUntil);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return entry;
+        }
+        return new Entry(entry.file, freshUntil, entry.etag, entry.lastModified, entry.contentType,
+                entry.compressed);
+
+    }
+
+    /**
+     * @return how many lookups found an entry and how many didn't.
+     */
+    public synchronized long[] getCounts() {
+
+        return new long[] {hits, misses};
+
+    }
+
+    /**
+     * @return the size of every entry together, in bytes.
+     */
+    public synchronized long size() {
+
+        return bytes;
+
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its limit.
+     * @param keep an entry not to delete, the one just written.
+     */
+    private void evict(String keep) {
+
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep))
+                continue;
+            bytes -= entry.getValue();
+            evicted.add(entry.getKey());
+            eldest.remove();
+        }
+        for (String name : evicted)
+            new File(dir, name).delete();
+
+    }
+
+    private synchronized void forget(File file) {
+
+        misses++;
+        Long size = entries.remove(file.getName());
+        if (size != null)
+            bytes -= size;
+        file.delete();
+
+    }
+
+    /**
+     * @return the file of a URL's entry.
+     */
+    private File file(String url) {
+
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash)
+                name.append(String.format("%02x", b));
+            return new File(dir, name + ".entry");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has SHA-1
+            throw new IllegalStateException(e);
+        }
+
+    }
+
+    private static String optional(String value) {
+
+        return value.isEmpty() ? null : value;
+
+    }
+
+    /**
+     * One cached answer.
+     */
+    public static final class Entry {
+
+        private final File file;
+        private final long freshUntil;
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+        private final boolean compressed;
+
+        private Entry(File file, long freshUntil, String etag, String lastModified, String contentType,
+                boolean compressed) {
+            this.file = file;
+            this.freshUntil = freshUntil;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.compressed = compressed;
+        }
+
+        /**
+         * @return true if the answer may still be used without asking the server.
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < freshUntil;
+        }
+
+        /**
+         * @return the ETag the server gave, may be null.
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return the Last-Modified the server gave, may be null.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the Content-Type the server gave, may be null.
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Opens the body.
+         * @return the body, unzipped. The caller closes it.
+         * @throws IOException if the entry can't be read.
+         */
+        public InputStream open() throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16384));
+            try {
+                in.readInt();
+                in.readInt();
+                in.readLong();
+                for (int i = 0; i < 4; i++)
+                    in.readUTF();
+                in.readBoolean();
+                return compressed ? new GZIPInputStream(in, 16384) : in;
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+    }
+
+}
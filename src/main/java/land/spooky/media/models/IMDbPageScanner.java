@@ -0,0 +1,403 @@
+package land.spooky.media.models;
+
+import org.jsoup.parser.Parser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Reads the metadata off the HTML of an IMDb title page in one pass, without building
+ * a document. The page is walked tag by tag and only the tags that can start a field
+ * have their attributes read:
+ *
+ *   title         the text of the h1 in .title_wrapper, without the year in it
+ *   year          the text of the first child of #titleYear
+ *   info          the text of .subtext
+ *   description   the text of .summary_text
+ *   poster        the src of the img in the first link in .poster
+ *
+ * The text of a field is collected while its element is open, so fields inside each
+ * other, like the year inside the title, come out of the same pass. The summary is the
+ * last of them on the page, so once it is found the rest of the page, which is most of
+ * it, is never looked at.
+ *
+ * The text is the same as Element.text() of jsoup gives for these elements: entities
+ * decoded, runs of whitespace as one space and trimmed.
+ */
+public final class IMDbPageScanner {
+
+    private static final int TITLE = 0;
+    private static final int YEAR = 1;
+    private static final int INFO = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int FIELDS = 4;
+
+    /**
+     * Elements that never have an end tag.
+     */
+    private static final Set<String> VOID = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source",
+            "track", "wbr"));
+
+    /**
+     * Elements that jsoup puts a space around when it collects text.
+     */
+    private static final Set<String> BLOCK = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "br", "dd", "div", "dl", "dt", "footer", "h1", "h2",
+            "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre", "section", "table",
+            "td", "th", "tr", "ul"));
+
+    private final String html;
+    private final String[] fields = new String[FIELDS];
+    private String poster;
+
+    // The fields being collected: the tag that ends each, how many tags of that name
+    // are open inside it and its text so far
+    private final String[] openTag = new String[FIELDS];
+    private final int[] depth = new int[FIELDS];
+    private final StringBuilder[] text = new StringBuilder[FIELDS];
+
+    /**
+     * How many elements are open inside the title's h1, 0 when the scan is right in it.
+     */
+    private int titleChildren = 0;
+
+    // Fields that start at a tag after the one that marks them
+    private boolean inTitleWrapper = false;
+    private boolean afterTitleYear = false;
+    private int posterStep = 0;
+
+
+    private IMDbPageScanner(String html) {
+
+        this.html = html;
+
+    }
+
+    /**
+     * Reads the metadata off a title page.
+     * @param html the HTML of the page.
+     * @param link the link to the page, kept in the metadata.
+     * @return the metadata, with null for every field that wasn't on the page.
+     */
+    public static Metadata scan(String html, String link) {
+
+        IMDbPageScanner scanner = new IMDbPageScanner(html);
+        scanner.scan();
+        return new Metadata(scanner.fields[TITLE], scanner.fields[YEAR], scanner.fields[INFO],
+                scanner.fields[DESCRIPTION], scanner.poster, link);
+
+    }
+
+    private void scan() {
+
+        int length = html.length();
+        int at = 0;
+        while (at < length && !done()) {
+            int lt = html.indexOf('<', at);
+            if (lt < 0)
+                lt = length;
+            collect(at, lt);
+            if (lt >= length)
+                break;
+
+            // Comments, doctypes and the like hold no fields
+            if (html.startsWith("<!--", lt)) {
+                int end = html.indexOf("-->", lt + 4);
+                at = end < 0 ? length : end + 3;
+                continue;
+            }
+            char next = lt + 1 < length ? html.charAt(lt + 1) : ' ';
+            if (next == '!' || next == '?') {
+                int end = html.indexOf('>', lt);
+                at = end < 0 ? length : end + 1;
+                continue;
+            }
+
+            boolean closing = next == '/';
+            int nameStart = closing ? lt + 2 : lt + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < length && isNameChar(html.charAt(nameEnd)))
+                nameEnd++;
+            if (nameEnd == nameStart) {
+                // A lone '<' is text
+                collect(lt, lt + 1);
+                at = lt + 1;
+                continue;
+            }
+            String name = html.substring(nameStart, nameEnd).toLowerCase();
+            int gt = tagEnd(nameEnd);
+
+            if (closing) {
+                endTag(name);
+            } else {
+                boolean selfClosing = VOID.contains(name) || html.charAt(gt - 1) == '/';
+                startTag(name, nameEnd, gt, selfClosing);
+                // Scripts and styles hold no text
+                if (name.equals("script") || name.equals("style")) {
+                    int end = indexOfIgnoreCase("</" + name, gt);
+                    gt = end < 0 ? length - 1 : tagEnd(end + 2 + name.length());
+                }
+            }
+            at = gt + 1;
+        }
+
+    }
+
+    private void startTag(String name, int attributesStart, int gt, boolean selfClosing) {
+
+        space(name);
+        for (int field = 0; field < FIELDS; field++)
+            if (name.equals(openTag[field]) && !selfClosing)
+                depth[field]++;
+        if (openTag[TITLE] != null && !selfClosing)
+            titleChildren++;
+
+        String classes = null;
+        String id = null;
+        if (fields[TITLE] == null || fields[YEAR] == null || fields[INFO] == null || fields[DESCRIPTION] == null
+                || posterStep == 0) {
+            classes = attribute(attributesStart, gt, "class");
+            id = attribute(attributesStart, gt, "id");
+        }
+
+        if (afterTitleYear) {
+            afterTitleYear = false;
+            open(YEAR, name, selfClosing);
+        }
+        if (fields[YEAR] == null && openTag[YEAR] == null && "titleYear".equals(id))
+            afterTitleYear = true;
+
+        if (fields[TITLE] == null && openTag[TITLE] == null) {
+            if (hasClass(classes, "title_wrapper"))
+                inTitleWrapper = true;
+            if (inTitleWrapper && name.equals("h1"))
+                open(TITLE, name, selfClosing);
+        }
+        if (fields[INFO] == null && openTag[INFO] == null && hasClass(classes, "subtext"))
+            open(INFO, name, selfClosing);
+        if (fields[DESCRIPTION] == null && openTag[DESCRIPTION] == null && hasClass(classes, "summary_text"))
+            open(DESCRIPTION, name, selfClosing);
+
+        if (posterStep == 0 && hasClass(classes, "poster"))
+            posterStep = 1;
+        else if (posterStep == 1 && name.equals("a"))
+            posterStep = 2;
+        else if (posterStep == 2 && name.equals("img")) {
+            posterStep = 3;
+            String src = attribute(attributesStart, gt, "src");
+            poster = src == null ? "" : src;
+        }
+
+    }
+
+    private void endTag(String name) {
+
+        space(name);
+        if (openTag[TITLE] != null && titleChildren > 0)
+            titleChildren--;
+        for (int field = 0; field < FIELDS; field++)
+            if (name.equals(openTag[field]) && --depth[field] == 0)
+                close(field);
+
+    }
+
+    /**
+     * Starts collecting the text of a field.
+     */
+    private void open(int field, String tag, boolean selfClosing) {
+
+        if (selfClosing) {
+            fields[field] = "";
+            return;
+        }
+        openTag[field] = tag;
+        depth[field] = 1;
+        text[field] = new StringBuilder();
+        if (field == TITLE)
+            titleChildren = 0;
+
+    }
+
+    /**
+     * Finishes a field, the way jsoup would give its text.
+     */
+    private void close(int field) {
+
+        String collected = unescape(text[field].toString(), false);
+        StringBuilder normal = new StringBuilder(collected.length());
+        boolean space = false;
+        for (int i = 0; i < collected.length(); i++) {
+            char c = collected.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 160) {
+                space = normal.length() > 0;
+            } else {
+                if (space)
+                    normal.append(' ');
+                space = false;
+                normal.append(c);
+            }
+        }
+        fields[field] = normal.toString();
+        openTag[field] = null;
+        text[field] = null;
+
+    }
+
+    /**
+     * Adds the text between two tags to every field being collected. The title only
+     * takes the text right inside its h1, which leaves out the year.
+     */
+    private void collect(int from, int to) {
+
+        if (from >= to)
+            return;
+        for (int field = 0; field < FIELDS; field++)
+            if (openTag[field] != null && (field != TITLE || titleChildren == 0))
+                text[field].append(html, from, to);
+
+    }
+
+    /**
+     * Puts a space in the text being collected where a block element starts or ends.
+     */
+    private void space(String name) {
+
+        if (!BLOCK.contains(name))
+            return;
+        for (int field = 0; field < FIELDS; field++)
+            if (openTag[field] != null)
+                text[field].append(' ');
+
+    }
+
+    private boolean done() {
+
+        // The poster comes before the summary on the page, so once the text fields are
+        // found the poster is too, or the page has none
+        for (String field : fields)
+            if (field == null)
+                return false;
+        return true;
+
+    }
+
+    /**
+     * Finds the end of a tag, skipping '>' inside quoted attribute values.
+     * @return the index of the '>', or the last index if there is none.
+     */
+    private int tagEnd(int from) {
+
+        char quote = 0;
+        for (int i = from; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return html.length() - 1;
+
+    }
+
+    /**
+     * Reads an attribute of a tag.
+     * @param from the index after the tag name.
+     * @param to the index of the '>' that ends the tag.
+     * @param wanted the attribute name, lower case.
+     * @return the decoded value, or null if the tag doesn't have the attribute.
+     */
+    private String attribute(int from, int to, String wanted) {
+
+        int i = from;
+        while (i < to) {
+            while (i < to && (Character.isWhitespace(html.charAt(i)) || html.charAt(i) == '/'))
+                i++;
+            int nameStart = i;
+            while (i < to && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '='
+                    && html.charAt(i) != '/')
+                i++;
+            boolean match = i - nameStart == wanted.length() && html.regionMatches(true, nameStart, wanted, 0,
+                    wanted.length());
+            while (i < to && Character.isWhitespace(html.charAt(i)))
+                i++;
+            if (i >= to || html.charAt(i) != '=') {
+                if (match)
+                    return "";
+                continue;
+            }
+            i++;
+            while (i < to && Character.isWhitespace(html.charAt(i)))
+                i++;
+            int valueStart;
+            int valueEnd;
+            if (i < to && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                char quote = html.charAt(i);
+                valueStart = i + 1;
+                valueEnd = html.indexOf(quote, valueStart);
+                if (valueEnd < 0 || valueEnd > to)
+                    valueEnd = to;
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while (i < to && !Character.isWhitespace(html.charAt(i)))
+                    i++;
+                valueEnd = i;
+            }
+            if (match)
+                return unescape(html.substring(valueStart, valueEnd), true);
+        }
+        return null;
+
+    }
+
+    /**
+     * Decodes entities. Parser.unescapeEntities sets up a whole tokenizer, so it is only
+     * called when there is an entity to decode.
+     */
+    private static String unescape(String text, boolean inAttribute) {
+
+        return text.indexOf('&') < 0 ? text : Parser.unescapeEntities(text, inAttribute);
+
+    }
+
+    private int indexOfIgnoreCase(String wanted, int from) {
+
+        for (int i = html.indexOf('<', from); i >= 0; i = html.indexOf('<', i + 1))
+            if (html.regionMatches(true, i, wanted, 0, wanted.length()))
+                return i;
+        return -1;
+
+    }
+
+    private static boolean hasClass(String classes, String wanted) {
+
+        if (classes == null)
+            return false;
+        for (int at = classes.indexOf(wanted); at >= 0; at = classes.indexOf(wanted, at + 1)) {
+            int end = at + wanted.length();
+            if ((at == 0 || Character.isWhitespace(classes.charAt(at - 1)))
+                    && (end == classes.length() || Character.isWhitespace(classes.charAt(end))))
+                return true;
+        }
+        return false;
+
+    }
+
+    private static boolean isNameChar(char c) {
+
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == ':';
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package land.spooky.media.models;
+
+import java.io.IOException;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Gets metadata from the movie's IMDb page. Without a link, the title and year in the
+ * name of the file are matched against the OfflineIndex if there is one, and a match
+ * is used as it is, without asking IMDb. The movie is then missing its poster and
+ * plot, so the RefreshScheduler gets them from its page first. Anything the offline
+ * index doesn't know is searched for on IMDb.
+ */
+public final class IMDbProvider implements MetadataProvider {
+
+    /**
+     * Used to find movies by their file name without asking IMDb, may be null.
+     */
+    private volatile OfflineIndex offlineIndex;
+
+
+    /**
+     * Sets the offline index used to match file names to movies.
+     * @param offlineIndex the index, or null to search IMDb for every name.
+     */
+    public void setOfflineIndex(OfflineIndex offlineIndex) {
+
+        this.offlineIndex = offlineIndex;
+
+    }
+
+    @Override
+    public String getName() {
+
+        return "IMDb";
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return false;
+
+    }
+
+    @Override
+    public Metadata lookup(Request request) throws IOException {
+
+        String link = request.getLink();
+        if (link == null) {
+            if (request.getTitle().isEmpty())
+                return null;
+            // The offline metadata has no poster or plot, the refresher fills them in
+            // later from the page it links to
+            OfflineIndex index = offlineIndex;
+            Metadata offline = index == null ? null : index.find(request.getTitle(), request.getYear());
+            if (offline != null)
+                return offline;
+            link = IMDbScraper.find(request.getTitle(), request.getYear());
+            if (link == null)
+                return null;
+        }
+
+        return IMDbScraper.scrape(link);
+
+    }
+
+}
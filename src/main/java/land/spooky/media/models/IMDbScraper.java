@@ -6,12 +6,15 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author Daniel Gelber
  * @version 1.0
  * Created 2018-07-18
- * Last Modified 2018-07-18
+ * Last Modified 2026-10-18
  *
  * This class has a JSoup document. A document is the HTML data for a webpage, given
  * by the String URL passed in the constructor. Each IDMbScraper will be able to gather
@@ -20,7 +23,15 @@ import java.io.IOException;
  */
 public class IMDbScraper {
 
+    private static final Pattern TITLE_ID = Pattern.compile("\\btt\\d{7,}\\b");
+
+    /**
+     * Scrapes of the same page at the same time share one download and one pass.
+     */
+    private static final SingleFlight<String, Metadata> scrapes = new SingleFlight<>();
+
     private Document doc;
+    private String link;
 
     /**
      * After instantiating the IMDbScraper, you cannot change the webpage. In order
@@ -30,7 +41,97 @@ public class IMDbScraper {
      */
     public IMDbScraper(String link) throws IOException {
 
-        doc = Jsoup.connect(link).get();
+        doc = Jsoup.parse(WebClient.shared().getString(link), link);
+        this.link = link;
+
+    }
+
+    /**
+     * Wraps a page that was already parsed.
+     * @param doc the page.
+     * @param link the link to the page.
+     */
+    IMDbScraper(Document doc, String link) {
+
+        this.doc = doc;
+        this.link = link;
+
+    }
+
+    /**
+     * Downloads a movie's page and reads everything on it in one pass, without
+     * building a document. This is much cheaper than an IMDbScraper when scraping
+     * many pages, see IMDbPageScanner. Threads scraping the same page at the same
+     * time share the work.
+     * @param link the link to the IMDb page of the movie.
+     * @return the metadata.
+     * @throws IOException if the web page cannot be connected to.
+     */
+    public static Metadata scrape(String link) throws IOException {
+
+        return scrapes.run(link, () -> IMDbPageScanner.scan(WebClient.shared().getString(link), link));
+
+    }
+
+    /**
+     * Searches IMDb for a movie, for when there is no link to its page.
+     * @param title the title.
+     * @param year the year, or null if it isn't known.
+     * @return the link to the page of the best match, or null if there is none.
+     * @throws IOException if IMDb cannot be connected to.
+     */
+    public static String find(String title, String year) throws IOException {
+
+        String query = URLEncoder.encode(year == null ? title : title + " " + year, "UTF-8");
+        String url = "https://www.imdb.com/find?s=tt&ttype=ft&q=" + query;
+        Document results = Jsoup.parse(WebClient.shared().getString(url), url);
+
+        // Each result is a link to the title with the year after it, take the first
+        // with the right year
+        Elements found = results.select("td.result_text");
+        for (Element result : found) {
+            Elements link = result.getElementsByTag("a");
+            if (link.size() == 0)
+                continue;
+            if (year == null || result.text().contains("(" + year + ")"))
+                return link.get(0).absUrl("href");
+        }
+        return null;
+
+    }
+
+    /**
+     * @return how many scrapes waited for the same page being scraped on another
+     * thread instead of scraping it again.
+     */
+    public static long getSharedScrapes() {
+
+        return scrapes.getShared();
+
+    }
+
+    /**
+     * Makes the link to a title page out of anything with an IMDb id in it, like
+     * "tt0111161" or an old link to the page.
+     * @param text the text with the id.
+     * @return the link, or null if there is no id in the text.
+     */
+    public static String titleLink(String text) {
+
+        if (text == null)
+            return null;
+        Matcher id = TITLE_ID.matcher(text);
+        return id.find() ? "https://www.imdb.com/title/" + id.group() + "/" : null;
+
+    }
+
+    /**
+     * Gets everything the page says about the movie at once.
+     * @return the metadata.
+     */
+    public Metadata getMetadata() {
+
+        return new Metadata(getTitle(), getYear(), getInfo(), getDescription(), getPoster(), link);
 
     }
 
@@ -48,14 +149,8 @@ public class IMDbScraper {
         // There should be at least one
         if (titleH1.size() == 0)
             return null;
-        String titleYear = titleH1.get(0).text();
-
-        // Separate the year from the title. The way the Document gets the data causes
-        // the space between the title and year to be char=160, which is a non-breaking
-        // space. The rest of the spaces are normal. Therefore the string can be split
-        // by char 160.
-        String[] titleYearWords = titleYear.split(Character.toString((char)160));
-        return titleYearWords[0];
+        // The year is in a span inside the h1, so only the h1's own text is the title
+        return titleH1.get(0).ownText().trim();
 
     }
 
@@ -1,17 +1,21 @@
 package land.spooky.media.models;
 
 import java.io.*;
-import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.DoubleConsumer;
 
 /**
  * @author Daniel Gelber
  * @version 1.0
  * Created 2018-07-18
- * Last Modified 2018-07-18
+ * Last Modified 2026-10-18
  *
  * This class contains methods to assist in all the IO requirements of the MainModel.
  * It handles the exceptions, and when applicable, returns true or false based on the
@@ -43,21 +47,7 @@ public final class IOHelper {
     public static final boolean downloadImage(File target, String imageSource) {
 
         try {
-            // Open input and output streams
-            URL link = new URL(imageSource);
-            InputStream is = link.openStream();
-            OutputStream os = new FileOutputStream(target);
-
-            // Set up buffer and use that to save the data from the input
-            // stream to the output stream.
-            byte[] b = new byte[2048];
-            int length;
-            while ((length = is.read(b)) != -1) {
-                os.write(b, 0, length);
-            }
-
-            is.close();
-            os.close();
+            WebClient.shared().download(imageSource, target);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -104,6 +94,73 @@ public final class IOHelper {
 
     }
 
+    /**
+     * Moves a non-directory file to a new location, reporting how far along it is.
+     * Within one file system this is a rename and finishes right away. Across file
+     * systems the file is copied in chunks and then deleted, which for a large movie
+     * can take minutes, so this should never run on the JavaFX thread.
+     * @param source the file to be moved.
+     * @param target the file in its new location, which must not exist yet.
+     * @param progress gets the fraction moved so far, from 0 to 1.
+     * @return true if successful.
+     */
+    public static final boolean moveFile(File source, File target, DoubleConsumer progress) {
+
+        // A rename if the two are on the same file system
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            progress.accept(1);
+            return true;
+        } catch (IOException e) {
+            // Not on the same file system, copy it instead
+        }
+
+        if (target.exists()) {
+            System.out.println("Couldn't move " + source + ", " + target + " already exists");
+            return false;
+        }
+        try {
+            FileCopier.copy(source, target, (copied, total) -> progress.accept((double)copied / total));
+        } catch (IOException e) {
+            e.printStackTrace();
+            target.delete();
+            return false;
+        }
+
+        // Only let go of the original once the copy is safely on disk
+        if (!source.delete())
+            System.out.println("Couldn't delete " + source + " after copying it");
+        progress.accept(1);
+        return true;
+
+    }
+
+    /**
+     * Moves a file over another one, replacing it. The move is atomic when the file
+     * system supports it, so readers see either the old or the new file.
+     * @param source the file to be moved.
+     * @param target the file being replaced.
+     * @return true if successful.
+     */
+    public static final boolean replaceFile(File source, File target) {
+
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Not every file system can do an atomic move, fall back to a plain replace
+            try {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e2) {
+                e2.printStackTrace();
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
     /**
      * Reads and returns the lines in a text file.
      * @param source the text file.
@@ -132,6 +189,51 @@ public final class IOHelper {
 
     }
 
+    /**
+     * Reads a whole binary file into memory in one go. Unlike a mapping, nothing keeps
+     * the file open afterwards, so it can be replaced while the bytes are still in use,
+     * even on Windows.
+     * @param source the file.
+     * @return its bytes, from position 0 to the limit, or null if it couldn't be read.
+     */
+    public static final ByteBuffer readBytes(File source) {
+
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(source + " is too big to read into memory");
+            ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until the end
+            }
+            buffer.flip();
+            return buffer;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+    }
+
+    /**
+     * Fills a buffer from a position in a file, for reading a part of a file without
+     * reading the rest of it.
+     * @param channel the file.
+     * @param buffer the buffer, filled from its position to its limit and then flipped.
+     * @param position where to start reading in the file.
+     * @throws IOException if the file ends before the buffer is full.
+     */
+    public static final void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("The file ends at " + position);
+            position += read;
+        }
+        buffer.flip();
+
+    }
+
     /**
      * Makes a text file with the specified text.
      * @param target the text file.
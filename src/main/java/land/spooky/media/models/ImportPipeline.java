@@ -0,0 +1,726 @@
+package land.spooky.media.models;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Imports movies into the target directory in the background, so the window never
+ * freezes while IMDb is slow or a large movie is moved to another drive. Every import
+ * goes through four stages, each with its own worker threads and a queue in front of
+ * it:
+ *
+ *   resolve   looks the movie up with the metadata providers
+ *   record    makes the movie's folder and writes its info file
+ *   poster    saves the poster
+ *   media     moves the movie into its folder
+ *
+ * The poster starts downloading as soon as its address is known, while the rest of
+ * the import carries on, and the poster stage only waits for it to finish. The info
+ * file is written meanwhile so the new title can be shown as soon as its metadata is
+ * known; its poster appears when it is ready. The queues between the stages are
+ * bounded: when one is full, the stage before it waits, so a slow disk never piles up
+ * more work than the queues hold. The first queue isn't, so submitting an import never
+ * waits and can be done on the JavaFX thread, however many are queued already.
+ * Lookups and downloads run a few at a time, while moves to the same drive take turns.
+ *
+ * A whole folder of movies can be imported as a Batch. Each file is looked up on IMDb
+ * by its name, and the batch reports how fast it went and what failed once it is done.
+ * Where the metadata comes from is up to the MetadataResolver the pipeline is given.
+ *
+ * Every change of stage and the progress of the move are reported on the JavaFX thread,
+ * through the properties of each Job, the status of the whole pipeline and the Listener.
+ */
+public final class ImportPipeline {
+
+    /**
+     * Where an import is.
+     */
+    public enum Stage {
+
+        QUEUED("waiting"),
+        RESOLVING("looking up"),
+        RECORDING("saving"),
+        POSTER("getting poster"),
+        MOVING("moving"),
+        DONE("done"),
+        FAILED("failed");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return what the stage is called in the status.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+    }
+
+    /**
+     * Gets told what the imports are doing, on the JavaFX thread.
+     */
+    public interface Listener {
+
+        /**
+         * The movie's folder and info file were written.
+         * @param job the import.
+         * @param movie the new movie.
+         */
+        void recorded(Job job, MovieModel movie);
+
+        /**
+         * The movie's poster was downloaded.
+         * @param job the import.
+         * @param movie the movie.
+         */
+        void posterSaved(Job job, MovieModel movie);
+
+        /**
+         * The import is done or failed. A failed import that was already recorded has
+         * had its folder deleted again.
+         * @param job the import.
+         */
+        void finished(Job job);
+
+        /**
+         * Every import of a batch is done or failed.
+         * @param batch the batch.
+         */
+        void batchFinished(Batch batch);
+
+    }
+
+    /**
+     * How many imports fit in the queue between two stages.
+     */
+    private static final int QUEUE_SIZE = 16;
+
+    private final BlockingQueue<Job> resolveQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Job> recordQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final BlockingQueue<Job> posterQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final BlockingQueue<Job> mediaQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    private final Listener listener;
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * The imports that aren't finished, in the order they were submitted. Only used on
+     * the JavaFX thread.
+     */
+    private final List<Job> jobs = new ArrayList<>();
+
+    private final StringProperty status = new SimpleStringProperty("");
+
+    /**
+     * One lock per drive that movies are moved to.
+     */
+    private final Map<Object, Object> deviceLocks = new HashMap<>();
+
+    /**
+     * Finds the metadata of each movie.
+     */
+    private final MetadataResolver resolver;
+
+    /**
+     * Numbers the posters being downloaded, for the names of their temporary files.
+     */
+    private static final AtomicInteger posters = new AtomicInteger();
+
+
+    /**
+     * Starts the worker threads of every stage.
+     * @param listener gets told what the imports are doing.
+     * @param resolver finds the metadata of each movie.
+     */
+    public ImportPipeline(Listener listener, MetadataResolver resolver) {
+
+        this.listener = listener;
+        this.resolver = resolver;
+        // Looking up and downloading wait on the network, the disk stages on the disk
+        start("import-resolve", 4, resolveQueue, recordQueue, this::resolve);
+        start("import-record", 1, recordQueue, posterQueue, this::record);
+        start("import-poster", 4, posterQueue, mediaQueue, this::fetchPoster);
+        start("import-media", 2, mediaQueue, null, this::moveMedia);
+
+    }
+
+    /**
+     * Queues a movie to be imported. Never waits, so it can be called on the JavaFX
+     * thread.
+     * @param media the movie file.
+     * @param link the link to the movie's IMDb page, or null to look it up by the
+     *             file's name.
+     * @param targetDir the target directory to import it into.
+     * @return the import.
+     */
+    public Job submit(File media, String link, File targetDir) {
+
+        return submit(media, link, targetDir, null);
+
+    }
+
+    /**
+     * Imports every movie file among some files and folders, looking each one up on
+     * IMDb by its file name. The folders are searched and the imports queued on a
+     * background thread, so this returns right away.
+     * @param roots the files and folders.
+     * @param targetDir the target directory to import them into.
+     * @return the batch, which is finished once every import in it is.
+     */
+    public Batch submitBatch(List<File> roots, File targetDir) {
+
+        Batch batch = new Batch(targetDir);
+        Thread submitter = new Thread(() -> {
+            List<File> files = MediaFileName.collect(roots);
+            Platform.runLater(() -> batch.total = files.size());
+            for (File file : files)
+                submit(file, null, targetDir, batch);
+            // Once every import is queued the batch can finish
+            Platform.runLater(() -> {
+                batch.submitted = true;
+                finishBatch(batch);
+            });
+        }, "import-submit");
+        submitter.setDaemon(true);
+        submitter.start();
+        return batch;
+
+    }
+
+    /**
+     * Queues an import.
+     */
+    private Job submit(File media, String link, File targetDir, Batch batch) {
+
+        Job job = new Job(media, link, targetDir, batch);
+        Platform.runLater(() -> {
+            jobs.add(job);
+            updateStatus();
+        });
+        resolveQueue.offer(job);
+        return job;
+
+    }
+
+    /**
+     * Stops the workers. Imports that are still queued are dropped.
+     */
+    public void close() {
+
+        for (Thread worker : workers)
+            worker.interrupt();
+
+    }
+
+    /**
+     * @return what the imports are doing, like "Importing 3: 1 looking up, 1 moving 45%",
+     *         or empty if nothing is being imported. Only changes on the JavaFX thread.
+     */
+    public ReadOnlyStringProperty statusProperty() {
+
+        return status;
+
+    }
+
+    /**
+     * Looks a movie up with the metadata providers.
+     */
+    private void resolve(Job job) throws IOException, InterruptedException {
+
+        setStage(job, Stage.RESOLVING);
+        job.metadata = resolver.resolve(new MetadataProvider.Request(job.media, job.link));
+        if (job.metadata.getLink() != null)
+            job.link = job.metadata.getLink();
+
+        // The folder isn't made yet, so the poster goes next to the catalog index until
+        // it is, where the watcher ignores it
+        String url = job.metadata.getPosterUrl();
+        if (url != null && !url.isEmpty()) {
+            job.posterFile = new File(job.targetDir, CatalogIndex.FILE_NAME + ".poster-" + posters.incrementAndGet());
+            job.poster = WebClient.shared().downloadAsync(url, job.posterFile);
+        }
+
+    }
+
+    /**
+     * Makes the movie's folder, writes its info file and tells the listener about it.
+     */
+    private void record(Job job) throws IOException {
+
+        setStage(job, Stage.RECORDING);
+        Metadata metadata = job.metadata;
+        File folder = uniqueFolder(job.targetDir, metadata);
+        if (!IOHelper.makeDirectory(folder))
+            throw new IOException("Couldn't make " + folder);
+        job.folder = folder;
+
+        File info = new File(folder, "info");
+        if (!IOHelper.writeLines(info, metadata.toLines()))
+            throw new IOException("Couldn't write " + info);
+
+        MovieModel movie = new MovieModel(new File(folder, "poster").getPath(), String.valueOf(metadata.getTitle()),
+                String.valueOf(metadata.getYear()), String.valueOf(metadata.getInfo()),
+                String.valueOf(metadata.getDescription()), folder.getName(), info.lastModified(), info.length());
+        job.movie = movie;
+        Platform.runLater(() -> listener.recorded(job, movie));
+
+    }
+
+    /**
+     * Waits for the poster to download and puts it in the movie's folder. A movie
+     * without a poster is still imported.
+     */
+    private void fetchPoster(Job job) throws InterruptedException {
+
+        setStage(job, Stage.POSTER);
+        boolean saved = false;
+        if (job.poster != null) {
+            try {
+                job.poster.get();
+                saved = IOHelper.moveFile(job.posterFile, new File(job.folder, "poster"));
+            } catch (ExecutionException e) {
+                System.out.println("Couldn't download the poster: " + e.getCause());
+            }
+            job.posterFile.delete();
+        }
+        if (!saved) {
+            System.out.println("Couldn't get the poster of " + job.metadata.getTitle());
+            return;
+        }
+        MovieModel movie = job.movie;
+        Platform.runLater(() -> listener.posterSaved(job, movie));
+
+    }
+
+    /**
+     * Moves the movie file into its folder.
+     */
+    private void moveMedia(Job job) throws IOException {
+
+        // Movies going to the same drive are moved one at a time, so its head isn't
+        // jumping between files, while different drives work in parallel
+        long size = job.media.length();
+        synchronized (deviceLock(job.targetDir)) {
+            setStage(job, Stage.MOVING);
+            // Only hand a new value to the JavaFX thread once the last one was shown
+            double[] shown = {0};
+            boolean moved = IOHelper.moveFile(job.media, new File(job.folder, "movie"), fraction -> {
+                if (fraction - shown[0] >= 0.01 || fraction == 1) {
+                    shown[0] = fraction;
+                    Platform.runLater(() -> {
+                        job.progress.set(fraction);
+                        updateStatus();
+                    });
+                }
+            });
+            if (!moved)
+                throw new IOException("Couldn't move " + job.media);
+        }
+        job.bytes = size;
+
+    }
+
+    /**
+     * Gets the lock of the drive a directory is on.
+     * @param directory the directory.
+     * @return the same object for every directory on that drive.
+     */
+    private Object deviceLock(File directory) {
+
+        Object device;
+        try {
+            device = Files.getFileStore(directory.toPath());
+        } catch (IOException e) {
+            // Fall back to one lock per directory
+            device = directory.getAbsoluteFile();
+        }
+        synchronized (deviceLocks) {
+            Object lock = deviceLocks.get(device);
+            if (lock == null) {
+                lock = new Object();
+                deviceLocks.put(device, lock);
+            }
+            return lock;
+        }
+
+    }
+
+    /**
+     * Finds a folder for a new movie that isn't taken yet. It is named after the title,
+     * then the title and year, then those with a number.
+     * @param targetDir the target directory.
+     * @param metadata the movie.
+     * @return the folder, which doesn't exist.
+     */
+    private static File uniqueFolder(File targetDir, Metadata metadata) {
+
+        String name = String.valueOf(metadata.getTitle()).replaceAll("[\\\\/:*?\"<>|]", "");
+        File folder = new File(targetDir, name);
+        if (!folder.exists())
+            return folder;
+        name = name + " (" + metadata.getYear() + ")";
+        folder = new File(targetDir, name);
+        for (int i = 2; folder.exists(); i++)
+            folder = new File(targetDir, name + " " + i);
+        return folder;
+
+    }
+
+    /**
+     * Starts the worker threads of a stage. Each takes an import from its queue, runs
+     * the stage and hands it to the next queue, until it is interrupted.
+     * @param name the name of the threads.
+     * @param count how many threads.
+     * @param in the queue in front of the stage.
+     * @param out the queue of the next stage, or null for the last stage.
+     * @param step the work of the stage.
+     */
+    private void start(String name, int count, BlockingQueue<Job> in, BlockingQueue<Job> out, Step step) {
+
+        for (int i = 0; i < count; i++) {
+            Thread worker = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Job job;
+                    try {
+                        job = in.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    try {
+                        step.run(job);
+                        if (out != null)
+                            out.put(job);
+                        else
+                            finish(job, Stage.DONE);
+                    } catch (InterruptedException e) {
+                        finish(job, Stage.FAILED);
+                        return;
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        job.error = e;
+                        finish(job, Stage.FAILED);
+                    }
+                }
+            }, name + "-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+    }
+
+    /**
+     * Ends an import. A failed import takes its folder with it, so no half imported
+     * movie is left in the target directory.
+     */
+    private void finish(Job job, Stage stage) {
+
+        if (stage == Stage.FAILED && job.folder != null)
+            IOHelper.deleteFile(job.folder);
+        if (stage == Stage.FAILED && job.poster != null) {
+            job.poster.cancel(true);
+            job.posterFile.delete();
+        }
+        Platform.runLater(() -> {
+            job.stage.set(stage);
+            jobs.remove(job);
+            updateStatus();
+            listener.finished(job);
+
+            Batch batch = job.batch;
+            if (batch != null) {
+                batch.finished++;
+                if (stage == Stage.DONE) {
+                    batch.movies.add(job.movie);
+                    batch.bytes += job.bytes;
+                } else {
+                    batch.failures.add(job);
+                }
+                finishBatch(batch);
+            }
+        });
+
+    }
+
+    /**
+     * Tells the listener a batch is done, once it is. Called on the JavaFX thread.
+     */
+    private void finishBatch(Batch batch) {
+
+        if (batch.submitted && batch.finished == batch.total && batch.time == 0) {
+            batch.time = System.nanoTime() - batch.start;
+            batch.sharedAtEnd = sharedRequests();
+            listener.batchFinished(batch);
+        }
+
+    }
+
+    /**
+     * @return how many scrapes and downloads so far shared another thread's request.
+     */
+    private static long sharedRequests() {
+
+        return IMDbScraper.getSharedScrapes() + WebClient.shared().getFlightCounts()[1];
+
+    }
+
+    /**
+     * Moves an import on to a stage.
+     */
+    private void setStage(Job job, Stage stage) {
+
+        Platform.runLater(() -> {
+            job.stage.set(stage);
+            updateStatus();
+        });
+
+    }
+
+    /**
+     * Sums up the imports that aren't finished. Called on the JavaFX thread.
+     */
+    private void updateStatus() {
+
+        if (jobs.isEmpty()) {
+            status.set("");
+            return;
+        }
+
+        int[] counts = new int[Stage.values().length];
+        double moving = -1;
+        for (Job job : jobs) {
+            counts[job.stage.get().ordinal()]++;
+            if (job.stage.get() == Stage.MOVING)
+                moving = job.progress.get();
+        }
+
+        StringBuilder text = new StringBuilder("Importing " + jobs.size() + ":");
+        String separator = " ";
+        for (Stage stage : Stage.values()) {
+            if (counts[stage.ordinal()] == 0)
+                continue;
+            text.append(separator).append(counts[stage.ordinal()]).append(' ').append(stage.getLabel());
+            if (stage == Stage.MOVING)
+                text.append(' ').append(Math.round(moving * 100)).append('%');
+            separator = ", ";
+        }
+        status.set(text.toString());
+
+    }
+
+    /**
+     * The work of one stage.
+     */
+    private interface Step {
+
+        void run(Job job) throws Exception;
+
+    }
+
+    /**
+     * Many movies imported together. Only changes on the JavaFX thread.
+     */
+    public static final class Batch {
+
+        private final File targetDir;
+        private final long start = System.nanoTime();
+        private final List<MovieModel> movies = new ArrayList<>();
+        private final List<Job> failures = new ArrayList<>();
+        private int total;
+        private int finished;
+        private long bytes;
+        private long time;
+        private boolean submitted;
+
+        // Requests shared with another thread, see SingleFlight, before and after
+        private final long sharedAtStart = sharedRequests();
+        private long sharedAtEnd;
+
+        private Batch(File targetDir) {
+            this.targetDir = targetDir;
+        }
+
+        /**
+         * @return the target directory the movies go into.
+         */
+        public File getTargetDir() {
+            return targetDir;
+        }
+
+        /**
+         * @return the movies that were imported.
+         */
+        public List<MovieModel> getMovies() {
+            return movies;
+        }
+
+        /**
+         * @return the imports that failed, each with its error.
+         */
+        public List<Job> getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return how many movie files were found.
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Sums up the batch.
+         * @return like "Imported 1990 of 2000 movies (41.2 GB) in 734 s: 2.7 movies/s, 56.1 MB/s.
+         *         10 failed. 12 duplicate requests shared."
+         */
+        public String getReport() {
+            long nanos = time == 0 ? System.nanoTime() - start : time;
+            double seconds = Math.max(nanos / 1e9, 0.001);
+            long shared = (time == 0 ? sharedRequests() : sharedAtEnd) - sharedAtStart;
+            return String.format("Imported %d of %d movies (%.1f GB) in %.0f s: %.1f movies/s, %.1f MB/s. %d failed."
+                    + (shared > 0 ? " %d duplicate requests shared." : ""),
+                    movies.size(), total, bytes / 1e9, seconds, movies.size() / seconds,
+                    bytes / 1e6 / seconds, failures.size(), shared);
+        }
+
+    }
+
+    /**
+     * One movie being imported.
+     */
+    public static final class Job {
+
+        private final File media;
+        private final File targetDir;
+        private final Batch batch;
+
+        // Found by the resolve stage if it wasn't given
+        private volatile String link;
+
+        // Set by the stages, each seen by the next through the queue between them
+        private volatile Metadata metadata;
+        private volatile File folder;
+        private volatile MovieModel movie;
+        private volatile Exception error;
+        private volatile long bytes;
+
+        // The poster download the resolve stage starts, and where it goes until the
+        // folder is made
+        private volatile Future<File> poster;
+        private volatile File posterFile;
+
+        private final ObjectProperty<Stage> stage = new SimpleObjectProperty<>(Stage.QUEUED);
+        private final DoubleProperty progress = new SimpleDoubleProperty(0);
+
+        private Job(File media, String link, File targetDir, Batch batch) {
+            this.media = media;
+            this.link = link;
+            this.targetDir = targetDir;
+            this.batch = batch;
+        }
+
+        /**
+         * @return the movie file being imported.
+         */
+        public File getMedia() {
+            return media;
+        }
+
+        /**
+         * @return the link to the movie's IMDb page, or null if it wasn't found yet.
+         */
+        public String getLink() {
+            return link;
+        }
+
+        /**
+         * @return the target directory the movie goes into.
+         */
+        public File getTargetDir() {
+            return targetDir;
+        }
+
+        /**
+         * @return the batch the import is part of, or null if it is on its own.
+         */
+        public Batch getBatch() {
+            return batch;
+        }
+
+        /**
+         * @return what IMDb said about the movie, or null if it wasn't looked up yet.
+         */
+        public Metadata getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * @return the movie's folder, or null if it wasn't made yet.
+         */
+        public File getFolder() {
+            return folder;
+        }
+
+        /**
+         * @return the new movie, or null if it wasn't recorded yet.
+         */
+        public MovieModel getMovie() {
+            return movie;
+        }
+
+        /**
+         * @return why the import failed, or null.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * @return the stage the import is in, only changes on the JavaFX thread.
+         */
+        public ReadOnlyObjectProperty<Stage> stageProperty() {
+            return stage;
+        }
+
+        /**
+         * @return how much of the movie file was moved, only changes on the JavaFX thread.
+         */
+        public ReadOnlyDoubleProperty progressProperty() {
+            return progress;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+package land.spooky.media.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * This class turns the strings IMDb gives us into typed values. The info of a movie is
+ * IMDb's subtext, parts separated by bars, like "PG-13 | 2h 22min | Drama, Crime |
+ * 14 October 1994 (USA)". Any part may be missing, so each value is looked for on its
+ * own and a value that can't be found comes back as 0 or null.
+ */
+public final class InfoParser {
+
+    /**
+     * Every genre IMDb uses. The position of a genre is its bit in a genre bitset.
+     */
+    public static final String[] GENRES = {
+            "Action", "Adult", "Adventure", "Animation", "Biography", "Comedy", "Crime", "Documentary",
+            "Drama", "Family", "Fantasy", "Film-Noir", "Game-Show", "History", "Horror", "Music",
+            "Musical", "Mystery", "News", "Reality-TV", "Romance", "Sci-Fi", "Short", "Sport",
+            "Talk-Show", "Thriller", "War", "Western"
+    };
+
+    private static final Pattern RUNTIME = Pattern.compile("^(?:(\\d+)\\s*h)?\\s*(?:(\\d+)\\s*min)?$");
+    private static final Pattern YEAR = Pattern.compile("\\b(1[89]\\d\\d|2\\d\\d\\d)\\b");
+
+    /**
+     * Parses the year of a movie.
+     * @param year the year field, like "1994", may be null.
+     * @param info the info, used if the year field has no year, may be null.
+     * @return the year, or 0 if there is none.
+     */
+    public static final int parseYear(String year, String info) {
+
+        for (String text : new String[] {year, info}) {
+            if (text == null)
+                continue;
+            Matcher matcher = YEAR.matcher(text);
+            if (matcher.find())
+                return Integer.parseInt(matcher.group(1));
+        }
+        return 0;
+
+    }
+
+    /**
+     * Parses the runtime out of the info.
+     * @param info the info, may be null.
+     * @return the runtime in minutes, or 0 if there is none.
+     */
+    public static final int parseRuntime(String info) {
+
+        for (String part : parts(info)) {
+            if (part.isEmpty())
+                continue;
+            Matcher matcher = RUNTIME.matcher(part);
+            if (matcher.matches() && (matcher.group(1) != null || matcher.group(2) != null)) {
+                int hours = matcher.group(1) == null ? 0 : Integer.parseInt(matcher.group(1));
+                int minutes = matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2));
+                return hours * 60 + minutes;
+            }
+        }
+        return 0;
+
+    }
+
+    /**
+     * Parses the genres out of the info.
+     * @param info the info, may be null.
+     * @return a bitset with the bit of every genre set, see GENRES.
+     */
+    public static final long parseGenres(String info) {
+
+        for (String part : parts(info)) {
+            long genres = 0;
+            for (String name : part.split(",")) {
+                int bit = genreBit(name.trim());
+                if (bit < 0) {
+                    genres = 0;
+                    break;
+                }
+                genres |= 1L << bit;
+            }
+            if (genres != 0)
+                return genres;
+        }
+        return 0;
+
+    }
+
+    /**
+     * Parses the age rating out of the info. It is the first part, when the first part
+     * isn't the runtime, the genres or the release date.
+     * @param info the info, may be null.
+     * @return the rating, like "PG-13", or null if there is none.
+     */
+    public static final String parseRating(String info) {
+
+        String[] parts = parts(info);
+        if (parts.length < 2 || parts[0].isEmpty() || parts[0].length() > 12)
+            return null;
+        String first = parts[0];
+        if (parseRuntime(first) != 0 || parseGenres(first) != 0 || YEAR.matcher(first).find())
+            return null;
+        return first;
+
+    }
+
+    /**
+     * Puts typed values back together into info the way IMDb writes it, for metadata
+     * that doesn't come from IMDb's page.
+     * @param rating the age rating, may be null.
+     * @param runtime the runtime in minutes, 0 if unknown.
+     * @param genres the genre bitset, see GENRES.
+     * @param release the release date or year, may be null.
+     * @return the info, like "PG-13 | 2h 22min | Drama, Crime | 1994".
+     */
+    public static final String formatInfo(String rating, int runtime, long genres, String release) {
+
+        List<String> parts = new ArrayList<>();
+        if (rating != null && !rating.isEmpty())
+            parts.add(rating);
+        if (runtime > 0)
+            parts.add((runtime / 60 > 0 ? runtime / 60 + "h " : "") + runtime % 60 + "min");
+        StringBuilder names = new StringBuilder();
+        for (int bit = 0; bit < GENRES.length; bit++)
+            if ((genres & 1L << bit) != 0)
+                names.append(names.length() > 0 ? ", " : "").append(GENRES[bit]);
+        if (names.length() > 0)
+            parts.add(names.toString());
+        if (release != null && !release.isEmpty())
+            parts.add(release);
+        return String.join(" | ", parts);
+
+    }
+
+    /**
+     * Finds the bit of a genre.
+     * @param name the genre, in any case.
+     * @return its bit, or -1 if it isn't a genre.
+     */
+    public static final int genreBit(String name) {
+
+        for (int i = 0; i < GENRES.length; i++)
+            if (GENRES[i].equalsIgnoreCase(name))
+                return i;
+        return -1;
+
+    }
+
+    /**
+     * Splits the info into its trimmed parts.
+     * @param info the info, may be null.
+     * @return the parts.
+     */
+    private static String[] parts(String info) {
+
+        if (info == null)
+            return new String[0];
+        String[] parts = info.split("\\|");
+        for (int i = 0; i < parts.length; i++)
+            parts[i] = parts[i].trim();
+        return parts;
+
+    }
+
+}
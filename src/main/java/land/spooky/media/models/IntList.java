@@ -0,0 +1,168 @@
+package land.spooky.media.models;
+
+import java.util.Arrays;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * A growable list of primitive ints. The indexes keep one of these per token or per
+ * sort order, where a List of Integers would cost several times the memory.
+ */
+public final class IntList {
+
+    private int[] values;
+    private int size;
+
+
+    /**
+     * Makes an empty list.
+     */
+    public IntList() {
+
+        this(4);
+
+    }
+
+    /**
+     * Makes an empty list with room for some values.
+     * @param capacity how many values fit before it has to grow.
+     */
+    public IntList(int capacity) {
+
+        values = new int[Math.max(1, capacity)];
+
+    }
+
+    /**
+     * Adds a value to the end.
+     * @param value the value.
+     */
+    public void add(int value) {
+
+        grow();
+        values[size++] = value;
+
+    }
+
+    /**
+     * Inserts a value at a position, moving the values after it along.
+     * @param index where the value goes.
+     * @param value the value.
+     */
+    public void insert(int index, int value) {
+
+        grow();
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+
+    }
+
+    /**
+     * Inserts a value into a list that is kept sorted, unless it is already there.
+     * @param value the value.
+     * @return true if it was inserted.
+     */
+    public boolean addSorted(int value) {
+
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0)
+            return false;
+        insert(-index - 1, value);
+        return true;
+
+    }
+
+    /**
+     * Removes the value at a position.
+     * @param index the position.
+     * @return the value that was there.
+     */
+    public int removeAt(int index) {
+
+        int value = values[index];
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return value;
+
+    }
+
+    /**
+     * Removes a value from a list that is kept sorted.
+     * @param value the value.
+     * @return true if it was there.
+     */
+    public boolean removeSorted(int value) {
+
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0)
+            return false;
+        removeAt(index);
+        return true;
+
+    }
+
+    /**
+     * Looks for a value in a list that is kept sorted.
+     * @param value the value.
+     * @return its position, or (-(insertion point) - 1) like Arrays.binarySearch.
+     */
+    public int search(int value) {
+
+        return Arrays.binarySearch(values, 0, size, value);
+
+    }
+
+    /**
+     * @param index the position.
+     * @return the value at the position.
+     */
+    public int get(int index) {
+
+        return values[index];
+
+    }
+
+    /**
+     * Replaces the value at a position.
+     * @param index the position.
+     * @param value the new value.
+     */
+    public void set(int index, int value) {
+
+        values[index] = value;
+
+    }
+
+    /**
+     * @return the number of values.
+     */
+    public int size() {
+
+        return size;
+
+    }
+
+    /**
+     * @return a copy of the values.
+     */
+    public int[] toArray() {
+
+        return Arrays.copyOf(values, size);
+
+    }
+
+    /**
+     * Makes room for one more value.
+     */
+    private void grow() {
+
+        if (size == values.length)
+            values = Arrays.copyOf(values, values.length * 2);
+
+    }
+
+}
@@ -0,0 +1,238 @@
+package land.spooky.media.models;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * A small JSON reader for sidecar files and metadata services, so reading a few
+ * fields doesn't need another library. Objects become Maps in the order of their keys,
+ * arrays become Lists, numbers become Doubles, and true, false and null become
+ * Booleans and null.
+ */
+final class Json {
+
+    private final String text;
+    private int at = 0;
+
+
+    private Json(String text) {
+
+        this.text = text;
+
+    }
+
+    /**
+     * Reads a JSON document.
+     * @param text the document.
+     * @return the value it holds.
+     * @throws IOException if it isn't JSON.
+     */
+    static Object parse(String text) throws IOException {
+
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipSpace();
+        if (json.at < text.length())
+            throw json.error("Unexpected text");
+        return value;
+
+    }
+
+    /**
+     * Gets a field of an object as a string.
+     * @param object the object.
+     * @param keys the names the field may have, the first that is there is used.
+     * @return the field as a string, arrays joined with commas, or null if none is there.
+     */
+    static String string(Map<?, ?> object, String... keys) {
+
+        for (String key : keys) {
+            Object value = object.get(key);
+            if (value instanceof List) {
+                StringBuilder joined = new StringBuilder();
+                for (Object item : (List<?>)value)
+                    if (item != null)
+                        joined.append(joined.length() > 0 ? ", " : "").append(scalar(item));
+                return joined.toString();
+            }
+            if (value != null)
+                return scalar(value);
+        }
+        return null;
+
+    }
+
+    /**
+     * @return a number without a needless ".0", anything else as it is.
+     */
+    private static String scalar(Object value) {
+
+        if (value instanceof Double && (Double)value == Math.rint((Double)value) && !((Double)value).isInfinite())
+            return Long.toString(((Double)value).longValue());
+        return value.toString();
+
+    }
+
+    private Object value() throws IOException {
+
+        skipSpace();
+        if (at >= text.length())
+            throw error("Unexpected end");
+        char c = text.charAt(at);
+        if (c == '{')
+            return object();
+        if (c == '[')
+            return array();
+        if (c == '"')
+            return string();
+        if (text.startsWith("true", at)) {
+            at += 4;
+            return Boolean.TRUE;
+        }
+        if (text.startsWith("false", at)) {
+            at += 5;
+            return Boolean.FALSE;
+        }
+        if (text.startsWith("null", at)) {
+            at += 4;
+            return null;
+        }
+        return number();
+
+    }
+
+    private Map<String, Object> object() throws IOException {
+
+        Map<String, Object> object = new LinkedHashMap<>();
+        at++;
+        skipSpace();
+        if (peek() == '}') {
+            at++;
+            return object;
+        }
+        while (true) {
+            skipSpace();
+            if (peek() != '"')
+                throw error("Expected a key");
+            String key = string();
+            skipSpace();
+            if (peek() != ':')
+                throw error("Expected ':'");
+            at++;
+            object.put(key, value());
+            skipSpace();
+            char c = peek();
+            at++;
+            if (c == '}')
+                return object;
+            if (c != ',')
+                throw error("Expected ',' or '}'");
+        }
+
+    }
+
+    private List<Object> array() throws IOException {
+
+        List<Object> array = new ArrayList<>();
+        at++;
+        skipSpace();
+        if (peek() == ']') {
+            at++;
+            return array;
+        }
+        while (true) {
+            array.add(value());
+            skipSpace();
+            char c = peek();
+            at++;
+            if (c == ']')
+                return array;
+            if (c != ',')
+                throw error("Expected ',' or ']'");
+        }
+
+    }
+
+    private String string() throws IOException {
+
+        StringBuilder string = new StringBuilder();
+        at++;
+        while (true) {
+            if (at >= text.length())
+                throw error("Unterminated string");
+            char c = text.charAt(at++);
+            if (c == '"')
+                return string.toString();
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+            if (at >= text.length())
+                throw error("Unterminated string");
+            char escaped = text.charAt(at++);
+            switch (escaped) {
+                case 'b': string.append('\b'); break;
+                case 'f': string.append('\f'); break;
+                case 'n': string.append('\n'); break;
+                case 'r': string.append('\r'); break;
+                case 't': string.append('\t'); break;
+                case 'u':
+                    if (at + 4 > text.length())
+                        throw error("Bad escape");
+                    try {
+                        string.append((char)Integer.parseInt(text.substring(at, at + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Bad escape");
+                    }
+                    at += 4;
+                    break;
+                default: string.append(escaped);
+            }
+        }
+
+    }
+
+    private Double number() throws IOException {
+
+        int start = at;
+        while (at < text.length() && "+-0123456789.eE".indexOf(text.charAt(at)) >= 0)
+            at++;
+        try {
+            return Double.valueOf(text.substring(start, at));
+        } catch (NumberFormatException e) {
+            at = start;
+            throw error("Unexpected character");
+        }
+
+    }
+
+    private char peek() throws IOException {
+
+        if (at >= text.length())
+            throw error("Unexpected end");
+        return text.charAt(at);
+
+    }
+
+    private void skipSpace() {
+
+        while (at < text.length() && Character.isWhitespace(text.charAt(at)))
+            at++;
+
+    }
+
+    private IOException error(String message) {
+
+        return new IOException(message + " at " + at + " of the JSON");
+
+    }
+
+}
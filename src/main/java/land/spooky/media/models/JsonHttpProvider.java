@@ -0,0 +1,88 @@
+package land.spooky.media.models;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.Map;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Gets metadata from a web service that answers in JSON, like a home media server or
+ * a small stub when testing. The service is asked with
+ *
+ *   GET endpoint?title=...&year=...&imdb=...
+ *
+ * leaving out what isn't known, and answers with an object with the fields
+ * Metadata.fromJson reads. Not found means it doesn't know the movie.
+ */
+public final class JsonHttpProvider implements MetadataProvider {
+
+    private final String endpoint;
+
+
+    /**
+     * @param endpoint the address of the service, without the query.
+     */
+    public JsonHttpProvider(String endpoint) {
+
+        this.endpoint = endpoint;
+
+    }
+
+    @Override
+    public String getName() {
+
+        return endpoint;
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return false;
+
+    }
+
+    @Override
+    public Metadata lookup(Request request) throws IOException {
+
+        StringBuilder query = new StringBuilder();
+        appendParameter(query, "title", request.getTitle().isEmpty() ? null : request.getTitle());
+        appendParameter(query, "year", request.getYear());
+        appendParameter(query, "imdb", request.getLink());
+        if (query.length() == 0)
+            return null;
+
+        String body;
+        try {
+            body = WebClient.shared().getString(endpoint + "?" + query);
+        } catch (WebClient.StatusException e) {
+            if (e.getStatus() == 404)
+                return null;
+            throw e;
+        }
+        if (body.trim().isEmpty())
+            return null;
+
+        Object value = Json.parse(body);
+        if (!(value instanceof Map))
+            throw new IOException(endpoint + " didn't answer with an object");
+        Metadata metadata = Metadata.fromJson((Map<?, ?>)value);
+        return metadata.hasTitle() || metadata.getLink() != null ? metadata : null;
+
+    }
+
+    private static void appendParameter(StringBuilder query, String name, String value) throws IOException {
+
+        if (value == null)
+            return;
+        if (query.length() > 0)
+            query.append('&');
+        query.append(name).append('=').append(URLEncoder.encode(value, "UTF-8"));
+
+    }
+
+}
@@ -1,23 +1,32 @@
 package land.spooky.media.models;
 
-import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.SimpleBooleanProperty;
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.concurrent.Task;
+import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.ObservableList;
 
 import java.awt.*;
 import java.io.*;
 import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * @author Daniel Gelber
  * @version 1.0
  * Created 2018-07-14
- * Last Modified 2018-07-18
+ * Last Modified 2026-10-18
  *
  * This model has the properties and logic needed for the main display.
  */
@@ -25,6 +34,22 @@ public final class MainModel {
 
     // INSTANCE VARIABLES
 
+    /**
+     * How big the cache of IMDb pages and posters in the target directory may get.
+     */
+    private static final long HTTP_CACHE_BYTES = 256L << 20;
+
+    /**
+     * The file in a target directory that lists its downloads that weren't over when
+     * the app was closed, one "source, tab, target" per line.
+     */
+    private static final String EXPORTS_FILE = CatalogIndex.FILE_NAME + ".exports";
+
+    /**
+     * How many failed movies the report of a batch import names.
+     */
+    private static final int REPORTED_FAILURES = 10;
+
     /**
      * The current page that the user is viewing.
      */
@@ -41,11 +66,44 @@ public final class MainModel {
      */
     private String filter = "";
 
+    /**
+     * The movies matching the filter, ranked by the search index. Kept between page
+     * flips and thrown away when the filter or the catalog changes. Getting them again
+     * after a change that didn't touch them is answered by the catalog's result cache.
+     */
+    private List<MovieModel> results;
+
+    /**
+     * True while a search for the filter runs in the background. Until it is done the
+     * page keeps showing what it showed before.
+     */
+    private boolean searching = false;
+
+    /**
+     * The order the movies are shown in.
+     */
+    private SortOrder sortOrder = SortOrder.RELEVANCE;
+
+    /**
+     * Runs the searches the user types off the JavaFX thread.
+     */
+    private final SearchService searchService = new SearchService();
+
+    /**
+     * What the search is waiting for, empty once its indexes are ready.
+     */
+    private StringProperty searchStatus = new SimpleStringProperty("");
+
     /**
      * A list of every movie that is on the current page.
      */
     private ArrayList<MovieModel> movieList = new ArrayList<>();
 
+    /**
+     * How many movies matched the filter the last time the movie list was loaded.
+     */
+    private int filteredCount = 0;
+
     /**
      * The movie the user is currently being shown on the info bar.
      */
@@ -57,16 +115,73 @@ public final class MainModel {
     private String targetDirectory;
 
     /**
-     * A property that shows if the Model is currently downloading a movie to their
-     * disk. Only one download is allowed at a time.
+     * Every movie in the target directory. Paging and filtering run on this instead of
+     * the disk.
+     */
+    private Catalog catalog = new Catalog(null);
+
+    /**
+     * Watches the target directory so movies added or removed outside the app show
+     * up without a rescan. Null if there is no target directory.
      */
-    private BooleanProperty isDownloading = new SimpleBooleanProperty(false);
+    private CatalogWatcher watcher;
 
     /**
-     * A property that shows the progress of the download, useful for a progress bar.
-     * Defaults to zero on initialization and when nothing is being downloaded.
+     * Copies movies out of the target directory, a few at a time, see downloadMovie.
      */
-    private DoubleProperty downloadProgress = new SimpleDoubleProperty(0);
+    private final TransferScheduler transfers = new TransferScheduler(this::transferFinished);
+
+    /**
+     * What happened to the last download that finished, empty until one does.
+     */
+    private StringProperty transferReport = new SimpleStringProperty("");
+
+    /**
+     * Goes up by one every time the catalog changes on its own, for example when the
+     * background check finds movies that were added outside the app. Listeners should
+     * refresh what they show.
+     */
+    private IntegerProperty catalogVersion = new SimpleIntegerProperty(0);
+
+    /**
+     * Imports movies in the background, started on the first import.
+     */
+    private ImportPipeline importPipeline;
+
+    /**
+     * Gets metadata from IMDb, matching file names against the offline index of the
+     * target directory when it has one.
+     */
+    private final IMDbProvider imdbProvider = new IMDbProvider();
+
+    /**
+     * What the imports are doing, empty if nothing is being imported.
+     */
+    private StringProperty importStatus = new SimpleStringProperty("");
+
+    /**
+     * The report of the last batch import that finished.
+     */
+    private StringProperty importReport = new SimpleStringProperty("");
+
+    /**
+     * What is wrong with the settings given as system properties, empty if nothing.
+     */
+    private StringProperty settingsReport = new SimpleStringProperty("");
+
+    /**
+     * How many batch imports and metadata refreshes are running. While any are, changes
+     * the watcher sees are kept in heldChanges and applied together with the batch.
+     */
+    private int batchesRunning = 0;
+    private final Map<String, MovieModel> heldChanges = new HashMap<>();
+
+    /**
+     * Looks the movies of the catalog up again at night, see startRefresher.
+     * refreshHeld is true while one of its batches counts as running.
+     */
+    private RefreshScheduler refresher;
+    private boolean refreshHeld = false;
 
 
     // CONSTRUCTOR AND METHODS
@@ -78,6 +193,11 @@ public final class MainModel {
      */
     public MainModel() {
 
+        // For working without a network, from what earlier imports cached
+        WebClient.shared().setOffline(Boolean.getBoolean("mediacenter.offline"));
+        // One copy per drive unless the drives are fast enough for more
+        transfers.setDefaultLimit(Integer.getInteger("mediacenter.transfer.perDrive", 1));
+        transfers.setMaxParallel(Integer.getInteger("mediacenter.transfer.parallel", 1));
         loadTargetDirectory();
         loadMovieList();
         pickActiveMovie();
@@ -120,6 +240,265 @@ public final class MainModel {
             // This will make it so that if no target directory is set, no errors will occur
             // when someone adds a movie, but nothing happens.
             targetDirectory = "";
+        loadCatalog();
+
+    }
+
+    /**
+     * Called whenever the target directory changes. Loads the catalog of the target
+     * directory from its snapshot, or an empty one if no target directory is set, then
+     * checks it against the disk in the background.
+     */
+    private void loadCatalog() {
+
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        if (refresher != null) {
+            refresher.stop();
+            refresher = null;
+        }
+        if (refreshHeld) {
+            refreshHeld = false;
+            batchesRunning--;
+        }
+
+        results = null;
+        searching = false;
+        searchStatus.set("");
+        heldChanges.clear();
+        imdbProvider.setOfflineIndex(null);
+        WebClient.shared().setCache(null);
+        if (targetDirectory.isEmpty()) {
+            catalog = new Catalog(null);
+            return;
+        }
+
+        catalog = Catalog.open(new File(targetDirectory));
+        openOfflineIndex();
+        WebClient.shared().setCache(new HttpCache(new File(targetDirectory, HttpCache.DIR_NAME), HTTP_CACHE_BYTES));
+        catalog.addListener(new Catalog.Listener() {
+            @Override
+            public void movieAdded(int id, MovieModel movie) {
+                results = null;
+            }
+
+            @Override
+            public void movieRemoved(int id, MovieModel movie) {
+                results = null;
+            }
+        });
+        prepareSearch();
+        watchCatalog();
+        checkCatalog();
+        startRefresher();
+        resumeExports();
+
+    }
+
+    /**
+     * Opens the offline index of the target directory in the background and hands it
+     * to the IMDb provider, which searches IMDb until then.
+     */
+    private void openOfflineIndex() {
+
+        String opened = targetDirectory;
+        Thread t = new Thread(() -> {
+            OfflineIndex index = OfflineIndex.open(new File(opened));
+            Platform.runLater(() -> {
+                // The target directory may have changed in the meantime
+                if (opened.equals(targetDirectory))
+                    imdbProvider.setOfflineIndex(index);
+            });
+        });
+        t.setDaemon(true);
+        t.start();
+
+    }
+
+    /**
+     * Builds the search indexes of the catalog in the background, so the first search
+     * doesn't wait for them. Until they are ready the search status says so.
+     */
+    private void prepareSearch() {
+
+        Catalog prepared = catalog;
+        searchStatus.set("Preparing search...");
+        searchService.prepare(prepared, () -> {
+            if (prepared != catalog)
+                return;
+            searchStatus.set("");
+            // A search that was waiting shows its own results when it is done
+            if (filter.trim().isEmpty())
+                catalogChanged();
+        });
+
+    }
+
+    /**
+     * Starts watching the target directory. Each batch of changed folders is applied
+     * to the catalog on the JavaFX thread.
+     */
+    private void watchCatalog() {
+
+        Catalog watched = catalog;
+        try {
+            watcher = new CatalogWatcher(watched.getDirectory(), changes -> Platform.runLater(() -> {
+                if (watched != catalog)
+                    return;
+                // A running batch import updates the catalog once, when it is done
+                if (batchesRunning > 0) {
+                    heldChanges.putAll(changes);
+                    return;
+                }
+                if (!watched.apply(changes))
+                    return;
+                watched.save();
+                catalogChanged();
+            }));
+        } catch (IOException e) {
+            // Without a watcher the catalog is still checked at startup
+            e.printStackTrace();
+        }
+
+    }
+
+    /**
+     * Rescans the target directory on a background thread and applies the change
+     * report to the catalog on the JavaFX thread. The catalog keeps serving pages from
+     * the snapshot while this runs, and only changed folders are read again.
+     */
+    private void checkCatalog() {
+
+        Catalog checked = catalog;
+        List<MovieModel> known = new ArrayList<>(checked.getMovies());
+        Thread t = new Thread(() -> {
+            CatalogScanner.Report report = CatalogScanner.scan(checked.getDirectory().toPath(), known);
+            Platform.runLater(() -> {
+                // The target directory may have changed while scanning
+                if (checked != catalog || !checked.apply(report))
+                    return;
+                checked.save();
+                catalogChanged();
+            });
+        });
+        t.setDaemon(true);
+        t.start();
+
+    }
+
+    /**
+     * Starts looking the movies of the catalog up again in the background. It is set up
+     * with system properties: mediacenter.refresh.window is when it runs, 01:00-05:00 by
+     * default, mediacenter.refresh.rate the lookups per minute, 6 by default and 0 to
+     * turn it off, and mediacenter.refresh.days how old metadata may get, 30 by default.
+     * A setting that doesn't parse is reported through the settings report and left at
+     * its default.
+     */
+    private void startRefresher() {
+
+        List<String> problems = new ArrayList<>();
+        double rate = doubleProperty("mediacenter.refresh.rate", 6, problems);
+        if (rate <= 0)
+            return;
+
+        refresher = new RefreshScheduler(catalog, metadataResolver(false), new RefreshScheduler.Listener() {
+            @Override
+            public void batchStarted(RefreshScheduler scheduler) {
+                if (scheduler != refresher || refreshHeld)
+                    return;
+                refreshHeld = true;
+                batchesRunning++;
+            }
+
+            @Override
+            public void batchFinished(RefreshScheduler scheduler, List<MovieModel> movies) {
+                if (scheduler != refresher || !refreshHeld)
+                    return;
+                refreshHeld = false;
+                batchesRunning--;
+                for (MovieModel movie : movies)
+                    heldChanges.put(movie.getFolder(), movie);
+                applyHeldChanges();
+            }
+        });
+        refresher.setRate(rate, 3);
+        refresher.setMaxAge((int)doubleProperty("mediacenter.refresh.days", 30, problems));
+        String window = System.getProperty("mediacenter.refresh.window");
+        if (window != null) {
+            String[] times = window.split("-");
+            try {
+                refresher.setWindow(LocalTime.parse(times[0].trim()), LocalTime.parse(times[1].trim()));
+            } catch (DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                problems.add("mediacenter.refresh.window is " + window
+                        + ", it should look like 01:00-05:00. Refreshing from 01:00 to 05:00 instead.");
+            }
+        }
+        refresher.start();
+
+        if (!problems.isEmpty()) {
+            // Cleared first so the same problems after a reload are still news
+            settingsReport.set("");
+            settingsReport.set(String.join("\n", problems));
+        }
+
+    }
+
+    /**
+     * @param problems gets a line saying so if the property isn't a number.
+     * @return the number in a system property, or the default if it isn't set or isn't a
+     * number.
+     */
+    private static double doubleProperty(String name, double defaultValue, List<String> problems) {
+
+        String value = System.getProperty(name, String.valueOf(defaultValue));
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            problems.add(name + " is " + value + ", which isn't a number. Using " + defaultValue + " instead.");
+            return defaultValue;
+        }
+
+    }
+
+    /**
+     * Applies the changes held while batches were running, in one update of the
+     * catalog, once none are running anymore.
+     */
+    private void applyHeldChanges() {
+
+        if (batchesRunning > 0)
+            return;
+        if (catalog.apply(heldChanges)) {
+            catalog.save();
+            catalogChanged();
+        }
+        heldChanges.clear();
+
+    }
+
+    /**
+     * Reloads the current page after the catalog changed without the user asking.
+     * The listeners of the catalog version are only told if the page they show, the
+     * number of pages or the active movie is different now.
+     */
+    private void catalogChanged() {
+
+        List<MovieModel> oldList = new ArrayList<>(movieList);
+        int oldCount = filteredCount;
+        MovieModel oldActive = activeMovie;
+
+        setPage(page);
+        loadMovieList();
+        if (activeMovie == null || activeMovie.getFolder() == null
+                || catalog.get(activeMovie.getFolder()) == null)
+            pickActiveMovie();
+        else
+            activeMovie = catalog.get(activeMovie.getFolder());
+
+        if (!oldList.equals(movieList) || oldCount != filteredCount || oldActive != activeMovie)
+            catalogVersion.set(catalogVersion.get() + 1);
 
     }
 
@@ -144,47 +523,200 @@ public final class MainModel {
     }
 
     /**
-     * Pulls information from IMDb's HTML and uses that to create a folder for storing
-     * the movie. The folder is located directly under targetDirectory and it contains
-     * an info txt file with text information, an image file with the movie's poster,
-     * and the movie itself.
+     * Imports a movie in the background. Its information comes from the sidecar files
+     * next to it or from IMDb, see metadataResolver, and is used to create a folder for
+     * storing the movie. The folder is located directly under targetDirectory and it
+     * contains an info txt file with text information, an image file with the movie's
+     * poster, and the movie itself. The movie shows up in the catalog as soon as its
+     * info is written.
      * @param pathString where the movie is moved into the program from.
      * @param IMDb a link to the IMDb page of the movie.
+     * @return the import, or null if there is no target directory.
      */
-    public void addMovie(String pathString, String IMDb) {
+    public ImportPipeline.Job addMovie(String pathString, String IMDb) {
 
-        // Instantiate scraper and if it fails, exit method
-        IMDbScraper scraper;
-        try {
-            scraper = new IMDbScraper(IMDb);
-        } catch (IOException e) {
-            System.out.println("Couldn't load IMDb link");
+        if (targetDirectory.isEmpty())
+            return null;
+
+        return getImportPipeline().submit(new File(pathString), IMDb, new File(targetDirectory));
+
+    }
+
+    /**
+     * Imports every movie file among some files and folders in the background, looking
+     * each one up by its sidecar files or its file name. The catalog is updated once,
+     * when the whole batch is done.
+     * @param files the files and folders.
+     * @return the batch, or null if there is no target directory.
+     */
+    public ImportPipeline.Batch addMovies(List<File> files) {
+
+        if (targetDirectory.isEmpty())
+            return null;
+        batchesRunning++;
+        return getImportPipeline().submitBatch(files, new File(targetDirectory));
+
+    }
+
+    /**
+     * Builds the offline IMDb index of the target directory from the title.basics.tsv
+     * and title.ratings.tsv dumps in a folder, on a background thread. Once it is built,
+     * imports match file names against it instead of IMDb's search. How it went is
+     * reported through the import report.
+     * @param dumps the folder with the dumps, gzipped or not.
+     */
+    public void buildOfflineIndex(File dumps) {
+
+        File basics = dumpFile(dumps, "title.basics.tsv");
+        File ratings = dumpFile(dumps, "title.ratings.tsv");
+        if (targetDirectory.isEmpty() || basics == null) {
+            importReport.set("");
+            importReport.set(targetDirectory.isEmpty() ? "Choose a target directory before building the offline index."
+                    : "There is no title.basics.tsv or title.basics.tsv.gz in " + dumps);
             return;
         }
 
-        // Get info from scraper
-        String title = scraper.getTitle();
-        String year = scraper.getYear();
-        String info = scraper.getInfo();
-        String desc = scraper.getDescription();
-        String poster = scraper.getPoster();
+        String built = targetDirectory;
+        Thread t = new Thread(() -> {
+            long start = System.nanoTime();
+            int movies = OfflineIndex.build(basics, ratings, new File(built));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            OfflineIndex index = movies < 0 ? null : OfflineIndex.open(new File(built));
+            Platform.runLater(() -> {
+                // The target directory may have changed while building
+                if (built.equals(targetDirectory) && index != null)
+                    imdbProvider.setOfflineIndex(index);
+                importReport.set("");
+                importReport.set(movies < 0 ? "Couldn't build the offline index from " + dumps
+                        : String.format("Indexed %,d movies from the IMDb dumps in %.1f s.", movies, seconds));
+            });
+        });
+        t.setDaemon(true);
+        t.start();
 
-        // Make list of lines to be saved to disk
-        List<String> lines = new ArrayList<>();
-        lines.add(title);
-        lines.add(year);
-        lines.add(info);
-        lines.add(desc);
-
-        // Save data on disk
-        String folderPath = targetDirectory + "/" + title.replaceAll("[\\\\/:*?\"<>|]", "");
-        System.out.println("Folder path: " + folderPath);
-        IOHelper.makeDirectory(new File(folderPath));
-        IOHelper.downloadImage(new File(folderPath + "/poster"), poster);
-        IOHelper.writeLines(new File(folderPath + "/info"), lines);
-        IOHelper.moveFile(new File(pathString), new File(folderPath + "/movie"));
+    }
 
-        loadMovieList();
+    /**
+     * Finds an IMDb dump in a folder.
+     * @param dumps the folder.
+     * @param name the name of the dump, without .gz.
+     * @return the dump, gzipped if that is all there is, or null if it isn't there.
+     */
+    private static File dumpFile(File dumps, String name) {
+
+        File plain = new File(dumps, name);
+        File gzipped = new File(dumps, name + ".gz");
+        return plain.isFile() ? plain : gzipped.isFile() ? gzipped : null;
+
+    }
+
+    /**
+     * Gets the import pipeline, starting it the first time a movie is imported.
+     * @return the import pipeline.
+     */
+    private ImportPipeline getImportPipeline() {
+
+        if (importPipeline != null)
+            return importPipeline;
+
+        importPipeline = new ImportPipeline(new ImportPipeline.Listener() {
+            @Override
+            public void recorded(ImportPipeline.Job job, MovieModel movie) {
+                // The user may have switched target directories since. A batch is added
+                // all at once when it is done.
+                if (!job.getTargetDir().getPath().equals(targetDirectory) || job.getBatch() != null)
+                    return;
+                catalog.put(movie);
+                catalog.save();
+                catalogChanged();
+            }
+
+            @Override
+            public void posterSaved(ImportPipeline.Job job, MovieModel movie) {
+                // Redraw the grid so the poster is loaded
+                if (movieList.contains(movie) || activeMovie == movie)
+                    catalogVersion.set(catalogVersion.get() + 1);
+            }
+
+            @Override
+            public void finished(ImportPipeline.Job job) {
+                if (job.stageProperty().get() != ImportPipeline.Stage.FAILED)
+                    return;
+                // A batch reports its failures when it is done
+                if (job.getBatch() == null) {
+                    importReport.set("");
+                    importReport.set("Couldn't import " + job.getMedia().getName() + ": " + job.getError());
+                }
+
+                // Its folder is gone, so take it out of the catalog again
+                if (job.getMovie() != null && job.getTargetDir().getPath().equals(targetDirectory)
+                        && catalog.remove(job.getMovie().getFolder()) != null) {
+                    catalog.save();
+                    catalogChanged();
+                }
+            }
+
+            @Override
+            public void batchFinished(ImportPipeline.Batch batch) {
+                batchesRunning--;
+
+                // One update of the catalog for the whole batch, with whatever the
+                // watcher saw in the meantime
+                if (batch.getTargetDir().getPath().equals(targetDirectory))
+                    for (MovieModel movie : batch.getMovies())
+                        heldChanges.put(movie.getFolder(), movie);
+                applyHeldChanges();
+                // Cleared first so the same report twice is still news
+                importReport.set("");
+                importReport.set(batchReport(batch));
+            }
+        }, metadataResolver(true));
+        importStatus.bind(importPipeline.statusProperty());
+        return importPipeline;
+
+    }
+
+    /**
+     * Says how a batch import went and which movies failed, for the import report.
+     * Only the first few failures are named so the report still fits on the screen.
+     * @param batch the finished batch.
+     * @return the report.
+     */
+    private static String batchReport(ImportPipeline.Batch batch) {
+
+        StringBuilder report = new StringBuilder(batch.getReport());
+        List<ImportPipeline.Job> failures = batch.getFailures();
+        for (int i = 0; i < failures.size() && i < REPORTED_FAILURES; i++) {
+            ImportPipeline.Job job = failures.get(i);
+            report.append("\nFailed: ").append(job.getMedia().getName()).append(" (").append(job.getError()).append(")");
+        }
+        if (failures.size() > REPORTED_FAILURES)
+            report.append("\n...and ").append(failures.size() - REPORTED_FAILURES).append(" more");
+        return report.toString();
+
+    }
+
+    /**
+     * Sets up where imported movies get their metadata: the sidecar files next to the
+     * movie, then IMDb, and a JSON service too if the mediacenter.metadata.url system
+     * property names one. Setting mediacenter.metadata.policy to merge combines what
+     * IMDb and the service know instead of taking whichever answers first.
+     * @param sidecars false to skip the sidecar files, when refreshing metadata that
+     * may have come from them.
+     * @return the resolver.
+     */
+    private MetadataResolver metadataResolver(boolean sidecars) {
+
+        MetadataResolver.Policy policy = "merge".equalsIgnoreCase(System.getProperty("mediacenter.metadata.policy"))
+                ? MetadataResolver.Policy.MERGE : MetadataResolver.Policy.FIRST_SUCCESS;
+        MetadataResolver resolver = new MetadataResolver(policy);
+        if (sidecars)
+            resolver.add(new SidecarProvider(), 0);
+        resolver.add(imdbProvider, 30000);
+        String endpoint = System.getProperty("mediacenter.metadata.url");
+        if (endpoint != null && !endpoint.isEmpty())
+            resolver.add(new JsonHttpProvider(endpoint), 10000);
+        return resolver;
 
     }
 
@@ -194,9 +726,15 @@ public final class MainModel {
      */
     public void deleteMovie() {
 
+        // The placeholder movie shown when the catalog is empty has no folder
+        if (activeMovie.getFolder() == null)
+            return;
+
         // Delete
-        String folderPath = targetDirectory + "/" + activeMovie.getTitle() + " " + activeMovie.getYear();
+        String folderPath = targetDirectory + "/" + activeMovie.getFolder();
         System.out.println(IOHelper.deleteFile(new File(folderPath)));
+        catalog.remove(activeMovie.getFolder());
+        catalog.save();
 
         // Reload
         loadMovieList();
@@ -205,64 +743,100 @@ public final class MainModel {
     }
 
     /**
-     * Starts a new thread to download a movie from the app's file system onto the
-     * user's hard drive. It can be downloading in the background.
+     * Queues a download of the active movie from the app's file system onto the user's
+     * hard drive. It starts once the drives it uses have room, see TransferScheduler.
      * @param destDir the location to copy the movie to.
+     * @return the transfer, whose progress and cancel are in the list of transfers, or
+     * the one already downloading the movie there.
      */
-    public void downloadMovie(String destDir) {
+    public TransferScheduler.Transfer downloadMovie(String destDir) {
 
         // Get source and dest files
-        String pathToMovieDir = targetDirectory + "/" + activeMovie.getTitle() + " " + activeMovie.getYear();
+        String pathToMovieDir = targetDirectory + "/" + activeMovie.getFolder();
         File source = new File(pathToMovieDir + "/movie");
         File dest = new File(destDir + "/" + activeMovie.getTitle() + " " + activeMovie.getYear());
 
-        Task<Double> task = new Task<Double>() {
+        TransferScheduler.Transfer transfer = transfers.submit(source, dest, TransferScheduler.Priority.NORMAL);
+        saveExports(new File(targetDirectory));
+        return transfer;
 
-            @Override
-            protected Double call() throws Exception {
-                long totalBytes = source.length();
-                long bytesCopied = 0;
+    }
 
-                try {
+    /**
+     * Queues the downloads of the target directory that weren't over when the app was
+     * last closed, or when another target directory was chosen. Each goes on from its
+     * last verified chunk, see ExportJournal, and shows up in the list of transfers.
+     */
+    private void resumeExports() {
 
-                    InputStream in = new FileInputStream(source);
-                    OutputStream out = new FileOutputStream(dest);
+        File file = new File(targetDirectory, EXPORTS_FILE);
+        List<String> lines = file.isFile() ? IOHelper.readLines(file) : null;
+        if (lines == null)
+            return;
 
-                    byte[] buffer = new byte[1024];
-                    int len = 0;
+        for (String line : lines) {
+            String[] paths = line.split("\t", 2);
+            if (paths.length < 2)
+                continue;
+            File source = new File(paths[0]);
+            File target = new File(paths[1]);
+            // Without its journal it was finished or cancelled after all. One that is
+            // still queued is given back by submit instead of being queued twice.
+            if (!source.isFile() || !ExportJournal.journalFile(target).isFile())
+                continue;
+            transfers.submit(source, target, TransferScheduler.Priority.NORMAL);
+        }
+        saveExports(new File(targetDirectory));
 
-                    while ((len = in.read(buffer)) > 0) {
-                        out.write(buffer, 0, len);
-                        bytesCopied += len;
-                        double progress = (double)bytesCopied / (double)totalBytes;
-                        setDownloadProgress(progress);
-                    }
+    }
 
-                    // JAVA BUG - Automatic garbage collection sometimes fails and causes, in this case, the folders
-                    // containing the movie info to not be deleted when the user wants. The solution is to close,
-                    // flush, nullify, then call garbage collection manually.
-                    in.close();
-                    out.flush();
-                    out.close();
+    /**
+     * Writes down the downloads out of a target directory that aren't over, so they go
+     * on when the app is opened with it again. Downloads out of other target
+     * directories, which were chosen before this one, stay in their own lists.
+     * @param directory the target directory.
+     */
+    private void saveExports(File directory) {
 
-                } catch (IOException e) {
-                    e.printStackTrace();
-                } finally {
-                    System.gc();
-                }
+        File file = new File(directory, EXPORTS_FILE);
+        List<String> lines = new ArrayList<>();
+        for (TransferScheduler.Transfer transfer : transfers.getTransfers())
+            if (directory.equals(exportedFrom(transfer)))
+                lines.add(transfer.getSource().getPath() + "\t" + transfer.getTarget().getPath());
+        if (lines.isEmpty())
+            file.delete();
+        else
+            IOHelper.writeLines(file, lines);
 
-                return (double)bytesCopied / (double)totalBytes;
-            }
-        };
+    }
 
-        task.setOnSucceeded((e) -> {
-            setDownloading(false);
-            setDownloadProgress(0);
-        });
+    /**
+     * @return the target directory a download is out of, the one holding the folder of
+     * the movie being downloaded.
+     */
+    private static File exportedFrom(TransferScheduler.Transfer transfer) {
 
-        Thread t = new Thread(task);
-        setDownloading(true);
-        t.start();
+        return transfer.getSource().getParentFile().getParentFile();
+
+    }
+
+    /**
+     * Reports a download that is over. Cancelled ones aren't news.
+     */
+    private void transferFinished(TransferScheduler.Transfer transfer) {
+
+        saveExports(exportedFrom(transfer));
+        String report;
+        if (transfer.stateProperty().get() == TransferScheduler.State.DONE)
+            report = transfer.getTarget().getName() + " is downloaded.";
+        else if (transfer.stateProperty().get() == TransferScheduler.State.FAILED)
+            report = "Couldn't download " + transfer.getTarget().getName() + ": " + transfer.getError().getMessage()
+                    + ". Downloading it to the same place again carries on where it stopped.";
+        else
+            return;
+        // Cleared first so the same report twice is still news
+        transferReport.set("");
+        transferReport.set(report);
 
     }
 
@@ -287,6 +861,30 @@ public final class MainModel {
 
     }
 
+    /**
+     * Gets how many movies of each genre there are in the catalog.
+     * @return the count of each genre with movies, in genre order.
+     */
+    public Map<String, Integer> getGenreCounts() {
+
+        if (catalog.getColumns() == null)
+            return Collections.emptyMap();
+        return catalog.getColumns().getGenreCounts();
+
+    }
+
+    /**
+     * Gets how many movies of each decade there are in the catalog.
+     * @return the count of each decade with movies, like 1990, oldest first.
+     */
+    public Map<Integer, Integer> getDecadeCounts() {
+
+        if (catalog.getColumns() == null)
+            return Collections.emptyMap();
+        return catalog.getColumns().getDecadeCounts();
+
+    }
+
     /**
      * Gets the list of movies loaded.
      * @return list of movies loaded.
@@ -298,22 +896,33 @@ public final class MainModel {
     }
 
     /**
-     * Gets the list of files that match the current filter.
-     * @return List of files for movies which match the filter.
+     * Gets the list of movies in the catalog that match the current filter, in the
+     * sort order, best match first for relevance. The list is only searched for again
+     * after something changed, in the background.
+     * @return List of movies which match the filter, or null while they are searched
+     * for.
      */
-    private ArrayList<File> getFilteredFiles() {
-
-        File dir = new File(targetDirectory);
-        File[] files = dir.listFiles();
-
-        // Applies the filter from the user's search.
-        // Nothing changes if there is no search active.
-        ArrayList<File> filteredFiles = new ArrayList<>();
-        for (File file : files)
-            if (filter.equals("") || file.getName().toLowerCase().contains(filter.toLowerCase()))
-                filteredFiles.add(file);
-
-        return filteredFiles;
+    private List<MovieModel> getFilteredMovies() {
+
+        // Nothing changes if there is no search active, apart from the order.
+        if (filter.trim().isEmpty())
+            return catalog.getMovies(sortOrder);
+
+        // Applies the filter from the user's search. The search never runs on the JavaFX
+        // thread, the page is loaded again when it is done.
+        if (results == null && !searching) {
+            String searched = filter;
+            SortOrder order = sortOrder;
+            searching = true;
+            searchService.search(catalog, searched, order, movies -> {
+                if (!searched.equals(filter) || order != sortOrder)
+                    return;
+                searching = false;
+                results = movies;
+                catalogChanged();
+            });
+        }
+        return results;
 
     }
 
@@ -324,8 +933,19 @@ public final class MainModel {
     public int getNumPages() {
 
         if (targetDirectory.isEmpty()) return 1;
-        ArrayList<File> filteredFiles = getFilteredFiles();
-        return filteredFiles.size() / moviesPerPage + 1;
+        List<MovieModel> filteredMovies = getFilteredMovies();
+        int totalMovies = filteredMovies == null ? filteredCount : filteredMovies.size();
+        return Math.max(1, (totalMovies + moviesPerPage - 1) / moviesPerPage);
+
+    }
+
+    /**
+     * Gets the order the movies are shown in.
+     * @return the sort order.
+     */
+    public SortOrder getSortOrder() {
+
+        return sortOrder;
 
     }
 
@@ -357,22 +977,18 @@ public final class MainModel {
         // Stop if there is no target dir
         if (targetDirectory.isEmpty()) return;
 
-        ArrayList<File> filteredFiles = getFilteredFiles();
+        // The page stays as it is until a search that is running is done
+        List<MovieModel> filteredMovies = getFilteredMovies();
+        if (filteredMovies == null) return;
+        filteredCount = filteredMovies.size();
 
-        // Fills the movie list by looping through the list of files. It skips the first however many
-        // files based on what the active page is. Then, it iterates until it reaches the limit for
-        // movies on a page or until there are no movies left in the filtered search.
+        // Fills the movie list by looping through the filtered catalog. It skips the first however
+        // many movies based on what the active page is. Then, it iterates until it reaches the limit
+        // for movies on a page or until there are no movies left in the filtered search.
         movieList.clear();
         int startIndex = (page - 1) * moviesPerPage;
-        for (int i = startIndex; i < startIndex + moviesPerPage && filteredFiles.size() > i; i++) {
-            // Reads the info file so it can make a MovieModel
-            List<String> lines = IOHelper.readLines(new File(filteredFiles.get(i) + "/info"));
-            // Grabs the String path to the poster
-            String poster = filteredFiles.get(i).getPath() + "/poster";
-            // Makes the MovieModel object and adds it to the list
-            MovieModel movie = new MovieModel(poster, lines.get(0), lines.get(1), lines.get(2), lines.get(3));
-            movieList.add(movie);
-        }
+        for (int i = startIndex; i < startIndex + moviesPerPage && filteredMovies.size() > i; i++)
+            movieList.add(filteredMovies.get(i));
     }
 
     /**
@@ -391,8 +1007,8 @@ public final class MainModel {
      */
     public void pageUp() {
 
-        ArrayList<File> filteredFiles = getFilteredFiles();
-        int totalMovies = filteredFiles.size();
+        List<MovieModel> filteredMovies = getFilteredMovies();
+        int totalMovies = filteredMovies == null ? filteredCount : filteredMovies.size();
         if (totalMovies > page * moviesPerPage)
             page++;
         loadMovieList();
@@ -404,7 +1020,9 @@ public final class MainModel {
      */
     public void playMovie() {
 
-        String pathToMovieDir = targetDirectory + "/" + activeMovie.getTitle().replaceAll("[\\\\/:*?\"<>|]", "");
+        if (activeMovie.getFolder() == null)
+            return;
+        String pathToMovieDir = targetDirectory + "/" + activeMovie.getFolder();
         File movieFile = new File(pathToMovieDir + "/movie");
 
         // isDesktopSupported and the Thread are necessary to open more than one movie.
@@ -423,6 +1041,16 @@ public final class MainModel {
 
     }
 
+    /**
+     * Sets the active movie, which is shown on the info bar.
+     * @param movie a movie from the catalog.
+     */
+    public void setActiveMovie(MovieModel movie) {
+
+        activeMovie = movie;
+
+    }
+
     /**
      * Sets the active movie, which is shown on the info bar. It's found by searching
      * for a matching title and year in the movie list.
@@ -442,26 +1070,86 @@ public final class MainModel {
     }
 
     /**
-     * Sets the search filter.
+     * Sets the search filter and searches for it in the background, so a slow fuzzy
+     * search never blocks the JavaFX thread.
+     * @param filter new search filter.
+     * @param onDone run on the JavaFX thread once the results are ready.
+     */
+    public void search(String filter, Runnable onDone) {
+
+        setFilter(filter);
+        if (filter.trim().isEmpty()) {
+            onDone.run();
+            return;
+        }
+
+        SortOrder order = sortOrder;
+        searching = true;
+        searchService.search(catalog, filter, order, movies -> {
+            // Ignore it if the user searched for something else since
+            if (!filter.equals(this.filter) || order != sortOrder)
+                return;
+            searching = false;
+            results = movies;
+            onDone.run();
+        });
+
+    }
+
+    /**
+     * Finds titles to suggest while the user is typing, in the background.
+     * @param prefix what the user typed so far.
+     * @param limit the most suggestions.
+     * @param callback gets the suggestions on the JavaFX thread.
+     */
+    public void suggest(String prefix, int limit, Consumer<List<MovieModel>> callback) {
+
+        if (prefix.trim().isEmpty()) {
+            callback.accept(new ArrayList<>());
+            return;
+        }
+        searchService.suggest(catalog, prefix, limit, callback);
+
+    }
+
+    /**
+     * Sets the search filter. A search that is still running for an older filter
+     * will not be used.
      * @param filter new search filter.
      */
     public void setFilter(String filter) {
 
         this.filter = filter;
+        results = null;
+        searching = false;
         page = 1;
 
     }
 
+    /**
+     * Sets the order the movies are shown in and goes back to the first page. A
+     * search that is active is sorted again in the background.
+     * @param order the new order.
+     * @param onDone run on the JavaFX thread once the movies are in order.
+     */
+    public void setSortOrder(SortOrder order, Runnable onDone) {
+
+        sortOrder = order;
+        search(filter, onDone);
+
+    }
+
     /**
      * Sets the page being shown. If the page is too low, it defaults to the minimum.
-     * If the page is too high, it defaults to maximum. Currently not in use.
-     * Could be implemented later if user is allowed to type a page.
+     * If the page is too high, it defaults to maximum. Used when the user types a
+     * page to go to.
      * @param page new page.
      */
     public void setPage(int page) {
 
-        if (page > movieList.size() / moviesPerPage + 1)
-            this.page = movieList.size() / moviesPerPage + 1;
+        int numPages = getNumPages();
+        if (page > numPages)
+            this.page = numPages;
         else if (page < 1)
             this.page = 1;
         else
@@ -499,6 +1187,8 @@ public final class MainModel {
 
         // Refresh
         this.targetDirectory = targetDirectory;
+        this.page = 1;
+        this.loadCatalog();
         this.loadMovieList();
         this.pickActiveMovie();
 
@@ -508,56 +1198,75 @@ public final class MainModel {
     // PROPERTY METHODS
 
     /**
-     * @return if a download is in progress.
+     * @return if a download is waiting or in progress.
      */
     public final boolean isDownloading() {
 
-        return isDownloading.get();
+        return transfers.isBusy();
+
+    }
+
+    /**
+     * @return the downloads that are waiting or in progress.
+     */
+    public ObservableList<TransferScheduler.Transfer> getTransfers() {
+
+        return transfers.getTransfers();
+
+    }
+
+    /**
+     * @return what happened to the last download that finished, set when one does.
+     */
+    public ReadOnlyStringProperty transferReportProperty() {
+
+        return transferReport;
 
     }
 
     /**
-     * @param downloading if it's downloading.
+     * @return what the search is waiting for, empty once it is ready.
      */
-    public final void setDownloading(boolean downloading) {
+    public ReadOnlyStringProperty searchStatusProperty() {
 
-        isDownloading.set(downloading);
+        return searchStatus;
 
     }
 
     /**
-     * @return downloading property.
+     * @return what the imports are doing, empty if nothing is being imported.
      */
-    public BooleanProperty downloadingProperty() {
+    public ReadOnlyStringProperty importStatusProperty() {
 
-        return isDownloading;
+        return importStatus;
 
     }
 
     /**
-     * @return the download progress.
+     * @return the report of the last batch import, set when one finishes.
      */
-    public final double getDownloadProgress() {
+    public ReadOnlyStringProperty importReportProperty() {
 
-        return downloadProgress.get();
+        return importReport;
 
     }
 
     /**
-     * @param value download progress.
+     * @return what is wrong with the settings given as system properties, set when the
+     * catalog is loaded with any that don't parse.
      */
-    public final void setDownloadProgress(double value) {
+    public ReadOnlyStringProperty settingsReportProperty() {
 
-        downloadProgress.set(value);
+        return settingsReport;
 
     }
 
     /**
-     * @return download progress property.
+     * @return catalog version property, which changes when the catalog changes on its own.
      */
-    public DoubleProperty downloadProgressProperty() {
+    public ReadOnlyIntegerProperty catalogVersionProperty() {
 
-        return downloadProgress;
+        return catalogVersion;
 
     }
 
@@ -0,0 +1,154 @@
+package land.spooky.media.models;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Guesses the title and year of a movie from the name of its file, the way release
+ * files are usually named: "The.Matrix.1999.1080p.BluRay.x264.mkv" is The Matrix from
+ * 1999. The name is cut at the first word that looks like release information, and
+ * the last year before that ends the title. Anything in square brackets is dropped.
+ */
+public final class MediaFileName {
+
+    /**
+     * File extensions of movies.
+     */
+    private static final Set<String> VIDEO = new HashSet<>(Arrays.asList(
+            "mkv", "mp4", "m4v", "avi", "mov", "wmv", "mpg", "mpeg", "ts", "m2ts", "webm", "flv", "vob", "ogv"));
+
+    private static final Pattern YEAR = Pattern.compile("^[(\\[]?(19\\d\\d|20\\d\\d)[)\\]]?$");
+    private static final Pattern RELEASE = Pattern.compile(
+            "(?i)^(\\d{3,4}p|[hx]\\.?26[45]|hevc|xvid|divx|bluray|blu-ray|brrip|bdrip|dvdrip|webrip|web-dl|web|hdtv"
+                    + "|remux|proper|repack|extended|unrated|remastered|imax|hdr|10bit|aac|ac3|dts|dd5\\.1|multi)$");
+
+    private final String title;
+    private final String year;
+
+
+    private MediaFileName(String title, String year) {
+
+        this.title = title;
+        this.year = year;
+
+    }
+
+    /**
+     * Guesses the title and year from a file name.
+     * @param fileName the name of the file, with or without extension.
+     * @return the guess.
+     */
+    public static MediaFileName parse(String fileName) {
+
+        String name = fileName;
+        int dot = name.lastIndexOf('.');
+        if (dot > 0 && VIDEO.contains(name.substring(dot + 1).toLowerCase()))
+            name = name.substring(0, dot);
+
+        // Dots and underscores stand in for spaces, brackets hold release groups
+        name = name.replaceAll("\\[[^\\]]*\\]", " ").replace('.', ' ').replace('_', ' ');
+        String[] words = name.trim().split("\\s+");
+
+        // Release information ends the name
+        int end = 0;
+        while (end < words.length && !RELEASE.matcher(words[end]).matches())
+            end++;
+
+        // The last year before that ends the title. A year as the very first word is a
+        // title, like 1917, and so is a year followed by another, like 2049 (2017).
+        String year = null;
+        for (int i = end - 1; i > 0 && year == null; i--) {
+            Matcher matcher = YEAR.matcher(words[i]);
+            if (matcher.matches()) {
+                year = matcher.group(1);
+                end = i;
+            }
+        }
+
+        List<String> title = new ArrayList<>();
+        for (int i = 0; i < end; i++)
+            if (!words[i].equals("-"))
+                title.add(words[i].replaceAll("[()]", ""));
+
+        return new MediaFileName(String.join(" ", title).trim(), year);
+
+    }
+
+    /**
+     * Finds every movie file among some files and folders, looking inside the folders.
+     * Sample clips that come with releases are left out.
+     * @param roots the files and folders.
+     * @return the movie files, in the order they were found.
+     */
+    public static List<File> collect(List<File> roots) {
+
+        List<File> found = new ArrayList<>();
+        for (File root : roots)
+            collect(root, found);
+        return found;
+
+    }
+
+    /**
+     * Checks if a file is a movie by its extension.
+     * @param file the file.
+     * @return true if it is a movie file.
+     */
+    public static boolean isVideo(File file) {
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && VIDEO.contains(name.substring(dot + 1).toLowerCase());
+
+    }
+
+    /**
+     * @return the title, may be empty.
+     */
+    public String getTitle() {
+
+        return title;
+
+    }
+
+    /**
+     * @return the year, or null if the name has none.
+     */
+    public String getYear() {
+
+        return year;
+
+    }
+
+    /**
+     * Adds a movie file to the list, or every movie file in a folder.
+     * @param file the file or folder.
+     * @param found the movie files so far.
+     */
+    private static void collect(File file, List<File> found) {
+
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null)
+                return;
+            Arrays.sort(children);
+            for (File child : children)
+                collect(child, found);
+        } else if (isVideo(file) && !file.getName().toLowerCase().contains("sample")) {
+            found.add(file);
+        }
+
+    }
+
+}
@@ -0,0 +1,196 @@
+package land.spooky.media.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * What is known about a movie before it is in the catalog: its title, year, info,
+ * description, the web address of its poster and the link to its IMDb page. It is
+ * immutable, so it can be handed from one stage of an import to the next without
+ * copying. Metadata from several providers is combined with merge.
+ */
+public final class Metadata {
+
+    private final String title;
+    private final String year;
+    private final String info;
+    private final String description;
+    private final String posterUrl;
+    private final String link;
+
+
+    /**
+     * @param title the title.
+     * @param year the year.
+     * @param info the info, like "PG-13 | 2h 22min | Drama".
+     * @param description the description.
+     * @param posterUrl the web address of the poster, may be null.
+     */
+    public Metadata(String title, String year, String info, String description, String posterUrl) {
+
+        this(title, year, info, description, posterUrl, null);
+
+    }
+
+    /**
+     * @param title the title.
+     * @param year the year.
+     * @param info the info, like "PG-13 | 2h 22min | Drama".
+     * @param description the description.
+     * @param posterUrl the web address of the poster, may be null.
+     * @param link the link to the movie's IMDb page, may be null.
+     */
+    public Metadata(String title, String year, String info, String description, String posterUrl, String link) {
+
+        this.title = title;
+        this.year = year;
+        this.info = info;
+        this.description = description;
+        this.posterUrl = posterUrl;
+        this.link = link;
+
+    }
+
+    /**
+     * Reads metadata from a JSON object, the format of sidecar files and metadata
+     * services. The fields are title, year, description (or plot or overview), poster
+     * and imdb (an id or a link), and either info or its parts: rating (or mpaa),
+     * runtime in minutes or like "2h 22min", genres as an array or a comma separated
+     * list, and released.
+     * @param object the JSON object.
+     * @return the metadata, with null for every field that isn't there.
+     */
+    static Metadata fromJson(Map<?, ?> object) {
+
+        String info = Json.string(object, "info");
+        if (info == null) {
+            String runtime = Json.string(object, "runtime");
+            int minutes = 0;
+            if (runtime != null)
+                minutes = runtime.matches("\\d+") ? Integer.parseInt(runtime) : InfoParser.parseRuntime(runtime);
+            long genres = 0;
+            String names = Json.string(object, "genres", "genre");
+            if (names != null)
+                for (String name : names.split(","))
+                    if (InfoParser.genreBit(name.trim()) >= 0)
+                        genres |= 1L << InfoParser.genreBit(name.trim());
+            info = InfoParser.formatInfo(Json.string(object, "rating", "mpaa"), minutes, genres,
+                    Json.string(object, "released"));
+        }
+        return new Metadata(Json.string(object, "title"), Json.string(object, "year"), info,
+                Json.string(object, "description", "plot", "overview"), Json.string(object, "poster", "posterUrl"),
+                IMDbScraper.titleLink(Json.string(object, "imdb", "imdbId", "link")));
+
+    }
+
+    /**
+     * @return title.
+     */
+    public String getTitle() {
+
+        return title;
+
+    }
+
+    /**
+     * @return year.
+     */
+    public String getYear() {
+
+        return year;
+
+    }
+
+    /**
+     * @return info.
+     */
+    public String getInfo() {
+
+        return info;
+
+    }
+
+    /**
+     * @return description.
+     */
+    public String getDescription() {
+
+        return description;
+
+    }
+
+    /**
+     * @return the web address of the poster, may be null.
+     */
+    public String getPosterUrl() {
+
+        return posterUrl;
+
+    }
+
+    /**
+     * @return the link to the movie's IMDb page, may be null.
+     */
+    public String getLink() {
+
+        return link;
+
+    }
+
+    /**
+     * Fills in what this metadata is missing from other metadata.
+     * @param other the metadata to take missing fields from, may be null.
+     * @return the combined metadata, where the fields of this one win.
+     */
+    public Metadata merge(Metadata other) {
+
+        if (other == null)
+            return this;
+        return new Metadata(pick(title, other.title), pick(year, other.year), pick(info, other.info),
+                pick(description, other.description), pick(posterUrl, other.posterUrl), pick(link, other.link));
+
+    }
+
+    /**
+     * @return true if there is a title, which is all a movie needs to be imported.
+     */
+    public boolean hasTitle() {
+
+        return title != null && !title.isEmpty();
+
+    }
+
+    /**
+     * Makes the lines of a movie's info file.
+     * @return the title, year, info and description, then the link if it is known so
+     * the movie can be looked up again later.
+     */
+    public List<String> toLines() {
+
+        List<String> lines = new ArrayList<>();
+        lines.add(title);
+        lines.add(year);
+        lines.add(info);
+        lines.add(description);
+        if (link != null)
+            lines.add(link);
+        return lines;
+
+    }
+
+    /**
+     * @return the first of two values that isn't null or empty.
+     */
+    private static String pick(String first, String second) {
+
+        return first == null || first.isEmpty() ? second : first;
+
+    }
+
+}
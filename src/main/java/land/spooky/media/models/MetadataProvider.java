@@ -0,0 +1,147 @@
+package land.spooky.media.models;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Somewhere metadata for a movie can come from: IMDb, the sidecar files next to the
+ * movie or a JSON web service. The MetadataResolver asks several of them at once and
+ * picks or combines their answers.
+ *
+ * A provider is local if it never touches the network. Local providers are asked
+ * first, one after the other, and a local answer with a title wins before any network
+ * provider is asked.
+ */
+public interface MetadataProvider {
+
+    /**
+     * @return a short name for messages, like "IMDb".
+     */
+    String getName();
+
+    /**
+     * @return true if the provider only reads files on this computer.
+     */
+    boolean isLocal();
+
+    /**
+     * Looks a movie up. This is called from a worker thread and may block; a provider
+     * that takes too long is given up on, and its thread interrupted.
+     * @param request what is known about the movie.
+     * @return the metadata, or null if the provider doesn't know the movie. It may be
+     * partial, like only a link.
+     * @throws IOException if the provider couldn't be asked.
+     */
+    Metadata lookup(Request request) throws IOException;
+
+    /**
+     * What is known about a movie before it is looked up: its file, the title and year
+     * in the name of the file and maybe the link to its IMDb page. It is immutable.
+     */
+    final class Request {
+
+        private final File media;
+        private final String title;
+        private final String year;
+        private final String link;
+
+
+        /**
+         * Makes a request for a movie file, taking the title and year from its name.
+         * @param media the movie file.
+         * @param link the link to its IMDb page, or null if it isn't known.
+         */
+        public Request(File media, String link) {
+
+            MediaFileName name = MediaFileName.parse(media.getName());
+            this.media = media;
+            this.title = name.getTitle();
+            this.year = name.getYear();
+            this.link = link;
+
+        }
+
+        /**
+         * Makes a request for a movie that is already in the catalog, which knows its
+         * title and year better than a file name does.
+         * @param folder the movie's folder.
+         * @param title the title, may be null.
+         * @param year the year, may be null.
+         * @param link the link to its IMDb page, or null if it isn't known.
+         * @return the request.
+         */
+        public static Request forMovie(File folder, String title, String year, String link) {
+
+            return new Request(folder, title == null ? "" : title, year, link);
+
+        }
+
+        private Request(File media, String title, String year, String link) {
+
+            this.media = media;
+            this.title = title;
+            this.year = year;
+            this.link = link;
+
+        }
+
+        /**
+         * @return the movie file, or its folder for a movie already in the catalog.
+         */
+        public File getMedia() {
+
+            return media;
+
+        }
+
+        /**
+         * @return the title in the name of the file, may be empty.
+         */
+        public String getTitle() {
+
+            return title;
+
+        }
+
+        /**
+         * @return the year in the name of the file, or null if there is none.
+         */
+        public String getYear() {
+
+            return year;
+
+        }
+
+        /**
+         * @return the link to the movie's IMDb page, or null if it isn't known.
+         */
+        public String getLink() {
+
+            return link;
+
+        }
+
+        /**
+         * Fills in what partial metadata from an earlier provider knows.
+         * @param metadata the partial metadata.
+         * @return the request with the link, title and year of the metadata where this
+         * one has none.
+         */
+        Request with(Metadata metadata) {
+
+            return new Request(media,
+                    title.isEmpty() && metadata.hasTitle() ? metadata.getTitle() : title,
+                    year == null && metadata.getYear() != null && !metadata.getYear().isEmpty()
+                            ? metadata.getYear() : year,
+                    link == null ? metadata.getLink() : link);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,179 @@
+package land.spooky.media.models;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Looks a movie up with several MetadataProviders. The local providers are asked
+ * first, in the order they were added, and the first local answer with a title is
+ * used without touching the network. A local answer without a title, like a link to
+ * IMDb in a .nfo file, is passed on to the network providers.
+ *
+ * The network providers are then asked all at once, each on its own thread and with
+ * its own time limit. With FIRST_SUCCESS the first answer with a title is used and the
+ * rest are cancelled. With MERGE every answer that comes in time is combined, where
+ * the providers added first win for each field.
+ */
+public final class MetadataResolver {
+
+    /**
+     * How the answers of the network providers become one.
+     */
+    public enum Policy {
+
+        FIRST_SUCCESS,
+        MERGE
+
+    }
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private final Policy policy;
+    private final List<MetadataProvider> providers = new ArrayList<>();
+    private final List<Long> timeouts = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "metadata-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * @param policy how the answers of the network providers become one.
+     */
+    public MetadataResolver(Policy policy) {
+
+        this.policy = policy;
+
+    }
+
+    /**
+     * Adds a provider. Providers added first win when answers are merged.
+     * @param provider the provider.
+     * @param timeoutMillis how long the provider may take, ignored for local providers.
+     * @return this resolver.
+     */
+    public synchronized MetadataResolver add(MetadataProvider provider, long timeoutMillis) {
+
+        providers.add(provider);
+        timeouts.add(timeoutMillis);
+        return this;
+
+    }
+
+    /**
+     * Looks a movie up. Blocks until there is an answer or every provider has failed
+     * or run out of time.
+     * @param request what is known about the movie.
+     * @return the metadata, which always has a title.
+     * @throws IOException if no provider knew the movie, with what went wrong for each.
+     * @throws InterruptedException if interrupted while waiting for the providers.
+     */
+    public Metadata resolve(MetadataProvider.Request request) throws IOException, InterruptedException {
+
+        List<MetadataProvider> providers;
+        List<Long> timeouts;
+        synchronized (this) {
+            providers = new ArrayList<>(this.providers);
+            timeouts = new ArrayList<>(this.timeouts);
+        }
+        StringBuilder failures = new StringBuilder();
+
+        // Local providers one by one, no threads needed to read a file
+        Metadata partial = null;
+        for (MetadataProvider provider : providers) {
+            if (!provider.isLocal())
+                continue;
+            Metadata metadata;
+            try {
+                metadata = provider.lookup(request);
+            } catch (IOException | RuntimeException e) {
+                failures.append("; ").append(provider.getName()).append(": ").append(e.getMessage());
+                continue;
+            }
+            if (metadata == null)
+                continue;
+            if (metadata.hasTitle())
+                return metadata.merge(partial);
+            partial = metadata.merge(partial);
+            request = request.with(metadata);
+        }
+
+        // Network providers all at once
+        CompletionService<Metadata> done = new ExecutorCompletionService<>(executor);
+        Map<Future<Metadata>, Integer> pending = new HashMap<>();
+        long[] deadlines = new long[providers.size()];
+        MetadataProvider.Request asked = request;
+        for (int i = 0; i < providers.size(); i++) {
+            MetadataProvider provider = providers.get(i);
+            if (provider.isLocal())
+                continue;
+            deadlines[i] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeouts.get(i));
+            pending.put(done.submit(() -> provider.lookup(asked)), i);
+        }
+
+        Metadata[] answers = new Metadata[providers.size()];
+        try {
+            while (!pending.isEmpty()) {
+                long next = Long.MAX_VALUE;
+                for (int i : pending.values())
+                    next = Math.min(next, deadlines[i]);
+                Future<Metadata> future = done.poll(Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+                if (future == null) {
+                    // Give up on everything past its time limit
+                    long now = System.nanoTime();
+                    pending.entrySet().removeIf(entry -> {
+                        if (deadlines[entry.getValue()] > now)
+                            return false;
+                        entry.getKey().cancel(true);
+                        failures.append("; ").append(providers.get(entry.getValue()).getName()).append(": timed out");
+                        return true;
+                    });
+                    continue;
+                }
+
+                int i = pending.remove(future);
+                try {
+                    answers[i] = future.get();
+                } catch (ExecutionException e) {
+                    failures.append("; ").append(providers.get(i).getName()).append(": ")
+                            .append(e.getCause().getMessage());
+                }
+                if (policy == Policy.FIRST_SUCCESS && answers[i] != null && answers[i].hasTitle())
+                    return answers[i].merge(partial);
+            }
+        } finally {
+            for (Future<Metadata> future : pending.keySet())
+                future.cancel(true);
+        }
+
+        // Combine in the order the providers were added
+        Metadata merged = null;
+        for (Metadata answer : answers)
+            if (answer != null)
+                merged = merged == null ? answer : merged.merge(answer);
+        merged = merged == null ? partial : merged.merge(partial);
+        if (merged != null && merged.hasTitle())
+            return merged;
+        throw new IOException("No movie found for " + request.getMedia().getName() + failures);
+
+    }
+
+}
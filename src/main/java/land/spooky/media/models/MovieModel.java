@@ -4,10 +4,13 @@ package land.spooky.media.models;
  * @author Daniel Gelber
  * @version 1.0
  * Created 2018-07-14
- * Last Modified 2018-07-16
+ * Last Modified 2026-10-18
  *
  * This is a model of a movie. It contains all the logic needed to display
  * the necessary information onto a GUI. Information cannot be changed.
+ * Movies that live in the target directory also know the name of their folder
+ * and the modified time and size of its info file, so the catalog can tell if
+ * it's stale without reading the file.
  */
 public class MovieModel {
 
@@ -16,6 +19,9 @@ public class MovieModel {
     private String year;
     private String info;
     private String description;
+    private String folder;
+    private long modified;
+    private long size;
 
 
     /**
@@ -34,6 +40,25 @@ public class MovieModel {
         this.description = description;
     }
 
+    /**
+     * Constructor for a movie that is stored in the target directory.
+     * @param poster the string uri to the poster.
+     * @param title the title.
+     * @param year the year it was released.
+     * @param info the technical info (Rating, runtime, etc).
+     * @param description the summary.
+     * @param folder the name of the movie's folder in the target directory.
+     * @param modified when the info file was last modified, in epoch millis.
+     * @param size the size of the info file in bytes.
+     */
+    public MovieModel(String poster, String title, String year, String info, String description,
+                      String folder, long modified, long size) {
+        this(poster, title, year, info, description);
+        this.folder = folder;
+        this.modified = modified;
+        this.size = size;
+    }
+
     /**
      * @return poster.
      */
@@ -69,4 +94,25 @@ public class MovieModel {
         return description;
     }
 
+    /**
+     * @return folder name, or null if the movie isn't stored on disk.
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * @return when the info file was last modified, in epoch millis.
+     */
+    public long getModified() {
+        return modified;
+    }
+
+    /**
+     * @return the size of the info file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
 }
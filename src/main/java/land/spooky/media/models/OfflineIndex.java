@@ -0,0 +1,561 @@
+package land.spooky.media.models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * A movie lookup that works without the network, built from the title.basics.tsv and
+ * title.ratings.tsv dumps IMDb publishes. The dumps are several gigabytes, so they are
+ * streamed line by line, and since both are sorted by title id the ratings are joined
+ * to the titles as the two streams go by. Only movies are kept.
+ *
+ * The index is one file: a header, a hash table of normalized titles and the movie
+ * records. Each slot of the table is the hash of a title and the offset of its record,
+ * so a movie is found by hashing its title and reading a slot or two. Both the English
+ * and the original title of a movie are in the table. Only the header is read when the
+ * index is opened. A lookup opens the file and reads the slots it probes and the
+ * records they point at, so the index costs no memory however big it is. The file is
+ * not kept open or memory-mapped, so a new build can replace it while the old one is
+ * still in use, which Windows doesn't allow for an open or mapped file.
+ *
+ * Building the index takes about as much memory as the table, however big the dumps
+ * are: records and title hashes are written to temporary files as they are read, and
+ * only the table is filled in in memory. Rows of the dumps that don't parse are
+ * skipped.
+ */
+public final class OfflineIndex {
+
+    /**
+     * The name of the offline index inside the target directory. It starts with the
+     * name of the catalog index so the watcher ignores it the same way.
+     */
+    public static final String FILE_NAME = CatalogIndex.FILE_NAME + ".imdb";
+
+    /**
+     * "MIMD", marks the file as an offline index.
+     */
+    private static final int MAGIC = 0x4D494D44;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Magic, version, slot count and movie count.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * A title hash and a record offset.
+     */
+    private static final int SLOT_SIZE = 16;
+
+    /**
+     * How many slots a lookup reads at once, most lookups need only the first.
+     */
+    private static final int SLOTS_READ = 8;
+
+    /**
+     * Tconst, year, runtime, rating, votes and genres, before the titles.
+     */
+    private static final int RECORD_HEADER = 22;
+
+    /**
+     * How much of a record a lookup reads at first, enough for most titles.
+     */
+    private static final int RECORD_READ = 256;
+
+    private final File file;
+    private final int slots;
+    private final int count;
+    private final long recordsStart;
+
+
+    private OfflineIndex(File file, int slots, int count) {
+
+        this.file = file;
+        this.slots = slots;
+        this.count = count;
+        this.recordsStart = HEADER_SIZE + (long)slots * SLOT_SIZE;
+
+    }
+
+    /**
+     * Opens the offline index of a target directory, reading only its header.
+     * @param targetDir the target directory.
+     * @return the index, or null if there is none.
+     */
+    public static final OfflineIndex open(File targetDir) {
+
+        File file = new File(targetDir, FILE_NAME);
+        if (!file.isFile())
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                return null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            IOHelper.readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                return null;
+            int slots = header.getInt(8);
+            if (slots <= 0 || Integer.bitCount(slots) != 1 || HEADER_SIZE + (long)slots * SLOT_SIZE > channel.size())
+                return null;
+            return new OfflineIndex(file, slots, header.getInt(12));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+    }
+
+    /**
+     * Builds the offline index of a target directory from the IMDb dumps. This reads
+     * gigabytes and takes a while, so it should run on a background thread.
+     * @param basics title.basics.tsv, or the .gz IMDb serves.
+     * @param ratings title.ratings.tsv, or the .gz, may be null.
+     * @param targetDir the target directory to put the index in.
+     * @return the number of movies indexed, or -1 if it failed.
+     */
+    public static final int build(File basics, File ratings, File targetDir) {
+
+        File records = new File(targetDir, FILE_NAME + ".records");
+        File hashes = new File(targetDir, FILE_NAME + ".hashes");
+        File temp = new File(targetDir, FILE_NAME + ".tmp");
+        try {
+            // Stream the dumps into records and title hashes
+            int[] counts = writeRecords(basics, ratings, records, hashes);
+            int movies = counts[0];
+            int titles = counts[1];
+
+            // A table at most half full keeps the probes short
+            int slots = Integer.highestOneBit(Math.max(16, titles * 2 - 1)) * 2;
+            long recordsStart = HEADER_SIZE + (long)slots * SLOT_SIZE;
+            if (recordsStart > Integer.MAX_VALUE)
+                throw new IOException("Too many titles for the table: " + titles);
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer table = ByteBuffer.allocate((int)recordsStart);
+                table.putInt(MAGIC).putInt(VERSION).putInt(slots).putInt(movies);
+
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(hashes),
+                        1 << 16))) {
+                    for (int i = 0; i < titles; i++) {
+                        long hash = in.readLong();
+                        long offset = in.readLong();
+                        int slot = (int)hash & (slots - 1);
+                        while (table.getLong(HEADER_SIZE + slot * SLOT_SIZE) != 0)
+                            slot = (slot + 1) & (slots - 1);
+                        table.putLong(HEADER_SIZE + slot * SLOT_SIZE, hash);
+                        table.putLong(HEADER_SIZE + slot * SLOT_SIZE + 8, offset);
+                    }
+                }
+                table.clear();
+                while (table.hasRemaining())
+                    out.write(table);
+
+                try (FileChannel in = FileChannel.open(records.toPath(), StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < in.size())
+                        position += in.transferTo(position, in.size() - position, out.position(recordsStart + position));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            temp.delete();
+            return -1;
+        } finally {
+            records.delete();
+            hashes.delete();
+        }
+
+        if (!IOHelper.replaceFile(temp, new File(targetDir, FILE_NAME)))
+            return -1;
+        OfflineIndex index = open(targetDir);
+        return index == null ? -1 : index.size();
+
+    }
+
+    /**
+     * @return the number of movies in the index.
+     */
+    public int size() {
+
+        return count;
+
+    }
+
+    /**
+     * Finds a movie by its title. If several movies have the title, the one from the
+     * year wins, then one from a year either side, since release dates differ between
+     * countries, then the one with the most votes.
+     * @param title the title, in any case and with or without accents.
+     * @param year the year, or null if it isn't known.
+     * @return the movie, or null if there is none with that title or the index can't
+     * be read.
+     */
+    public Metadata find(String title, String year) {
+
+        String key = key(title);
+        if (key.isEmpty())
+            return null;
+        long hash = hash(key);
+        int wantedYear = year == null ? 0 : InfoParser.parseYear(year, null);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer best = null;
+            long bestScore = -1;
+            ByteBuffer table = null;
+            int first = 0;
+            for (int slot = (int)hash & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+                // Read the slots a few at a time, up to the end of the table
+                if (table == null || slot < first || slot >= first + table.limit() / SLOT_SIZE) {
+                    first = slot;
+                    table = ByteBuffer.allocate(Math.min(SLOTS_READ, slots - slot) * SLOT_SIZE);
+                    IOHelper.readFully(channel, table, HEADER_SIZE + (long)slot * SLOT_SIZE);
+                }
+                int at = (slot - first) * SLOT_SIZE;
+                long slotHash = table.getLong(at);
+                if (slotHash == 0)
+                    break;
+                if (slotHash != hash)
+                    continue;
+
+                ByteBuffer record = record(channel, recordsStart + table.getLong(at + 8));
+                if (!key.equals(key(string(record, 0))) && !key.equals(key(string(record, 1))))
+                    continue;
+
+                int recordYear = record.getShort(4);
+                long votes = record.getInt(10) & 0xFFFFFFFFL;
+                int closeness = wantedYear == 0 ? 0 : recordYear == wantedYear ? 2
+                        : Math.abs(recordYear - wantedYear) == 1 ? 1 : 0;
+                if (wantedYear != 0 && closeness == 0)
+                    continue;
+                long score = (long)closeness << 32 | votes;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = record;
+                }
+            }
+            return best == null ? null : metadata(best);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+    }
+
+    /**
+     * Reads a record, however long its titles are.
+     * @param channel the index file.
+     * @param position where the record starts in the file.
+     * @return the record, starting at 0.
+     */
+    private static ByteBuffer record(FileChannel channel, long position) throws IOException {
+
+        ByteBuffer record = ByteBuffer.allocate((int)Math.min(RECORD_READ, channel.size() - position));
+        IOHelper.readFully(channel, record, position);
+
+        // The length of the title, then the length of the original title after it
+        int length = RECORD_HEADER + 2;
+        for (int i = 0; i < 2; i++) {
+            if (record.limit() < length) {
+                record = ByteBuffer.allocate(length);
+                IOHelper.readFully(channel, record, position);
+            }
+            length += (record.getShort(length - 2) & 0xFFFF) + (i == 0 ? 2 : 0);
+        }
+        if (record.limit() < length) {
+            record = ByteBuffer.allocate(length);
+            IOHelper.readFully(channel, record, position);
+        }
+        return record;
+
+    }
+
+    /**
+     * Turns a record into metadata. The dumps have no age rating, description or
+     * poster, so the info is the runtime, genres and year, and the description is the
+     * IMDb rating.
+     * @param record the record.
+     * @return the metadata.
+     */
+    private static Metadata metadata(ByteBuffer record) {
+
+        int tconst = record.getInt(0);
+        int year = record.getShort(4);
+        int runtime = record.getShort(6);
+        int rating = record.getShort(8);
+        long votes = record.getInt(10) & 0xFFFFFFFFL;
+        long genres = record.getLong(14);
+
+        String info = InfoParser.formatInfo(null, runtime, genres, year > 0 ? Integer.toString(year) : null);
+
+        String description = rating > 0 ? String.format("Rated %.1f/10 by %,d IMDb users.", rating / 10.0, votes) : "";
+        String link = String.format("https://www.imdb.com/title/tt%07d/", tconst);
+        return new Metadata(string(record, 0), year > 0 ? Integer.toString(year) : "", info,
+                description, null, link);
+
+    }
+
+    /**
+     * Reads one of the titles of a record.
+     * @param record the record.
+     * @param which 0 for the title, 1 for the original title.
+     * @return the title.
+     */
+    private static String string(ByteBuffer record, int which) {
+
+        int at = RECORD_HEADER;
+        for (int i = 0; i < which; i++)
+            at += 2 + (record.getShort(at) & 0xFFFF);
+        return new String(record.array(), at + 2, record.getShort(at) & 0xFFFF, StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * Streams the dumps into the record file and the title hash file. A record is the
+     * title id, year, runtime, rating times ten, votes, genre bitset and then the
+     * title and original title, each a length and UTF-8 bytes.
+     * @return the number of movies and the number of title hashes.
+     */
+    private static int[] writeRecords(File basics, File ratings, File records, File hashes) throws IOException {
+
+        int movies = 0;
+        int titles = 0;
+        try (BufferedReader titlesIn = reader(basics);
+             BufferedReader ratingsIn = ratings == null ? null : reader(ratings);
+             DataOutputStream recordsOut = new DataOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(records), 1 << 16));
+             DataOutputStream hashesOut = new DataOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(hashes), 1 << 16))) {
+
+            // Skip the column names
+            titlesIn.readLine();
+            String[] rating = ratingsIn == null ? null : next(ratingsIn, true);
+
+            long offset = 0;
+            String line;
+            while ((line = titlesIn.readLine()) != null) {
+                // tconst, titleType, primaryTitle, originalTitle, isAdult, startYear,
+                // endYear, runtimeMinutes, genres
+                String[] columns = split(line, 9);
+                if (columns == null || !(columns[1].equals("movie") || columns[1].equals("tvMovie")))
+                    continue;
+                int tconst = tconst(columns[0]);
+                if (tconst < 0)
+                    continue;
+
+                // Both dumps are sorted by tconst, so the rating is never behind
+                while (rating != null && tconst(rating[0]) < tconst)
+                    rating = next(ratingsIn, false);
+                boolean rated = rating != null && tconst(rating[0]) == tconst;
+
+                byte[] title = bytes(columns[2]);
+                byte[] original = bytes(columns[3]);
+                recordsOut.writeInt(tconst);
+                recordsOut.writeShort(number(columns[5]));
+                recordsOut.writeShort(number(columns[7]));
+                recordsOut.writeShort(rated ? rating(rating[1]) : 0);
+                recordsOut.writeInt(rated ? number(rating[2]) : 0);
+                recordsOut.writeLong(genres(columns[8]));
+                recordsOut.writeShort(title.length);
+                recordsOut.write(title);
+                recordsOut.writeShort(original.length);
+                recordsOut.write(original);
+
+                String key = key(columns[2]);
+                String originalKey = key(columns[3]);
+                if (!key.isEmpty()) {
+                    hashesOut.writeLong(hash(key));
+                    hashesOut.writeLong(offset);
+                    titles++;
+                }
+                if (!originalKey.isEmpty() && !originalKey.equals(key)) {
+                    hashesOut.writeLong(hash(originalKey));
+                    hashesOut.writeLong(offset);
+                    titles++;
+                }
+
+                offset += 26 + title.length + original.length;
+                movies++;
+            }
+        }
+        return new int[] {movies, titles};
+
+    }
+
+    /**
+     * Opens a dump, unzipping it on the fly if it is a .gz.
+     */
+    private static BufferedReader reader(File file) throws IOException {
+
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz"))
+            in = new GZIPInputStream(in, 1 << 16);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 20);
+
+    }
+
+    /**
+     * Reads the next line of the ratings dump: tconst, averageRating, numVotes. Lines
+     * whose title id or rating don't parse, like a \N rating, are skipped.
+     * @param header true to skip the column names first.
+     * @return the columns, or null at the end.
+     */
+    private static String[] next(BufferedReader ratings, boolean header) throws IOException {
+
+        if (header)
+            ratings.readLine();
+        String line;
+        while ((line = ratings.readLine()) != null) {
+            String[] columns = split(line, 3);
+            if (columns != null && tconst(columns[0]) >= 0 && rating(columns[1]) >= 0)
+                return columns;
+        }
+        return null;
+
+    }
+
+    /**
+     * Splits a line at its tabs, quicker than a regular expression on every line.
+     * @return the columns, or null if the line doesn't have that many.
+     */
+    private static String[] split(String line, int count) {
+
+        String[] columns = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = i == count - 1 ? line.length() : line.indexOf('\t', start);
+            if (end < 0)
+                return null;
+            columns[i] = line.substring(start, end);
+            start = end + 1;
+        }
+        return columns;
+
+    }
+
+    /**
+     * @return the number of a title id like tt0133093, or -1 if it isn't one.
+     */
+    private static int tconst(String id) {
+
+        if (id.length() < 3 || id.length() > 11 || !id.startsWith("tt"))
+            return -1;
+        try {
+            return Integer.parseInt(id.substring(2));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+    }
+
+    /**
+     * @return a rating like 7.3 times ten, or -1 for the dumps' \N or anything else
+     *         that isn't a rating.
+     */
+    private static int rating(String column) {
+
+        try {
+            float rating = Float.parseFloat(column);
+            return rating >= 0 && rating <= 10 ? Math.round(rating * 10) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+    }
+
+    /**
+     * @return the number in a column, or 0 for the dumps' \N or anything else that
+     *         isn't a number that fits.
+     */
+    private static int number(String column) {
+
+        if (column.isEmpty() || column.length() > 9 || !Character.isDigit(column.charAt(0)))
+            return 0;
+        try {
+            return Integer.parseInt(column);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+
+    }
+
+    /**
+     * @return the genre bitset of a comma separated genre column.
+     */
+    private static long genres(String column) {
+
+        long genres = 0;
+        for (String name : column.split(",")) {
+            int bit = InfoParser.genreBit(name);
+            if (bit >= 0)
+                genres |= 1L << bit;
+        }
+        return genres;
+
+    }
+
+    /**
+     * @return the UTF-8 bytes of a title, cut short to fit its length field.
+     */
+    private static byte[] bytes(String title) {
+
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= 0xFFFF)
+            return bytes;
+        byte[] cut = new byte[0xFFFF];
+        System.arraycopy(bytes, 0, cut, 0, cut.length);
+        return cut;
+
+    }
+
+    /**
+     * Normalizes a title the same way for the dumps and for lookups, so "The Matrix",
+     * "the matrix" and "The.Matrix" are the same key.
+     * @param title the title.
+     * @return the words of the title, lower case without accents, joined by spaces.
+     */
+    private static String key(String title) {
+
+        return String.join(" ", SearchIndex.tokenize(title));
+
+    }
+
+    /**
+     * Hashes a key with 64 bit FNV-1a. 0 marks an empty slot, so it is never a hash.
+     * @param key the key.
+     * @return the hash.
+     */
+    private static long hash(String key) {
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Spread the high bits into the low ones the table uses
+        hash ^= hash >>> 32;
+        return hash == 0 ? 1 : hash;
+
+    }
+
+}
@@ -0,0 +1,245 @@
+package land.spooky.media.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * A sorted array prefix index over the titles of the catalog, used for the suggestions
+ * under the search bar. Every normalized title is kept in one sorted array, and every
+ * part of a title that starts at a later word in another, so "godf" suggests The
+ * Godfather through its second word. A prefix is two binary searches away from the
+ * range of titles that start with it.
+ *
+ * Like the other search indexes it is written from the JavaFX thread and read from the
+ * search thread, so every method is synchronized.
+ */
+public final class PrefixIndex implements Catalog.Listener {
+
+    private final Keys titles = new Keys();
+    private final Keys laterWords = new Keys();
+
+
+    /**
+     * Indexes the title of a movie.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie.
+     */
+    @Override
+    public synchronized void movieAdded(int id, MovieModel movie) {
+
+        List<String> keys = keys(movie.getTitle());
+        if (keys.isEmpty())
+            return;
+        titles.insert(keys.get(0), id);
+        for (int i = 1; i < keys.size(); i++)
+            laterWords.insert(keys.get(i), id);
+
+    }
+
+    /**
+     * Fills an empty index with a whole catalog at once. The keys are collected and
+     * sorted in one go, instead of each being put in its place in the sorted arrays.
+     * @param movies the movie with each id, null for ids not in use.
+     */
+    public synchronized void addAll(List<MovieModel> movies) {
+
+        Keys.Builder firstWords = new Keys.Builder();
+        Keys.Builder otherWords = new Keys.Builder();
+        for (int id = 0; id < movies.size(); id++) {
+            MovieModel movie = movies.get(id);
+            if (movie == null)
+                continue;
+            List<String> keys = keys(movie.getTitle());
+            if (keys.isEmpty())
+                continue;
+            firstWords.add(keys.get(0), id);
+            for (int i = 1; i < keys.size(); i++)
+                otherWords.add(keys.get(i), id);
+        }
+        titles.fill(firstWords);
+        laterWords.fill(otherWords);
+
+    }
+
+    /**
+     * Removes the title of a movie from the index.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie, as it was indexed.
+     */
+    @Override
+    public synchronized void movieRemoved(int id, MovieModel movie) {
+
+        List<String> keys = keys(movie.getTitle());
+        if (keys.isEmpty())
+            return;
+        titles.delete(keys.get(0), id);
+        for (int i = 1; i < keys.size(); i++)
+            laterWords.delete(keys.get(i), id);
+
+    }
+
+    /**
+     * Finds the movies whose title starts with a prefix, or failing that has a word
+     * that does.
+     * @param prefix what the user typed so far.
+     * @param limit the most ids to return.
+     * @return the ids, titles that start with the prefix first, each in title order.
+     */
+    public synchronized int[] suggest(String prefix, int limit) {
+
+        String key = String.join(" ", SearchIndex.tokenize(prefix));
+        IntList ids = new IntList(limit);
+        if (key.isEmpty())
+            return ids.toArray();
+
+        titles.collect(key, limit, ids);
+        if (ids.size() < limit)
+            laterWords.collect(key, limit, ids);
+        return ids.toArray();
+
+    }
+
+    /**
+     * Makes the keys of a title: the normalized title, then the part of it that
+     * starts at each later word.
+     * @param title the title, may be null.
+     * @return the keys, empty if the title has no words.
+     */
+    private static List<String> keys(String title) {
+
+        List<String> words = SearchIndex.tokenize(title);
+        List<String> keys = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++)
+            keys.add(String.join(" ", words.subList(i, words.size())));
+        return keys;
+
+    }
+
+    /**
+     * Parallel sorted arrays of keys and the id each key belongs to, ordered by key
+     * and then by id.
+     */
+    private static final class Keys {
+
+        private String[] keys = new String[16];
+        private int[] ids = new int[16];
+        private int size = 0;
+
+        /**
+         * Finds where a key and id are, or would go.
+         * @return the position, or (-(insertion point) - 1) if it isn't there.
+         */
+        private int find(String key, int id) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compare = keys[middle].compareTo(key);
+                if (compare == 0)
+                    compare = Integer.compare(ids[middle], id);
+                if (compare < 0)
+                    low = middle + 1;
+                else if (compare > 0)
+                    high = middle - 1;
+                else
+                    return middle;
+            }
+            return -(low + 1);
+        }
+
+        void insert(String key, int id) {
+            int index = find(key, id);
+            if (index >= 0)
+                return;
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            keys[index] = key;
+            ids[index] = id;
+            size++;
+        }
+
+        /**
+         * Replaces the keys with a builder's, sorted.
+         */
+        void fill(Builder builder) {
+            Integer[] order = new Integer[builder.size];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            Arrays.sort(order, (a, b) -> {
+                int compare = builder.keys[a].compareTo(builder.keys[b]);
+                return compare != 0 ? compare : Integer.compare(builder.ids[a], builder.ids[b]);
+            });
+
+            keys = new String[Math.max(16, order.length)];
+            ids = new int[keys.length];
+            size = 0;
+            for (int i : order) {
+                // The same key twice for one movie is only kept once, like insert does
+                if (size > 0 && ids[size - 1] == builder.ids[i] && keys[size - 1].equals(builder.keys[i]))
+                    continue;
+                keys[size] = builder.keys[i];
+                ids[size] = builder.ids[i];
+                size++;
+            }
+        }
+
+        void delete(String key, int id) {
+            int index = find(key, id);
+            if (index < 0)
+                return;
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            keys[--size] = null;
+        }
+
+        /**
+         * Adds the ids of the keys starting with a prefix, skipping ids already there,
+         * until there are enough.
+         */
+        void collect(String prefix, int limit, IntList found) {
+            int index = find(prefix, Integer.MIN_VALUE);
+            index = index < 0 ? -index - 1 : index;
+            for (; index < size && found.size() < limit && keys[index].startsWith(prefix); index++) {
+                boolean seen = false;
+                for (int i = 0; i < found.size() && !seen; i++)
+                    seen = found.get(i) == ids[index];
+                if (!seen)
+                    found.add(ids[index]);
+            }
+        }
+
+        /**
+         * Collects keys in any order for fill.
+         */
+        static final class Builder {
+
+            private String[] keys = new String[16];
+            private int[] ids = new int[16];
+            private int size = 0;
+
+            void add(String key, int id) {
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                keys[size] = key;
+                ids[size] = id;
+                size++;
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,535 @@
+package land.spooky.media.models;
+
+import javafx.application.Platform;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Looks the movies of a catalog up again in the background, so ratings and
+ * descriptions don't go stale and movies whose import only half worked, with "null"
+ * for their info or description, get fixed. Once a night, in a window that is quiet
+ * by default, it walks the catalog and refreshes the movies that are incomplete, then
+ * the ones that weren't looked up for longer than the maximum age, oldest first.
+ *
+ * Lookups are spaced out by a token bucket so IMDb is never asked more than a few
+ * times a minute, and each failure in a row doubles the pause before the next one.
+ * Every refreshed info file is rewritten but keeps its modified time, which is when the
+ * movie was added, so sorting by date added doesn't change. When each movie was last
+ * refreshed is kept in a file of its own in the target directory, so it isn't due
+ * again for a while. The catalog is updated in batches: the Listener is told
+ * before the first file of a batch is written and given the whole batch afterwards,
+ * both on the JavaFX thread.
+ */
+public final class RefreshScheduler {
+
+    /**
+     * The file in the target directory that lists when each movie was last refreshed,
+     * one "time, tab, folder" per line. It starts with the name of the catalog index so
+     * the watcher ignores it the same way.
+     */
+    public static final String REFRESHED_FILE = CatalogIndex.FILE_NAME + ".refreshed";
+
+    /**
+     * Hears about the batches of a scheduler, on the JavaFX thread.
+     */
+    public interface Listener {
+
+        /**
+         * Info files are about to be rewritten.
+         * @param scheduler the scheduler.
+         */
+        void batchStarted(RefreshScheduler scheduler);
+
+        /**
+         * A batch of info files was rewritten.
+         * @param scheduler the scheduler.
+         * @param movies the refreshed movies, read from their new info files.
+         */
+        void batchFinished(RefreshScheduler scheduler, List<MovieModel> movies);
+
+    }
+
+    private final Catalog catalog;
+    private final MetadataResolver resolver;
+    private final Listener listener;
+    private final Random random = new Random();
+
+    private LocalTime windowStart = LocalTime.of(1, 0);
+    private LocalTime windowEnd = LocalTime.of(5, 0);
+    private long maxAgeMillis = TimeUnit.DAYS.toMillis(30);
+    private int batchSize = 25;
+    private long batchMillis = TimeUnit.MINUTES.toMillis(2);
+    private long minBackoffMillis = TimeUnit.SECONDS.toMillis(30);
+    private long maxBackoffMillis = TimeUnit.MINUTES.toMillis(30);
+    private TokenBucket bucket = new TokenBucket(6, 3);
+
+    private Thread thread;
+
+    // Only used by the refresh thread
+    private final Map<String, Long> refreshed = new HashMap<>();
+
+
+    /**
+     * Makes a scheduler for a catalog. It doesn't run until it is started.
+     * @param catalog the catalog, only used on the JavaFX thread.
+     * @param resolver where the metadata comes from.
+     * @param listener told about each batch.
+     */
+    public RefreshScheduler(Catalog catalog, MetadataResolver resolver, Listener listener) {
+
+        this.catalog = catalog;
+        this.resolver = resolver;
+        this.listener = listener;
+
+    }
+
+    /**
+     * Sets the time of day refreshes run in. A window may run past midnight, and one
+     * that starts when it ends lasts all day.
+     * @param start when it opens.
+     * @param end when it closes.
+     */
+    public synchronized void setWindow(LocalTime start, LocalTime end) {
+
+        windowStart = start;
+        windowEnd = end;
+
+    }
+
+    /**
+     * Sets how fast movies are looked up.
+     * @param perMinute lookups per minute in the long run, more than 0.
+     * @param burst how many may go right after each other after a pause.
+     */
+    public synchronized void setRate(double perMinute, int burst) {
+
+        bucket = new TokenBucket(perMinute, burst);
+
+    }
+
+    /**
+     * Sets how old a complete info file gets before it is refreshed.
+     * @param days the age in days.
+     */
+    public synchronized void setMaxAge(int days) {
+
+        maxAgeMillis = TimeUnit.DAYS.toMillis(days);
+
+    }
+
+    /**
+     * Sets how many movies are written before the catalog is updated, and how long a
+     * batch is kept open at most.
+     * @param size the most movies in a batch.
+     * @param millis the longest a batch stays open.
+     */
+    public synchronized void setBatch(int size, long millis) {
+
+        batchSize = size;
+        batchMillis = millis;
+
+    }
+
+    /**
+     * Sets the pause after a failed lookup, which doubles with each failure in a row.
+     * @param minMillis the pause after one failure.
+     * @param maxMillis the longest pause.
+     */
+    public synchronized void setBackoff(long minMillis, long maxMillis) {
+
+        minBackoffMillis = minMillis;
+        maxBackoffMillis = maxMillis;
+
+    }
+
+    /**
+     * Starts refreshing in the background, if it isn't already.
+     */
+    public synchronized void start() {
+
+        if (thread != null)
+            return;
+        thread = new Thread(this::run, "metadata-refresh");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+
+    }
+
+    /**
+     * Stops refreshing. A lookup in progress is given up; a batch that was started is
+     * never finished.
+     */
+    public synchronized void stop() {
+
+        if (thread == null)
+            return;
+        thread.interrupt();
+        thread = null;
+
+    }
+
+    /**
+     * Runs one pass per window until interrupted.
+     */
+    private void run() {
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(millisUntilWindow(LocalDateTime.now()));
+                List<MovieModel> movies = snapshot();
+                loadRefreshed(movies);
+                List<MovieModel> due = due(movies, System.currentTimeMillis());
+                if (!due.isEmpty())
+                    refresh(due);
+                // One pass a night, so wait for this window to close
+                Thread.sleep(millisUntilWindowEnds(LocalDateTime.now()));
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+
+    }
+
+    /**
+     * Refreshes movies until they are done or the window closes.
+     * @param due the movies, in the order to refresh them.
+     * @throws InterruptedException if stopped.
+     */
+    private void refresh(List<MovieModel> due) throws InterruptedException {
+
+        File directory = catalog.getDirectory();
+        List<MovieModel> batch = new ArrayList<>();
+        long batchStarted = 0;
+        int failures = 0;
+
+        for (MovieModel movie : due) {
+            if (millisUntilWindow(LocalDateTime.now()) > 0)
+                break;
+            bucket().acquire();
+
+            Metadata metadata;
+            File folder = new File(directory, movie.getFolder());
+            List<String> lines = IOHelper.readLines(new File(folder, "info"));
+            if (lines == null || lines.size() < 4)
+                // Gone or no longer a movie, the watcher takes care of it
+                continue;
+            Metadata old = new Metadata(known(lines.get(0)), known(lines.get(1)), known(lines.get(2)),
+                    known(lines.get(3)), null, lines.size() > 4 ? known(lines.get(4)) : null);
+            try {
+                metadata = resolver.resolve(MetadataProvider.Request.forMovie(folder, old.getTitle(),
+                        old.getYear(), old.getLink()));
+                failures = 0;
+            } catch (IOException e) {
+                // Tried again on the next pass, after a pause that grows while IMDb fails
+                failures++;
+                Thread.sleep(backoff(failures));
+                continue;
+            }
+
+            if (batchStarted == 0) {
+                batchStarted = System.currentTimeMillis();
+                Platform.runLater(() -> listener.batchStarted(this));
+            }
+            MovieModel written = write(folder, metadata.merge(old));
+            if (written != null) {
+                batch.add(written);
+                refreshed.put(movie.getFolder(), System.currentTimeMillis());
+            }
+
+            if (batch.size() >= batchSize() || System.currentTimeMillis() - batchStarted >= batchMillis()) {
+                finishBatch(batch);
+                batch = new ArrayList<>();
+                batchStarted = 0;
+            }
+        }
+
+        if (batchStarted != 0)
+            finishBatch(batch);
+
+    }
+
+    private void finishBatch(List<MovieModel> batch) {
+
+        saveRefreshed();
+        Platform.runLater(() -> listener.batchFinished(this, batch));
+
+    }
+
+    /**
+     * Rewrites a movie's info file, and gets its poster if it has none.
+     * @param folder the movie's folder.
+     * @param metadata the new metadata.
+     * @return the movie as it is now, or null if the info file couldn't be written.
+     */
+    private MovieModel write(File folder, Metadata metadata) {
+
+        File poster = new File(folder, "poster");
+        if (!poster.isFile() && metadata.getPosterUrl() != null)
+            IOHelper.downloadImage(poster, metadata.getPosterUrl());
+
+        // Written beside it first, so a reader never sees half a file
+        File info = new File(folder, "info");
+        File temp = new File(folder, "info.refresh");
+        long added = info.lastModified();
+        if (!IOHelper.writeLines(temp, metadata.toLines()) || !IOHelper.replaceFile(temp, info)) {
+            temp.delete();
+            return null;
+        }
+        // The modified time is when the movie was added, the refresh is kept elsewhere
+        if (added > 0)
+            info.setLastModified(added);
+        return CatalogIndex.readMovie(folder);
+
+    }
+
+    /**
+     * Picks the movies that need refreshing: the incomplete ones first, then the ones
+     * not looked up for longer than the maximum age, each least recently looked up first.
+     * @param movies every movie in the catalog.
+     * @param now the time now, in epoch millis.
+     * @return the movies to refresh.
+     */
+    private List<MovieModel> due(List<MovieModel> movies, long now) {
+
+        long maxAge;
+        synchronized (this) {
+            maxAge = maxAgeMillis;
+        }
+
+        // Whether a movie is incomplete looks for its poster, so it is asked once a movie
+        List<MovieModel> incomplete = new ArrayList<>();
+        List<MovieModel> stale = new ArrayList<>();
+        Map<String, Long> checked = new HashMap<>();
+        for (MovieModel movie : movies) {
+            if (movie.getFolder() == null)
+                continue;
+            long lastChecked = Math.max(movie.getModified(), refreshed.getOrDefault(movie.getFolder(), 0L));
+            checked.put(movie.getFolder(), lastChecked);
+            if (isIncomplete(movie))
+                incomplete.add(movie);
+            else if (now - lastChecked > maxAge)
+                stale.add(movie);
+        }
+
+        Comparator<MovieModel> oldestFirst = Comparator.comparingLong(movie -> checked.get(movie.getFolder()));
+        incomplete.sort(oldestFirst);
+        stale.sort(oldestFirst);
+        incomplete.addAll(stale);
+        return incomplete;
+
+    }
+
+    /**
+     * Reads when each movie was last refreshed, forgetting movies that are gone.
+     * @param movies every movie in the catalog.
+     */
+    private void loadRefreshed(List<MovieModel> movies) {
+
+        refreshed.clear();
+        File file = new File(catalog.getDirectory(), REFRESHED_FILE);
+        List<String> lines = file.isFile() ? IOHelper.readLines(file) : null;
+        if (lines == null)
+            return;
+
+        Set<String> folders = new HashSet<>();
+        for (MovieModel movie : movies)
+            folders.add(movie.getFolder());
+        for (String line : lines) {
+            String[] columns = line.split("\t", 2);
+            if (columns.length < 2 || !folders.contains(columns[1]))
+                continue;
+            try {
+                refreshed.put(columns[1], Long.parseLong(columns[0]));
+            } catch (NumberFormatException e) {
+                // A broken line only means the movie is refreshed again sooner
+            }
+        }
+
+    }
+
+    /**
+     * Writes when each movie was last refreshed.
+     */
+    private void saveRefreshed() {
+
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : refreshed.entrySet())
+            lines.add(entry.getValue() + "\t" + entry.getKey());
+
+        // Written beside it first, so a crash never leaves half a file
+        File file = new File(catalog.getDirectory(), REFRESHED_FILE);
+        File temp = new File(catalog.getDirectory(), REFRESHED_FILE + ".tmp");
+        if (!IOHelper.writeLines(temp, lines) || !IOHelper.replaceFile(temp, file))
+            temp.delete();
+
+    }
+
+    /**
+     * @return true if a movie is missing any of its text or its poster.
+     */
+    private boolean isIncomplete(MovieModel movie) {
+
+        return known(movie.getTitle()) == null || known(movie.getYear()) == null || known(movie.getInfo()) == null
+                || known(movie.getDescription()) == null
+                || !new File(new File(catalog.getDirectory(), movie.getFolder()), "poster").isFile();
+
+    }
+
+    /**
+     * @return a line of an info file, or null if it is empty or the "null" a failed
+     * lookup left there.
+     */
+    private static String known(String line) {
+
+        return line == null || line.trim().isEmpty() || line.equals("null") ? null : line;
+
+    }
+
+    /**
+     * Copies the movies of the catalog on the JavaFX thread.
+     * @return the copy.
+     * @throws InterruptedException if stopped while waiting.
+     */
+    private List<MovieModel> snapshot() throws InterruptedException {
+
+        FutureTask<List<MovieModel>> copy = new FutureTask<>(() -> new ArrayList<>(catalog.getMovies()));
+        Platform.runLater(copy);
+        try {
+            return copy.get();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+
+    }
+
+    /**
+     * @return how long to wait before a window opens, 0 if one is open.
+     */
+    synchronized long millisUntilWindow(LocalDateTime now) {
+
+        if (isOpen(now.toLocalTime()))
+            return 0;
+        LocalDateTime start = now.toLocalDate().atTime(windowStart);
+        if (!start.isAfter(now))
+            start = start.plusDays(1);
+        return now.until(start, ChronoUnit.MILLIS);
+
+    }
+
+    /**
+     * @return how long until the open window closes, or until this time tomorrow if
+     * it never does.
+     */
+    synchronized long millisUntilWindowEnds(LocalDateTime now) {
+
+        if (!isOpen(now.toLocalTime()))
+            return 0;
+        if (windowStart.equals(windowEnd))
+            return TimeUnit.DAYS.toMillis(1);
+        LocalDateTime end = now.toLocalDate().atTime(windowEnd);
+        if (!end.isAfter(now))
+            end = end.plusDays(1);
+        return now.until(end, ChronoUnit.MILLIS);
+
+    }
+
+    private boolean isOpen(LocalTime time) {
+
+        if (windowStart.equals(windowEnd))
+            return true;
+        if (windowStart.isBefore(windowEnd))
+            return !time.isBefore(windowStart) && time.isBefore(windowEnd);
+        // Past midnight
+        return !time.isBefore(windowStart) || time.isBefore(windowEnd);
+
+    }
+
+    /**
+     * @return the pause after some failures in a row, with a little jitter so it
+     * doesn't line up with anything.
+     */
+    private synchronized long backoff(int failures) {
+
+        long pause = minBackoffMillis << Math.min(failures - 1, 20);
+        pause = Math.min(pause, maxBackoffMillis);
+        return (long)(pause * (0.8 + 0.4 * random.nextDouble()));
+
+    }
+
+    private synchronized TokenBucket bucket() {
+
+        return bucket;
+
+    }
+
+    private synchronized int batchSize() {
+
+        return batchSize;
+
+    }
+
+    private synchronized long batchMillis() {
+
+        return batchMillis;
+
+    }
+
+    /**
+     * Hands out permits at a steady rate, saving up to a few while nobody asks.
+     */
+    private static final class TokenBucket {
+
+        private final double perNano;
+        private final double capacity;
+        private double tokens;
+        private long refilled = System.nanoTime();
+
+        TokenBucket(double perMinute, int burst) {
+            perNano = perMinute / TimeUnit.MINUTES.toNanos(1);
+            capacity = Math.max(1, burst);
+            tokens = capacity;
+        }
+
+        /**
+         * Takes a permit, waiting for one if there are none.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        synchronized void acquire() throws InterruptedException {
+            while (true) {
+                long now = System.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - refilled) * perNano);
+                refilled = now;
+                if (tokens >= 1) {
+                    tokens--;
+                    return;
+                }
+                long wait = (long)Math.ceil((1 - tokens) / perNano);
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,213 @@
+package land.spooky.media.models;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Remembers the ids matching recent searches, one entry per query and sort order, so
+ * going back to a search or paging through it never searches again. The least recently
+ * used entries are dropped once there are too many or they hold too many ids.
+ *
+ * Changes to the catalog only throw away the entries they could affect. A removed
+ * movie affects the entries it is in. A new movie affects the entries whose query it
+ * could match: it meets the conditions, and every word of the query is the start of
+ * one of its words or close to one of its title words. That is a little broader than
+ * the search itself, so no entry is ever kept that the search would now answer
+ * differently.
+ *
+ * Like the search indexes it is written from the JavaFX thread and read from the
+ * search thread, so every method is synchronized.
+ */
+public final class ResultCache implements Catalog.Listener {
+
+    /**
+     * The most entries to keep.
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    /**
+     * The most ids to keep over all entries, 8 MB worth.
+     */
+    private static final long MAX_IDS = 2 * 1024 * 1024;
+
+    private final CatalogColumns columns;
+
+    /**
+     * The entries by query and order, least recently used first.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long idCount = 0;
+
+    /**
+     * Goes up with every change, so a search that was running during one isn't cached.
+     */
+    private long stamp = 0;
+
+
+    /**
+     * Makes an empty cache.
+     * @param columns the columns of the catalog, which must hear about a change before
+     *                this cache does.
+     */
+    public ResultCache(CatalogColumns columns) {
+
+        this.columns = columns;
+
+    }
+
+    /**
+     * Gets the ids of a search, if they are cached.
+     * @param query what the user typed.
+     * @param order the order of the ids.
+     * @return the ids, which must not be changed, or null if they aren't cached.
+     */
+    public synchronized int[] get(String query, SortOrder order) {
+
+        Entry entry = entries.get(key(query, order));
+        return entry == null ? null : entry.ids;
+
+    }
+
+    /**
+     * @return a number to hand to put(), taken before searching.
+     */
+    public synchronized long stamp() {
+
+        return stamp;
+
+    }
+
+    /**
+     * Caches the ids of a search, unless the catalog changed while searching.
+     * @param query what the user typed.
+     * @param order the order of the ids.
+     * @param ids the ids.
+     * @param stamp what stamp() was before searching.
+     */
+    public synchronized void put(String query, SortOrder order, int[] ids, long stamp) {
+
+        if (stamp != this.stamp || ids.length > MAX_IDS)
+            return;
+
+        Entry old = entries.put(key(query, order), new Entry(CatalogQuery.parse(query), ids));
+        if (old != null)
+            idCount -= old.ids.length;
+        idCount += ids.length;
+
+        // Drop the least recently used until it fits again
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && (entries.size() > MAX_ENTRIES || idCount > MAX_IDS)) {
+            idCount -= iterator.next().ids.length;
+            iterator.remove();
+        }
+
+    }
+
+    /**
+     * Drops the entries a new movie could match.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie.
+     */
+    @Override
+    public synchronized void movieAdded(int id, MovieModel movie) {
+
+        stamp++;
+        if (entries.isEmpty())
+            return;
+
+        List<String> words = SearchIndex.tokenize(movie.getTitle() + " " + movie.getYear() + " "
+                + movie.getInfo() + " " + movie.getDescription());
+        List<String> titleWords = SearchIndex.tokenize(movie.getTitle());
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.query.matches(columns, id) && couldMatch(entry.query.getText(), words, titleWords)) {
+                idCount -= entry.ids.length;
+                iterator.remove();
+            }
+        }
+
+    }
+
+    /**
+     * Drops the entries a removed movie was in.
+     * @param id the id the movie had.
+     * @param movie the removed movie.
+     */
+    @Override
+    public synchronized void movieRemoved(int id, MovieModel movie) {
+
+        stamp++;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            for (int found : entry.ids) {
+                if (found == id) {
+                    idCount -= entry.ids.length;
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Checks if every word of a query is the start of a word of a movie, or close
+     * enough to one of its title words for the fuzzy search to find it.
+     * @param text the words of the query that aren't conditions.
+     * @param words every word of the movie.
+     * @param titleWords the words of its title.
+     * @return false if the movie surely doesn't match.
+     */
+    private static boolean couldMatch(String text, List<String> words, List<String> titleWords) {
+
+        for (String term : SearchIndex.tokenize(text)) {
+            boolean found = false;
+            for (int i = 0; i < words.size() && !found; i++)
+                found = words.get(i).startsWith(term);
+            int maxDistance = FuzzyIndex.maxDistance(term.length());
+            for (int i = 0; i < titleWords.size() && !found; i++)
+                found = FuzzyIndex.distance(term, titleWords.get(i), maxDistance) <= maxDistance;
+            if (!found)
+                return false;
+        }
+        return true;
+
+    }
+
+    /**
+     * Makes the key of an entry.
+     * @param query what the user typed.
+     * @param order the order of the ids.
+     * @return the key.
+     */
+    private static String key(String query, SortOrder order) {
+
+        return order.name() + ":" + query.trim();
+
+    }
+
+    /**
+     * The parsed query of a cached search and its ids.
+     */
+    private static final class Entry {
+
+        private final CatalogQuery query;
+        private final int[] ids;
+
+        private Entry(CatalogQuery query, int[] ids) {
+            this.query = query;
+            this.ids = ids;
+        }
+
+    }
+
+}
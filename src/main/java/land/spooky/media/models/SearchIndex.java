@@ -0,0 +1,283 @@
+package land.spooky.media.models;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * An inverted index over the title, year, info and description of every movie in the
+ * catalog. Every word maps to a sorted list of postings, and each posting packs the id
+ * of a movie together with the fields the word was found in.
+ *
+ * A query is split into words the same way. A movie matches if every query word is the
+ * start of some word of the movie, so "godf" still finds The Godfather like the old
+ * substring filter did. Matches are ranked by where the words were found, a title hit
+ * counting more than one in the description, and ties keep catalog order so the result
+ * is the same every time it is asked for. The index is read from the search thread and
+ * written from the JavaFX thread, so every method is synchronized.
+ */
+public final class SearchIndex implements Catalog.Listener {
+
+    /**
+     * Field bits kept in the low bits of each posting.
+     */
+    private static final int TITLE = 1, YEAR = 2, INFO = 4, DESCRIPTION = 8;
+    private static final int FIELD_BITS = 4;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    /**
+     * Every word, sorted so all the words starting with a prefix are next to each other.
+     */
+    private final TreeMap<String, IntList> postings = new TreeMap<>();
+
+    /**
+     * One more than the highest movie id seen, used to size the scoring arrays.
+     */
+    private int capacity = 0;
+
+
+    /**
+     * Indexes a movie.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie.
+     */
+    @Override
+    public synchronized void movieAdded(int id, MovieModel movie) {
+
+        capacity = Math.max(capacity, id + 1);
+        for (Map.Entry<String, Integer> word : words(movie).entrySet()) {
+            IntList list = postings.get(word.getKey());
+            if (list == null) {
+                list = new IntList();
+                postings.put(word.getKey(), list);
+            }
+            list.addSorted(id << FIELD_BITS | word.getValue());
+        }
+
+    }
+
+    /**
+     * Removes a movie from the index.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie, as it was indexed.
+     */
+    @Override
+    public synchronized void movieRemoved(int id, MovieModel movie) {
+
+        for (Map.Entry<String, Integer> word : words(movie).entrySet()) {
+            IntList list = postings.get(word.getKey());
+            if (list == null)
+                continue;
+            list.removeSorted(id << FIELD_BITS | word.getValue());
+            if (list.size() == 0)
+                postings.remove(word.getKey());
+        }
+
+    }
+
+    /**
+     * Finds the movies that match a query.
+     * @param query what the user typed.
+     * @return the ids of the matching movies, best match first.
+     */
+    public synchronized int[] search(String query) {
+
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty())
+            return new int[0];
+
+        // Start with the rarest term, so the later ones only have a few movies to check
+        List<Collection<IntList>> lists = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (String term : terms) {
+            Collection<IntList> termLists = postings.subMap(term, true, term + Character.MAX_VALUE, false).values();
+            int size = 0;
+            for (IntList list : termLists)
+                size += list.size();
+            lists.add(termLists);
+            sizes.add(size);
+        }
+        Integer[] order = new Integer[terms.size()];
+        for (int t = 0; t < order.length; t++)
+            order[t] = t;
+        Arrays.sort(order, (a, b) -> Integer.compare(sizes.get(a), sizes.get(b)));
+
+        int[] score = new int[capacity];
+        int[] matched = new int[capacity];
+        int[] best = new int[capacity];
+        IntList hits = new IntList();
+
+        for (int t = 0; t < order.length; t++) {
+            // Every word starting with the term. The best field per movie counts once.
+            Collection<IntList> termLists = lists.get(order[t]);
+            IntList touched = new IntList();
+            if (t > 0 && (long)hits.size() * termLists.size() < sizes.get(order[t])) {
+                // Few movies left, look each of them up instead of walking the postings
+                for (int h = 0; h < hits.size(); h++) {
+                    int id = hits.get(h);
+                    for (IntList list : termLists) {
+                        int index = list.search(id << FIELD_BITS);
+                        index = index < 0 ? -index - 1 : index;
+                        if (index < list.size() && list.get(index) >>> FIELD_BITS == id) {
+                            if (best[id] == 0)
+                                touched.add(id);
+                            best[id] = Math.max(best[id], weight(list.get(index) & FIELD_MASK));
+                        }
+                    }
+                }
+            } else {
+                for (IntList list : termLists) {
+                    for (int i = 0; i < list.size(); i++) {
+                        int posting = list.get(i);
+                        int id = posting >>> FIELD_BITS;
+                        if (matched[id] != t)
+                            continue;
+                        if (best[id] == 0)
+                            touched.add(id);
+                        best[id] = Math.max(best[id], weight(posting & FIELD_MASK));
+                    }
+                }
+            }
+
+            // Only movies that matched every term so far go on to the next one
+            for (int i = 0; i < touched.size(); i++) {
+                int id = touched.get(i);
+                matched[id] = t + 1;
+                score[id] += best[id];
+                best[id] = 0;
+            }
+            hits = touched;
+        }
+
+        // Rank, ties stay in id order
+        int[] ids = hits.toArray();
+        Arrays.sort(ids);
+        return rank(ids, score);
+
+    }
+
+    /**
+     * Sorts ids by score, highest first. Equal scores keep their order.
+     * @param ids the ids, in ascending order.
+     * @param score the score of each id.
+     * @return the ranked ids.
+     */
+    private static int[] rank(int[] ids, int[] score) {
+
+        // Counting sort on the score, which is small
+        int maxScore = 0;
+        for (int id : ids)
+            maxScore = Math.max(maxScore, score[id]);
+        int[] starts = new int[maxScore + 2];
+        for (int id : ids)
+            starts[maxScore - score[id] + 1]++;
+        for (int i = 1; i < starts.length; i++)
+            starts[i] += starts[i - 1];
+        int[] ranked = new int[ids.length];
+        for (int id : ids)
+            ranked[starts[maxScore - score[id]]++] = id;
+        return ranked;
+
+    }
+
+    /**
+     * How much a match in some fields counts.
+     * @param fields the field bits of a posting.
+     * @return the weight of the best field.
+     */
+    private static int weight(int fields) {
+
+        if ((fields & TITLE) != 0)
+            return 8;
+        if ((fields & YEAR) != 0)
+            return 4;
+        if ((fields & INFO) != 0)
+            return 2;
+        return 1;
+
+    }
+
+    /**
+     * Gets every word of a movie along with the fields it appears in.
+     * @param movie the movie.
+     * @return the words and their field bits.
+     */
+    private static Map<String, Integer> words(MovieModel movie) {
+
+        Map<String, Integer> words = new TreeMap<>();
+        addWords(words, movie.getTitle(), TITLE);
+        addWords(words, movie.getYear(), YEAR);
+        addWords(words, movie.getInfo(), INFO);
+        addWords(words, movie.getDescription(), DESCRIPTION);
+        return words;
+
+    }
+
+    /**
+     * Adds the words of one field.
+     * @param words the words found so far and their field bits.
+     * @param text the text of the field, may be null.
+     * @param field the bit of the field.
+     */
+    private static void addWords(Map<String, Integer> words, String text, int field) {
+
+        for (String word : tokenize(text))
+            words.merge(word, field, (a, b) -> a | b);
+
+    }
+
+    /**
+     * Splits text into lower case words without accents, so an accented title is found
+     * when it is typed without the accents.
+     * @param text the text, may be null.
+     * @return the words.
+     */
+    public static List<String> tokenize(String text) {
+
+        List<String> words = new ArrayList<>();
+        if (text == null)
+            return words;
+
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+
+    }
+
+    /**
+     * Lower cases text and strips its accents.
+     * @param text the text.
+     * @return the normalized text.
+     */
+    public static String normalize(String text) {
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK)
+                sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+
+    }
+
+}
@@ -0,0 +1,116 @@
+package land.spooky.media.models;
+
+import javafx.application.Platform;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Runs searches and suggestions on a background thread so typing never waits on the
+ * indexes, and builds the indexes on the same thread before the first one, see
+ * Catalog.prepare. Results are handed back on the JavaFX thread. If the catalog changed while
+ * a search was running, its ids may point at different movies now, so it is run again.
+ *
+ * Every new search makes the ones before it stale. A stale search that hasn't started
+ * yet is skipped, and one that was already running is thrown away when it finishes,
+ * so a slow query can never replace the results of a newer one.
+ */
+public final class SearchService {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "search");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * The number of the newest search and the newest suggestion request.
+     */
+    private final AtomicLong searchGeneration = new AtomicLong();
+    private final AtomicLong suggestGeneration = new AtomicLong();
+
+
+    /**
+     * Builds the indexes of a catalog in the background, so they are ready before the
+     * user searches. Must be called on the JavaFX thread.
+     * @param catalog the catalog.
+     * @param ready run on the JavaFX thread once they are ready.
+     */
+    public void prepare(Catalog catalog, Runnable ready) {
+
+        catalog.prepare(executor, Platform::runLater, ready);
+
+    }
+
+    /**
+     * Searches a catalog in the background. Must be called on the JavaFX thread.
+     * @param catalog the catalog.
+     * @param query what the user typed.
+     * @param order the order of the results.
+     * @param callback gets the matching movies in order on the JavaFX thread. Not
+     *                 called if a newer search was started in the meantime.
+     */
+    public void search(Catalog catalog, String query, SortOrder order, Consumer<List<MovieModel>> callback) {
+
+        run(catalog, searchGeneration, () -> catalog.searchIds(query, order), callback);
+
+    }
+
+    /**
+     * Finds suggestions for what the user typed so far. Must be called on the JavaFX
+     * thread.
+     * @param catalog the catalog.
+     * @param prefix what the user typed so far.
+     * @param limit the most suggestions.
+     * @param callback gets the suggested movies on the JavaFX thread. Not called if
+     *                 newer suggestions were asked for in the meantime.
+     */
+    public void suggest(Catalog catalog, String prefix, int limit, Consumer<List<MovieModel>> callback) {
+
+        run(catalog, suggestGeneration, () -> catalog.suggestIds(prefix, limit), callback);
+
+    }
+
+    /**
+     * Runs a lookup in the background unless it goes stale first, once the indexes of
+     * the catalog are ready.
+     * @param catalog the catalog the ids belong to.
+     * @param generation the counter of this kind of lookup.
+     * @param lookup finds the ids, on the search thread.
+     * @param callback gets the movies on the JavaFX thread.
+     */
+    private void run(Catalog catalog, AtomicLong generation, Supplier<int[]> lookup,
+                     Consumer<List<MovieModel>> callback) {
+
+        long mine = generation.incrementAndGet();
+        prepare(catalog, () -> {
+            if (generation.get() != mine)
+                return;
+            int version = catalog.getVersion();
+            executor.execute(() -> {
+                if (generation.get() != mine)
+                    return;
+                int[] ids = lookup.get();
+                Platform.runLater(() -> {
+                    if (generation.get() != mine)
+                        return;
+                    if (catalog.getVersion() != version)
+                        run(catalog, generation, lookup, callback);
+                    else
+                        callback.accept(catalog.getMovies(ids));
+                });
+            });
+        });
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package land.spooky.media.models;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Reads the metadata other media programs leave next to a movie, so a library that
+ * was already sorted out never waits on the network. For "Movie (1999).mkv" it looks
+ * at, in order:
+ *
+ *   Movie (1999).json   an object with the fields Metadata.fromJson reads
+ *   Movie (1999).nfo    a Kodi movie file
+ *   movie.nfo           the same, for a folder with one movie in it
+ *
+ * A .nfo file that isn't XML is searched for a link to IMDb, which is how many
+ * downloads come; that gives a partial answer the IMDb provider then looks up.
+ */
+public final class SidecarProvider implements MetadataProvider {
+
+    @Override
+    public String getName() {
+
+        return "sidecar";
+
+    }
+
+    @Override
+    public boolean isLocal() {
+
+        return true;
+
+    }
+
+    @Override
+    public Metadata lookup(Request request) throws IOException {
+
+        File media = request.getMedia();
+        File dir = media.getAbsoluteFile().getParentFile();
+        String name = media.getName();
+        String base = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+
+        File json = new File(dir, base + ".json");
+        if (json.isFile()) {
+            Object value = Json.parse(read(json));
+            if (!(value instanceof Map))
+                throw new IOException(json + " isn't a JSON object");
+            return Metadata.fromJson((Map<?, ?>)value);
+        }
+
+        for (File nfo : new File[] {new File(dir, base + ".nfo"), new File(dir, "movie.nfo")})
+            if (nfo.isFile())
+                return fromNfo(read(nfo));
+        return null;
+
+    }
+
+    /**
+     * Reads a Kodi .nfo file, or the link to IMDb in any other .nfo file.
+     * @param text the contents of the file.
+     * @return the metadata, or null if there is none in the file.
+     */
+    private static Metadata fromNfo(String text) {
+
+        Document doc = Jsoup.parse(text, "", Parser.xmlParser());
+        Element movie = doc.selectFirst("movie");
+        if (movie == null) {
+            String link = IMDbScraper.titleLink(text);
+            return link == null ? null : new Metadata(null, null, null, null, null, link);
+        }
+
+        long genres = 0;
+        for (Element genre : movie.select("> genre"))
+            for (String name : genre.text().split("/|,"))
+                if (InfoParser.genreBit(name.trim()) >= 0)
+                    genres |= 1L << InfoParser.genreBit(name.trim());
+        String runtime = text(movie, "runtime");
+        int minutes = runtime != null && runtime.matches("\\d+") ? Integer.parseInt(runtime)
+                : InfoParser.parseRuntime(runtime);
+        String info = InfoParser.formatInfo(text(movie, "mpaa"), minutes, genres, text(movie, "premiered"));
+
+        // Kodi has moved the IMDb id around between versions
+        String link = null;
+        Element imdb = movie.selectFirst("> uniqueid[type=imdb]");
+        for (String candidate : new String[] {imdb == null ? null : imdb.text(), text(movie, "imdbid"),
+                text(movie, "id")})
+            if (link == null)
+                link = IMDbScraper.titleLink(candidate);
+
+        Element thumb = movie.selectFirst("> thumb[aspect=poster]");
+        if (thumb == null)
+            thumb = movie.selectFirst("> thumb");
+        String poster = thumb == null || thumb.text().isEmpty() ? null : thumb.text();
+
+        String plot = text(movie, "plot");
+        return new Metadata(text(movie, "title"), text(movie, "year"), info,
+                plot != null ? plot : text(movie, "outline"), poster, link);
+
+    }
+
+    /**
+     * @return the text of a child of the movie element, or null if it has none.
+     */
+    private static String text(Element movie, String tag) {
+
+        Element child = movie.selectFirst("> " + tag);
+        return child == null || child.text().isEmpty() ? null : child.text();
+
+    }
+
+    private static String read(File file) throws IOException {
+
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+
+    }
+
+}
@@ -0,0 +1,98 @@
+package land.spooky.media.models;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Makes threads that ask for the same thing at the same time share one answer. The
+ * first thread to ask for a key does the work; any thread that asks for the key before
+ * it is done waits for that work instead of doing it again, and gets the same value or
+ * the same failure. Once it is done the key is forgotten, so a later ask does the work
+ * again; this coalesces, it doesn't cache.
+ *
+ * A batch import of two copies of the same movie fetches its page and poster once.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * The work done for a key.
+     */
+    public interface Work<V> {
+
+        V run() throws IOException;
+
+    }
+
+
+    /**
+     * Gets the value of a key, doing the work only if no other thread is doing it.
+     * @param key what is asked for.
+     * @param work gets the value, run on this thread if it runs at all.
+     * @return the value.
+     * @throws IOException if the work failed, here or on the thread that did it.
+     */
+    public V run(K key, Work<V> work) throws IOException {
+
+        calls.incrementAndGet();
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> leader = flights.putIfAbsent(key, flight);
+
+        if (leader != null) {
+            shared.incrementAndGet();
+            try {
+                return leader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + key, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException)e.getCause();
+                throw new IOException(e.getCause());
+            }
+        }
+
+        try {
+            V value = work.run();
+            flight.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+
+    }
+
+    /**
+     * @return how many times a value was asked for.
+     */
+    public long getCalls() {
+
+        return calls.get();
+
+    }
+
+    /**
+     * @return how many of those waited for another thread instead of doing the work,
+     * the fetches saved.
+     */
+    public long getShared() {
+
+        return shared.get();
+
+    }
+
+}
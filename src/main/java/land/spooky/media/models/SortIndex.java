@@ -0,0 +1,288 @@
+package land.spooky.media.models;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Keeps every sort order of the catalog ready as a permutation, an array of movie ids
+ * in that order. A new movie is put in its place with a binary search and a removed
+ * one is taken out the same way, so the orders never have to be sorted again. Showing
+ * a page of the whole catalog in some order is then just reading a slice of it.
+ *
+ * Titles are compared through collation keys made once per movie, so they sort the
+ * way the user's language does, without comparing strings character by character on
+ * every step. Years and runtimes that aren't known sort last. Ties go by id, so every
+ * movie has exactly one place in every order.
+ *
+ * Like the search indexes it is written from the JavaFX thread and read from the
+ * search thread, so every method is synchronized.
+ */
+public final class SortIndex implements Catalog.Listener {
+
+    private final Collator collator = Collator.getInstance();
+
+    private CollationKey[] titles = new CollationKey[16];
+    private int[] years = new int[16];
+    private int[] runtimes = new int[16];
+    private long[] added = new long[16];
+
+    /**
+     * The permutation of each sort order, by ordinal. Relevance has none.
+     */
+    private final IntList[] orders = new IntList[SortOrder.values().length];
+
+
+    /**
+     * Makes an empty index.
+     */
+    public SortIndex() {
+
+        for (SortOrder order : SortOrder.values())
+            if (order != SortOrder.RELEVANCE)
+                orders[order.ordinal()] = new IntList();
+
+    }
+
+    /**
+     * Puts a movie in its place in every order.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie.
+     */
+    @Override
+    public synchronized void movieAdded(int id, MovieModel movie) {
+
+        if (id >= titles.length) {
+            int length = Math.max(id + 1, titles.length * 2);
+            titles = Arrays.copyOf(titles, length);
+            years = Arrays.copyOf(years, length);
+            runtimes = Arrays.copyOf(runtimes, length);
+            added = Arrays.copyOf(added, length);
+        }
+
+        titles[id] = collator.getCollationKey(movie.getTitle() == null ? "" : movie.getTitle());
+        years[id] = InfoParser.parseYear(movie.getYear(), movie.getInfo());
+        runtimes[id] = InfoParser.parseRuntime(movie.getInfo());
+        added[id] = movie.getModified();
+
+        for (SortOrder order : SortOrder.values()) {
+            IntList ids = orders[order.ordinal()];
+            if (ids != null)
+                ids.insert(-find(order, id) - 1, id);
+        }
+
+    }
+
+    /**
+     * Fills an empty index with a whole catalog at once. Sorting everything in one go
+     * is much faster than putting the movies in their places one by one.
+     * @param movies the movie with each id, null for ids not in use.
+     */
+    public synchronized void addAll(List<MovieModel> movies) {
+
+        int count = 0;
+        for (int id = movies.size() - 1; id >= 0; id--) {
+            MovieModel movie = movies.get(id);
+            if (movie == null)
+                continue;
+            count++;
+            // Grows the columns on the first movie, the one with the highest id
+            if (id >= titles.length) {
+                int length = id + 1;
+                titles = Arrays.copyOf(titles, length);
+                years = Arrays.copyOf(years, length);
+                runtimes = Arrays.copyOf(runtimes, length);
+                added = Arrays.copyOf(added, length);
+            }
+            titles[id] = collator.getCollationKey(movie.getTitle() == null ? "" : movie.getTitle());
+            years[id] = InfoParser.parseYear(movie.getYear(), movie.getInfo());
+            runtimes[id] = InfoParser.parseRuntime(movie.getInfo());
+            added[id] = movie.getModified();
+        }
+
+        Integer[] ids = new Integer[count];
+        count = 0;
+        for (int id = 0; id < movies.size(); id++)
+            if (movies.get(id) != null)
+                ids[count++] = id;
+        for (SortOrder order : SortOrder.values()) {
+            if (order == SortOrder.RELEVANCE)
+                continue;
+            Arrays.sort(ids, (a, b) -> compare(order, a, b));
+            IntList permutation = new IntList(ids.length);
+            for (Integer id : ids)
+                permutation.add(id);
+            orders[order.ordinal()] = permutation;
+        }
+
+    }
+
+    /**
+     * Takes a movie out of every order.
+     * @param id the movie's id in the catalog.
+     * @param movie the movie, as it was added.
+     */
+    @Override
+    public synchronized void movieRemoved(int id, MovieModel movie) {
+
+        for (SortOrder order : SortOrder.values()) {
+            IntList ids = orders[order.ordinal()];
+            if (ids == null)
+                continue;
+            int index = find(order, id);
+            if (index >= 0)
+                ids.removeAt(index);
+        }
+        titles[id] = null;
+
+    }
+
+    /**
+     * @return the number of movies in the index.
+     */
+    public synchronized int size() {
+
+        return orders[SortOrder.TITLE.ordinal()].size();
+
+    }
+
+    /**
+     * Gets the movie at a position of an order.
+     * @param order the order, not relevance.
+     * @param index the position.
+     * @return the movie id.
+     */
+    public synchronized int idAt(SortOrder order, int index) {
+
+        return orders[order.ordinal()].get(index);
+
+    }
+
+    /**
+     * Copies every order, for writing them to disk on another thread.
+     * @return the movie ids of each order in that order, by ordinal, null for relevance.
+     */
+    public synchronized int[][] copyOrders() {
+
+        int[][] copy = new int[orders.length][];
+        for (int i = 0; i < orders.length; i++)
+            if (orders[i] != null)
+                copy[i] = orders[i].toArray();
+        return copy;
+
+    }
+
+    /**
+     * Puts some movies in an order. A handful of movies are simply sorted, many are
+     * picked out of the permutation in one pass instead.
+     * @param ids the movie ids, all in the index.
+     * @param order the order.
+     * @return the ids in that order, or the same array for relevance.
+     */
+    public synchronized int[] sort(int[] ids, SortOrder order) {
+
+        if (order == SortOrder.RELEVANCE || ids.length < 2)
+            return ids;
+
+        IntList permutation = orders[order.ordinal()];
+        if (ids.length * 16 < permutation.size()) {
+            Integer[] boxed = new Integer[ids.length];
+            for (int i = 0; i < ids.length; i++)
+                boxed[i] = ids[i];
+            Arrays.sort(boxed, (a, b) -> compare(order, a, b));
+            int[] sorted = new int[ids.length];
+            for (int i = 0; i < sorted.length; i++)
+                sorted[i] = boxed[i];
+            return sorted;
+        }
+
+        boolean[] wanted = new boolean[titles.length];
+        for (int id : ids)
+            wanted[id] = true;
+        int[] sorted = new int[ids.length];
+        int count = 0;
+        for (int i = 0; i < permutation.size() && count < sorted.length; i++)
+            if (wanted[permutation.get(i)])
+                sorted[count++] = permutation.get(i);
+        return sorted;
+
+    }
+
+    /**
+     * Finds where a movie is, or would go, in an order.
+     * @param order the order.
+     * @param id the movie id.
+     * @return the position, or (-(insertion point) - 1) if it isn't there.
+     */
+    private int find(SortOrder order, int id) {
+
+        IntList ids = orders[order.ordinal()];
+        int low = 0;
+        int high = ids.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = compare(order, ids.get(middle), id);
+            if (compare < 0)
+                low = middle + 1;
+            else if (compare > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -(low + 1);
+
+    }
+
+    /**
+     * Compares two movies in an order.
+     * @param order the order.
+     * @param a the first movie id.
+     * @param b the second movie id.
+     * @return negative if a comes first, positive if b does, 0 only if they are the same.
+     */
+    private int compare(SortOrder order, int a, int b) {
+
+        int compare = 0;
+        switch (order) {
+            case TITLE:
+                compare = titles[a].compareTo(titles[b]);
+                break;
+            case YEAR:
+                compare = compareKnown(years[a], years[b], true);
+                break;
+            case DATE_ADDED:
+                // Newest first
+                compare = Long.compare(added[b], added[a]);
+                break;
+            case RUNTIME:
+                compare = compareKnown(runtimes[a], runtimes[b], false);
+                break;
+            default:
+                break;
+        }
+        return compare != 0 ? compare : Integer.compare(a, b);
+
+    }
+
+    /**
+     * Compares two values where 0 means unknown, putting unknown values last.
+     * @param a the first value.
+     * @param b the second value.
+     * @param highestFirst true to put the highest value first.
+     * @return negative if a comes first, positive if b does.
+     */
+    private static int compareKnown(int a, int b, boolean highestFirst) {
+
+        if (a == 0 || b == 0)
+            return Boolean.compare(a == 0, b == 0);
+        return highestFirst ? Integer.compare(b, a) : Integer.compare(a, b);
+
+    }
+
+}
@@ -0,0 +1,39 @@
+package land.spooky.media.models;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * The orders the movies on the grid can be shown in. Relevance keeps the order of
+ * the search results, or the order the movies were added to the catalog when there
+ * is no search. Every other order is kept ready by the SortIndex.
+ */
+public enum SortOrder {
+
+    RELEVANCE("Relevance"),
+    TITLE("Title"),
+    YEAR("Year"),
+    DATE_ADDED("Date Added"),
+    RUNTIME("Runtime");
+
+    private final String label;
+
+
+    SortOrder(String label) {
+
+        this.label = label;
+
+    }
+
+    /**
+     * @return the name of the order as the user sees it.
+     */
+    public String getLabel() {
+
+        return label;
+
+    }
+
+}
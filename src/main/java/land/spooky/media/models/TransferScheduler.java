@@ -0,0 +1,431 @@
+package land.spooky.media.models;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Copies movies out of the target directory, any number at a time. Transfers wait in
+ * a queue, most urgent first and then in the order they were asked for, and a transfer
+ * starts once both the drive it reads from and the drive it writes to have room for it.
+ * Each drive takes one transfer at a time by default, since two copies fighting over
+ * the head of a hard drive are slower than the two one after the other; a fast drive
+ * can be given more.
+ *
+ * Every Transfer has its own progress, speed and time left, and can be cancelled while
+ * it waits or while it copies. Copies are exports, see FileCopier.export, so one that
+ * failed or was stopped by closing the app goes on where it stopped when it is asked
+ * for again. The list of transfers and everything about them only
+ * changes on the JavaFX thread; the copies run on threads of their own.
+ */
+public final class TransferScheduler {
+
+    /**
+     * How urgent a transfer is. More urgent transfers start first.
+     */
+    public enum Priority {
+
+        HIGH, NORMAL, LOW
+
+    }
+
+    /**
+     * Where a transfer is.
+     */
+    public enum State {
+
+        QUEUED("waiting"),
+        COPYING("copying"),
+        DONE("done"),
+        FAILED("failed"),
+        CANCELLED("cancelled");
+
+        private final String label;
+
+        State(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return what the state is called in the list of transfers.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return true if the transfer is over, one way or another.
+         */
+        public boolean isFinished() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+
+    }
+
+    /**
+     * Hears about transfers that are over, on the JavaFX thread.
+     */
+    public interface Listener {
+
+        /**
+         * A transfer is done, failed or was cancelled, and was taken off the list.
+         * @param transfer the transfer.
+         */
+        void finished(Transfer transfer);
+
+    }
+
+    private final Listener listener;
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final AtomicLong sequence = new AtomicLong();
+
+    // Only used on the JavaFX thread
+    private final ObservableList<Transfer> transfers = FXCollections.observableArrayList();
+    private final List<Transfer> queue = new ArrayList<>();
+    private final Map<Object, Integer> running = new HashMap<>();
+    private final Map<Object, Integer> limits = new HashMap<>();
+    private int defaultLimit = 1;
+    private volatile int maxParallel = 1;
+
+
+    /**
+     * @param listener told about each transfer that is over.
+     */
+    public TransferScheduler(Listener listener) {
+
+        this.listener = listener;
+
+    }
+
+    /**
+     * Sets how many transfers a drive takes at a time, unless it has its own limit.
+     * @param limit the number of transfers, at least 1.
+     */
+    public void setDefaultLimit(int limit) {
+
+        defaultLimit = Math.max(1, limit);
+        dispatch();
+
+    }
+
+    /**
+     * Sets how many transfers one drive takes at a time.
+     * @param anyFile a file or folder on the drive.
+     * @param limit the number of transfers, at least 1.
+     */
+    public void setLimit(File anyFile, int limit) {
+
+        limits.put(device(anyFile), Math.max(1, limit));
+        dispatch();
+
+    }
+
+    /**
+     * Lets large transfers copy with more than one thread, for drives that are faster
+     * with several requests at once. How many it uses is measured on each transfer, see
+     * FileCopier.export.
+     * @param maxParallel the most threads per transfer, 1 to copy in order.
+     */
+    public void setMaxParallel(int maxParallel) {
+
+        this.maxParallel = Math.max(1, maxParallel);
+
+    }
+
+    /**
+     * Queues a copy. It starts as soon as both drives have room for it. Two copies to the
+     * same file would write over each other's part file and journal, so if one to the
+     * target is already waiting or copying, that one is given back instead, made more
+     * urgent if this one is.
+     * @param source the file to copy.
+     * @param target where to copy it.
+     * @param priority how urgent it is.
+     * @return the transfer, or the one to the same target that isn't over yet.
+     */
+    public Transfer submit(File source, File target, Priority priority) {
+
+        File absolute = target.getAbsoluteFile();
+        for (Transfer queued : transfers)
+            if (queued.target.getAbsoluteFile().equals(absolute)) {
+                if (priority.compareTo(queued.priority) < 0)
+                    queued.setPriority(priority);
+                return queued;
+            }
+
+        Transfer transfer = new Transfer(source, target, priority, device(source),
+                device(absolute.getParentFile()));
+        transfers.add(transfer);
+        queue.add(transfer);
+        dispatch();
+        return transfer;
+
+    }
+
+    /**
+     * @return the transfers that aren't over, in the order they were asked for.
+     */
+    public ObservableList<Transfer> getTransfers() {
+
+        return FXCollections.unmodifiableObservableList(transfers);
+
+    }
+
+    /**
+     * @return true if a transfer is waiting or copying.
+     */
+    public boolean isBusy() {
+
+        return !transfers.isEmpty();
+
+    }
+
+    /**
+     * Starts every queued transfer whose drives have room, most urgent first.
+     */
+    private void dispatch() {
+
+        queue.sort(Comparator.comparing((Transfer transfer) -> transfer.priority)
+                .thenComparingLong(transfer -> transfer.order));
+        for (Iterator<Transfer> i = queue.iterator(); i.hasNext(); ) {
+            Transfer transfer = i.next();
+            if (!hasRoom(transfer.sourceDevice) || !hasRoom(transfer.targetDevice)
+                    || (transfer.sourceDevice.equals(transfer.targetDevice) && !hasRoom(transfer.sourceDevice, 2)))
+                continue;
+            i.remove();
+            take(transfer.sourceDevice, 1);
+            take(transfer.targetDevice, 1);
+            start(transfer);
+        }
+
+    }
+
+    private void start(Transfer transfer) {
+
+        transfer.state.set(State.COPYING);
+        transfer.status.set(State.COPYING.getLabel());
+        TransferTelemetry telemetry = new TransferTelemetry(sample -> {
+            if (transfer.state.get() != State.COPYING)
+                return;
+            transfer.progress.set(sample.getFraction());
+            transfer.status.set(sample.toString());
+        });
+        transfer.thread = new Thread(() -> {
+            State result;
+            Exception error = null;
+            telemetry.start(transfer.source.length());
+            try {
+                FileCopier.export(transfer.source, transfer.target, telemetry, maxParallel);
+                result = State.DONE;
+            } catch (ClosedByInterruptException e) {
+                result = State.CANCELLED;
+            } catch (IOException | RuntimeException e) {
+                result = Thread.currentThread().isInterrupted() ? State.CANCELLED : State.FAILED;
+                error = e;
+            } finally {
+                telemetry.stop();
+            }
+            // A failed export can go on later, a cancelled one is thrown away
+            if (result == State.CANCELLED)
+                ExportJournal.discard(transfer.target);
+            State state = result;
+            Exception failure = error;
+            Platform.runLater(() -> finish(transfer, state, failure));
+        }, "transfer-" + threads.incrementAndGet());
+        transfer.thread.setDaemon(true);
+        transfer.thread.start();
+
+    }
+
+    /**
+     * Takes a transfer that is over off the list, gives its drives their room back and
+     * starts whatever can go next.
+     */
+    private void finish(Transfer transfer, State state, Exception error) {
+
+        if (transfer.state.get().isFinished())
+            return;
+        if (transfer.state.get() == State.COPYING) {
+            take(transfer.sourceDevice, -1);
+            take(transfer.targetDevice, -1);
+        }
+        queue.remove(transfer);
+        transfer.error = error;
+        if (error != null)
+            error.printStackTrace();
+        transfer.state.set(state);
+        transfer.progress.set(state == State.DONE ? 1 : transfer.progress.get());
+        transfer.status.set(state.getLabel());
+        transfers.remove(transfer);
+        listener.finished(transfer);
+        dispatch();
+
+    }
+
+    private boolean hasRoom(Object device) {
+
+        return hasRoom(device, 1);
+
+    }
+
+    private boolean hasRoom(Object device, int slots) {
+
+        Integer limit = limits.get(device);
+        return running.getOrDefault(device, 0) + slots <= (limit == null ? defaultLimit : limit)
+                // A drive with a lower limit than a transfer needs still takes it alone
+                || running.getOrDefault(device, 0) == 0;
+
+    }
+
+    private void take(Object device, int slots) {
+
+        running.merge(device, slots, Integer::sum);
+
+    }
+
+    /**
+     * @return what tells the drive of a file apart, its file store if that can be found.
+     */
+    private static Object device(File file) {
+
+        File existing = file.getAbsoluteFile();
+        while (existing != null && !existing.exists())
+            existing = existing.getParentFile();
+        try {
+            if (existing != null)
+                return Files.getFileStore(existing.toPath());
+        } catch (IOException e) {
+            // Fall back to the folder below
+        }
+        return existing == null ? file.getAbsoluteFile() : existing;
+
+    }
+
+    /**
+     * One copy. Its properties only change on the JavaFX thread.
+     */
+    public final class Transfer {
+
+        private final File source;
+        private final File target;
+        private final Object sourceDevice;
+        private final Object targetDevice;
+        private final long order = sequence.incrementAndGet();
+        private Priority priority;
+        private Thread thread;
+        private Exception error;
+
+        private final ObjectProperty<State> state = new SimpleObjectProperty<>(State.QUEUED);
+        private final DoubleProperty progress = new SimpleDoubleProperty(0);
+        private final StringProperty status = new SimpleStringProperty(State.QUEUED.getLabel());
+
+        private Transfer(File source, File target, Priority priority, Object sourceDevice, Object targetDevice) {
+            this.source = source;
+            this.target = target;
+            this.priority = priority;
+            this.sourceDevice = sourceDevice;
+            this.targetDevice = targetDevice;
+        }
+
+        /**
+         * @return the file being copied.
+         */
+        public File getSource() {
+            return source;
+        }
+
+        /**
+         * @return where it is copied to.
+         */
+        public File getTarget() {
+            return target;
+        }
+
+        /**
+         * @return how urgent it is.
+         */
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Makes a waiting transfer more or less urgent. One that already started just
+         * keeps going.
+         * @param priority how urgent it is now.
+         */
+        public void setPriority(Priority priority) {
+            this.priority = priority;
+            dispatch();
+        }
+
+        /**
+         * Cancels the transfer. A copy in progress is stopped and what it copied so far
+         * deleted.
+         */
+        public void cancel() {
+            if (state.get() == State.QUEUED) {
+                finish(this, State.CANCELLED, null);
+                ExportJournal.discard(target);
+            }
+            else if (state.get() == State.COPYING)
+                // Interrupting the copy closes its channels, which ends it
+                thread.interrupt();
+        }
+
+        /**
+         * @return what went wrong, or null if nothing did.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * @return where the transfer is.
+         */
+        public ReadOnlyObjectProperty<State> stateProperty() {
+            return state;
+        }
+
+        /**
+         * @return how much is copied, from 0 to 1.
+         */
+        public ReadOnlyDoubleProperty progressProperty() {
+            return progress;
+        }
+
+        /**
+         * @return the speed and time left while copying, otherwise the state.
+         */
+        public ReadOnlyStringProperty statusProperty() {
+            return status;
+        }
+
+    }
+
+}
@@ -0,0 +1,239 @@
+package land.spooky.media.models;
+
+import javafx.application.Platform;
+
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Watches a file copy and tells the window how it is going a few times a second,
+ * however often the copy itself reports. The copying thread only stores how far it is;
+ * a timer samples that, works out the speed and the time left, and hands the sample
+ * to the JavaFX thread. There is only ever one sample waiting for the JavaFX thread:
+ * a newer one replaces it instead of queueing behind it, so a busy window never falls
+ * behind the copy.
+ *
+ * The speed is a moving average, so the time left doesn't jump around with every
+ * sample when the disk is busy with something else for a moment.
+ */
+public final class TransferTelemetry implements FileCopier.Progress {
+
+    /**
+     * How often the copy is sampled.
+     */
+    public static final long SAMPLE_MILLIS = 250;
+
+    /**
+     * How much of the average speed each sample makes up. Lower is smoother.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    private static final ScheduledExecutorService SAMPLER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "transfer-telemetry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Consumer<Sample> publish;
+    private final AtomicLong copied = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicReference<Sample> pending = new AtomicReference<>();
+
+    // Only used by the sampler, and by resumed before sampling matters
+    private long lastCopied;
+    private long lastNanos;
+    private double bytesPerSecond = -1;
+
+    private ScheduledFuture<?> sampling;
+
+
+    /**
+     * @param publish gets each sample, on the JavaFX thread.
+     */
+    public TransferTelemetry(Consumer<Sample> publish) {
+
+        this.publish = publish;
+
+    }
+
+    /**
+     * Starts sampling a copy.
+     * @param size the bytes it will copy.
+     */
+    public synchronized void start(long size) {
+
+        total.set(size);
+        copied.set(0);
+        lastCopied = 0;
+        lastNanos = System.nanoTime();
+        bytesPerSecond = -1;
+        sampling = SAMPLER.scheduleAtFixedRate(() -> sample(false), SAMPLE_MILLIS, SAMPLE_MILLIS,
+                TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * Stops sampling and publishes one last sample, of wherever the copy got to.
+     */
+    public synchronized void stop() {
+
+        if (sampling == null)
+            return;
+        sampling.cancel(false);
+        sampling = null;
+        sample(true);
+
+    }
+
+    /**
+     * Called by the copying thread. Only stores the numbers, the sampler does the rest.
+     */
+    @Override
+    public void copied(long copied, long total) {
+
+        this.total.set(total);
+        this.copied.set(copied);
+
+    }
+
+    /**
+     * Called by the copying thread when an export carries on from before. The bytes
+     * copied before don't count toward the speed.
+     */
+    @Override
+    public synchronized void resumed(long copied, long total) {
+
+        copied(copied, total);
+        lastCopied = copied;
+        lastNanos = System.nanoTime();
+
+    }
+
+    /**
+     * @return the bytes copied so far.
+     */
+    public long getCopied() {
+
+        return copied.get();
+
+    }
+
+    private synchronized void sample(boolean last) {
+
+        long now = System.nanoTime();
+        long bytes = copied.get();
+        long size = total.get();
+        double seconds = (now - lastNanos) / 1e9;
+        if (seconds > 0 && !last) {
+            double speed = (bytes - lastCopied) / seconds;
+            bytesPerSecond = bytesPerSecond < 0 ? speed : SMOOTHING * speed + (1 - SMOOTHING) * bytesPerSecond;
+        }
+        lastCopied = bytes;
+        lastNanos = now;
+
+        long remainingMillis = bytesPerSecond > 0 ? (long)((size - bytes) / bytesPerSecond * 1000) : -1;
+        publish(new Sample(bytes, size, Math.max(bytesPerSecond, 0), last ? 0 : remainingMillis));
+
+    }
+
+    /**
+     * Leaves a sample for the JavaFX thread, asking it to come for one only if none was
+     * waiting already.
+     */
+    private void publish(Sample sample) {
+
+        if (pending.getAndSet(sample) == null)
+            Platform.runLater(() -> publish.accept(pending.getAndSet(null)));
+
+    }
+
+    /**
+     * How a copy was going at one moment. It is immutable.
+     */
+    public static final class Sample {
+
+        private final long copied;
+        private final long total;
+        private final double bytesPerSecond;
+        private final long remainingMillis;
+
+        Sample(long copied, long total, double bytesPerSecond, long remainingMillis) {
+            this.copied = copied;
+            this.total = total;
+            this.bytesPerSecond = bytesPerSecond;
+            this.remainingMillis = remainingMillis;
+        }
+
+        /**
+         * @return the bytes copied.
+         */
+        public long getCopied() {
+            return copied;
+        }
+
+        /**
+         * @return the size of the copy.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return how much is copied, from 0 to 1.
+         */
+        public double getFraction() {
+            return total > 0 ? (double)copied / total : 0;
+        }
+
+        /**
+         * @return the average speed, in megabytes per second.
+         */
+        public double getMegabytesPerSecond() {
+            return bytesPerSecond / (1 << 20);
+        }
+
+        /**
+         * @return the time left at the average speed in milliseconds, or -1 before the
+         * speed is known.
+         */
+        public long getRemainingMillis() {
+            return remainingMillis;
+        }
+
+        /**
+         * @return when the copy should be done, or null before the speed is known.
+         */
+        public LocalTime getEta() {
+            return remainingMillis < 0 ? null : LocalTime.now().plusNanos(remainingMillis * 1000000);
+        }
+
+        /**
+         * @return the speed and time left, like "85.2 MB/s, 3:05 left, done at 21:14".
+         */
+        @Override
+        public String toString() {
+            if (remainingMillis < 0)
+                return String.format("%d%%", Math.round(getFraction() * 100));
+            long seconds = (remainingMillis + 999) / 1000;
+            String left = seconds >= 3600
+                    ? String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                    : String.format("%d:%02d", seconds / 60, seconds % 60);
+            LocalTime eta = getEta();
+            return String.format("%.1f MB/s, %s left, done at %02d:%02d", getMegabytesPerSecond(), left,
+                    eta.getHour(), eta.getMinute());
+        }
+
+    }
+
+}
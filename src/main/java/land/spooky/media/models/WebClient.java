@@ -0,0 +1,473 @@
+package land.spooky.media.models;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * The one way the app talks to the web. Scraping IMDb, downloading posters and asking
+ * metadata services all go through shared(), so they share its settings:
+ *
+ *   timeouts      to connect and for each read, so a dead server can't hang an import
+ *   compression   pages are asked for gzipped, which makes an IMDb page a fifth the size
+ *   retries       failed connections and 429 and 5xx answers are tried again after a
+ *                 backoff that doubles each time, with jitter so a batch of imports
+ *                 doesn't retry in lockstep; Retry-After is honored
+ *   host limits   at most a few requests to one host at a time, however many threads
+ *                 want one, so a large batch isn't throttled by IMDb
+ *   caching       with an HttpCache, answers are kept on disk, used without a request
+ *                 while Cache-Control max-age or Expires say they are fresh and
+ *                 revalidated after that, and offline mode answers from the cache alone
+ *   coalescing    threads asking for the same URL at once share one request
+ *
+ * Connections are kept alive and reused by HttpURLConnection, as long as every body is
+ * read to the end and closed, which this class always does. Downloads are streamed to
+ * disk through a channel; without a cache, a shared request has to be kept in memory
+ * for the threads sharing it, so downloads then go through a byte array.
+ */
+public final class WebClient {
+
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=\"?(\\d{1,9})");
+
+    /**
+     * An answer is never used for longer than a year without asking the server again.
+     */
+    private static final long MAX_FRESH_SECONDS = 365L * 24 * 60 * 60;
+
+    /**
+     * Pretend to be a browser, IMDb serves other clients a different page.
+     */
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/80.0.3987.149 Safari/537.36";
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private static final WebClient shared;
+    static {
+        // Keep more idle connections per host than the default 5, for the poster workers
+        if (System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", "8");
+        shared = new WebClient();
+    }
+
+    private volatile int connectTimeout = 10000;
+    private volatile int readTimeout = 20000;
+    private volatile int attempts = 3;
+    private volatile long backoffMillis = 500;
+    private volatile int perHost = 4;
+    private volatile HttpCache cache;
+    private volatile boolean offline = false;
+
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Body> flights = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "web-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    /**
+     * @return the client everything shares.
+     */
+    public static WebClient shared() {
+
+        return shared;
+
+    }
+
+    /**
+     * Sets the timeouts.
+     * @param connectMillis how long to wait for a connection.
+     * @param readMillis how long to wait for each read.
+     */
+    public void setTimeouts(int connectMillis, int readMillis) {
+
+        this.connectTimeout = connectMillis;
+        this.readTimeout = readMillis;
+
+    }
+
+    /**
+     * Sets how failed requests are retried.
+     * @param attempts how many times a request is tried, at least 1.
+     * @param backoffMillis the wait before the first retry, doubled for each one after.
+     */
+    public void setRetries(int attempts, long backoffMillis) {
+
+        this.attempts = Math.max(1, attempts);
+        this.backoffMillis = backoffMillis;
+
+    }
+
+    /**
+     * Sets how many requests may go to one host at a time. Only hosts asked after this
+     * get the new limit.
+     * @param perHost the limit, at least 1.
+     */
+    public void setPerHostLimit(int perHost) {
+
+        this.perHost = Math.max(1, perHost);
+
+    }
+
+    /**
+     * Sets the cache answers are kept in.
+     * @param cache the cache, or null to keep nothing.
+     */
+    public void setCache(HttpCache cache) {
+
+        this.cache = cache;
+
+    }
+
+    /**
+     * @return the cache answers are kept in, may be null.
+     */
+    public HttpCache getCache() {
+
+        return cache;
+
+    }
+
+    /**
+     * Sets whether the network is off limits. When it is, only cached answers are
+     * given and everything else fails.
+     * @param offline true to never make a request.
+     */
+    public void setOffline(boolean offline) {
+
+        this.offline = offline;
+
+    }
+
+    /**
+     * @return how many requests were asked for, and how many of them shared another
+     * thread's request for the same URL instead of making their own.
+     */
+    public long[] getFlightCounts() {
+
+        return new long[] {flights.getCalls(), flights.getShared()};
+
+    }
+
+    /**
+     * Gets a page as text.
+     * @param url the address of the page.
+     * @return the page, decoded with the charset the server names, or UTF-8.
+     * @throws IOException if it can't be had, a StatusException if the server said no.
+     */
+    public String getString(String url) throws IOException {
+
+        return request(url, (in, contentType) -> new String(readAll(in), charset(contentType)));
+
+    }
+
+    /**
+     * Downloads a file, streaming it to disk.
+     * @param url the address of the file.
+     * @param target where to save it, replaced if it is there.
+     * @throws IOException if it can't be had, a StatusException if the server said no.
+     */
+    public void download(String url, File target) throws IOException {
+
+        request(url, (body, contentType) -> {
+            try (ReadableByteChannel in = Channels.newChannel(body);
+                 FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = 0;
+                for (long moved; (moved = out.transferFrom(in, position, 1 << 20)) > 0; )
+                    position += moved;
+            }
+            return null;
+        });
+
+    }
+
+    /**
+     * Downloads a file on a background thread.
+     * @param url the address of the file.
+     * @param target where to save it.
+     * @return the download, which fails with the IOException if it couldn't be had.
+     */
+    public Future<File> downloadAsync(String url, File target) {
+
+        return executor.submit(() -> {
+            download(url, target);
+            return target;
+        });
+
+    }
+
+    /**
+     * Makes a GET request and reads its body. Threads asking for the same URL at the
+     * same time share one request.
+     * @param url the address.
+     * @param reader reads the body of a successful answer.
+     * @return what the reader made of it.
+     */
+    private <T> T request(String url, BodyReader<T> reader) throws IOException {
+
+        Body body = flights.run(url, () -> fetch(url));
+        try (InputStream in = body.open()) {
+            return reader.read(in, body.contentType);
+        }
+
+    }
+
+    /**
+     * Makes a GET request, trying again while it fails in a way that may pass. With a
+     * cache, a cached answer that is still fresh is used without a request, one that
+     * isn't is revalidated with If-None-Match and If-Modified-Since, and either is used
+     * as it is when offline or when the server can't be reached.
+     * @param url the address.
+     * @return the body of a successful answer, in the cache if there is one and in
+     * memory if not, so every thread that shares it can read it.
+     */
+    private Body fetch(String url) throws IOException {
+
+        HttpCache cache = this.cache;
+        HttpCache.Entry cached = cache == null ? null : cache.get(url);
+        if (offline) {
+            if (cached == null)
+                throw new IOException("Offline, and " + url + " isn't cached");
+            return new Body(cached);
+        }
+        if (cached != null && cached.isFresh())
+            return new Body(cached);
+
+        URL address = new URL(url);
+        Semaphore host = hosts.computeIfAbsent(address.getHost().toLowerCase(), name -> new Semaphore(perHost));
+        IOException failure = null;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            long wait = 0;
+            if (attempt > 0)
+                wait = ThreadLocalRandom.current().nextLong(Math.max(1, backoffMillis << (attempt - 1))) + 1;
+            if (failure instanceof StatusException && ((StatusException)failure).retryAfter > 0)
+                wait = Math.max(wait, ((StatusException)failure).retryAfter);
+            try {
+                Thread.sleep(wait);
+                host.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + url, e);
+            }
+
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection)address.openConnection();
+                connection.setConnectTimeout(connectTimeout);
+                connection.setReadTimeout(readTimeout);
+                connection.setRequestProperty("User-Agent", USER_AGENT);
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+                connection.setRequestProperty("Accept-Language", "en-US,en;q=0.9");
+                if (cached != null && cached.getEtag() != null)
+                    connection.setRequestProperty("If-None-Match", cached.getEtag());
+                if (cached != null && cached.getLastModified() != null)
+                    connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+
+                int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                    drain(connection);
+                    return new Body(cache.refresh(cached, freshUntil(connection)));
+                }
+                if (status / 100 == 2) {
+                    String cacheControl = connection.getHeaderField("Cache-Control");
+                    try (InputStream in = body(connection)) {
+                        if (cache == null || cacheControl != null && cacheControl.contains("no-store"))
+                            return new Body(readAll(in), connection.getContentType());
+                        return new Body(cache.put(url, connection.getHeaderField("ETag"),
+                                connection.getHeaderField("Last-Modified"), connection.getContentType(),
+                                freshUntil(connection), in));
+                    }
+                }
+
+                // Read the error body too, or the connection can't be reused
+                drain(connection);
+                failure = new StatusException(url, status, retryAfter(connection));
+                if (status != 429 && status / 100 != 5)
+                    throw failure;
+            } catch (StatusException e) {
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                host.release();
+            }
+        }
+
+        // An old answer beats none
+        if (cached != null) {
+            System.out.println("Using the cached " + url + ": " + failure.getMessage());
+            return new Body(cached);
+        }
+        throw failure;
+
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(65536);
+        byte[] buffer = new byte[16384];
+        for (int read; (read = in.read(buffer)) >= 0; )
+            bytes.write(buffer, 0, read);
+        return bytes.toByteArray();
+
+    }
+
+    /**
+     * @return the body of an answer, unzipped if it came gzipped.
+     */
+    private static InputStream body(HttpURLConnection connection) throws IOException {
+
+        InputStream in = connection.getInputStream();
+        return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(in, 16384) : in;
+
+    }
+
+    private static void drain(HttpURLConnection connection) {
+
+        try (InputStream error = connection.getErrorStream()) {
+            if (error != null)
+                while (error.read(new byte[4096]) >= 0)
+                    continue;
+        } catch (IOException e) {
+            // The connection just won't be reused
+        }
+
+    }
+
+    /**
+     * @return the time in milliseconds an answer may be used until without asking the
+     * server again, from its Cache-Control max-age or else its Expires, or 0 if it may not.
+     */
+    private static long freshUntil(HttpURLConnection connection) {
+
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            String directives = cacheControl.toLowerCase();
+            if (directives.contains("no-cache") || directives.contains("must-revalidate"))
+                return 0;
+            Matcher maxAge = MAX_AGE.matcher(directives);
+            if (maxAge.find())
+                return System.currentTimeMillis()
+                        + Math.min(Long.parseLong(maxAge.group(1)), MAX_FRESH_SECONDS) * 1000;
+        }
+        long expires = connection.getHeaderFieldDate("Expires", 0);
+        return Math.min(expires, System.currentTimeMillis() + MAX_FRESH_SECONDS * 1000);
+
+    }
+
+    /**
+     * @return how long Retry-After asks to wait in milliseconds, or 0 if it doesn't.
+     */
+    private static long retryAfter(HttpURLConnection connection) {
+
+        String value = connection.getHeaderField("Retry-After");
+        if (value == null || !value.trim().matches("\\d{1,5}"))
+            return 0;
+        return Math.min(60, Long.parseLong(value.trim())) * 1000;
+
+    }
+
+    private static Charset charset(String contentType) {
+
+        if (contentType != null) {
+            Matcher matcher = CHARSET.matcher(contentType);
+            if (matcher.find() && Charset.isSupported(matcher.group(1)))
+                return Charset.forName(matcher.group(1));
+        }
+        return StandardCharsets.UTF_8;
+
+    }
+
+    /**
+     * Reads the body of a successful answer.
+     */
+    private interface BodyReader<T> {
+
+        T read(InputStream body, String contentType) throws IOException;
+
+    }
+
+    /**
+     * The body of a successful answer, which every thread that shared the request reads.
+     */
+    private static final class Body {
+
+        private final HttpCache.Entry entry;
+        private final byte[] bytes;
+        private final String contentType;
+
+        private Body(HttpCache.Entry entry) {
+            this.entry = entry;
+            this.bytes = null;
+            this.contentType = entry.getContentType();
+        }
+
+        private Body(byte[] bytes, String contentType) {
+            this.entry = null;
+            this.bytes = bytes;
+            this.contentType = contentType;
+        }
+
+        private InputStream open() throws IOException {
+            return entry != null ? entry.open() : new ByteArrayInputStream(bytes);
+        }
+
+    }
+
+    /**
+     * A server answered with something other than success.
+     */
+    public static final class StatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+        private final long retryAfter;
+
+        private StatusException(String url, int status, long retryAfter) {
+            super(url + " answered " + status);
+            this.status = status;
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * @return the HTTP status, like 404.
+         */
+        public int getStatus() {
+            return status;
+        }
+
+    }
+
+}
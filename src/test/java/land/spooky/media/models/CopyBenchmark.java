@@ -0,0 +1,138 @@
+package land.spooky.media.models;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Compares the old export loop of MainModel.downloadMovie, streams with a 1 KB buffer,
+ * against FileCopier on a large file, both its plain copy and the journaled export that
+ * checksums every chunk. It writes a file of random bytes, copies it with each and
+ * prints the throughput. Run it with
+ *
+ *   mvn test-compile
+ *   java -cp target/test-classes:target/classes land.spooky.media.models.CopyBenchmark [GB] [from] [to] [threads]
+ *
+ * The size is 2 GB by default, both folders the system temp folder, and the parallel
+ * export may use up to 8 threads. Give a "to" on another drive to measure the buffered
+ * copy between drives. Make the file bigger than the memory of the computer, or drop
+ * the page cache between runs, to measure the disk and not the cache. This is a
+ * benchmark, not a test, and mvn test doesn't run it.
+ */
+public class CopyBenchmark {
+
+    public static void main(String[] args) throws IOException {
+
+        double gigabytes = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+        File from = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        File to = new File(args.length > 2 ? args[2] : from.getPath());
+        File source = new File(from, "copy-benchmark.source");
+        File target = new File(to, "copy-benchmark.target");
+        int parallel = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+        try {
+            long size = (long)(gigabytes * (1L << 30));
+            write(source, size);
+            System.out.println("Copying " + (size >> 20) + " MB from " + from + " to " + to);
+
+            // Each twice, the first run warms up the cache and the JIT
+            for (int run = 0; run < 2; run++) {
+                report("1 KB streams", size, time(() -> streams(source, target)));
+                check(source, target);
+                report("FileCopier", size, time(() -> FileCopier.copy(source, target, null)));
+                check(source, target);
+                target.delete();
+                report("export", size, time(() -> FileCopier.export(source, target, null)));
+                check(source, target);
+                target.delete();
+                report("export x" + parallel, size, time(() -> FileCopier.export(source, target, null, parallel)));
+                check(source, target);
+            }
+        } finally {
+            source.delete();
+            target.delete();
+            ExportJournal.discard(target);
+        }
+
+    }
+
+    /**
+     * The loop downloadMovie used to copy with.
+     */
+    private static void streams(File source, File target) throws IOException {
+
+        try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) > 0)
+                out.write(buffer, 0, len);
+        }
+
+    }
+
+    private interface Copy {
+
+        void run() throws IOException;
+
+    }
+
+    private static long time(Copy copy) throws IOException {
+
+        long start = System.nanoTime();
+        copy.run();
+        return System.nanoTime() - start;
+
+    }
+
+    private static void report(String name, long size, long nanos) {
+
+        System.out.println(String.format("%-13s %8.0f ms %8.1f MB/s", name, nanos / 1e6,
+                size / (double)(1 << 20) / (nanos / 1e9)));
+
+    }
+
+    /**
+     * Writes random bytes, so no file system can get away with storing less.
+     */
+    private static void write(File file, long size) throws IOException {
+
+        byte[] block = new byte[1 << 20];
+        new Random(1).nextBytes(block);
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length)
+                out.write(block, 0, (int)Math.min(block.length, size - written));
+        }
+
+    }
+
+    /**
+     * Compares the size and a few samples of the copy with the source.
+     */
+    private static void check(File source, File target) throws IOException {
+
+        if (source.length() != target.length())
+            throw new IOException("The copy is " + target.length() + " bytes instead of " + source.length());
+        try (RandomAccessFile a = new RandomAccessFile(source, "r"); RandomAccessFile b = new RandomAccessFile(target, "r")) {
+            Random random = new Random();
+            for (int i = 0; i < 64; i++) {
+                long position = (long)(random.nextDouble() * source.length());
+                a.seek(position);
+                b.seek(position);
+                if (a.read() != b.read())
+                    throw new IOException("The copy differs at byte " + position);
+            }
+        }
+
+    }
+
+}
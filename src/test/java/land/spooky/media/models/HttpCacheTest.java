@@ -0,0 +1,181 @@
+package land.spooky.media.models;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Checks the web client and its HttpCache without the network. A server on localhost
+ * answers with a saved IMDb page and counts its requests, to check that an answer is
+ * used without a request while its max-age says it is fresh, and revalidated with its
+ * ETag after that until a "not modified" makes it fresh again. The cache is also
+ * checked to evict the least recently used entries first, and to serve the saved pages
+ * to IMDbScraper when offline.
+ */
+public class HttpCacheTest extends TestCase {
+
+    private File dir;
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws IOException {
+
+        dir = Files.createTempDirectory("http-cache-test").toFile();
+
+    }
+
+    @Override
+    protected void tearDown() {
+
+        if (server != null)
+            server.stop(0);
+        WebClient.shared().setOffline(false);
+        WebClient.shared().setCache(null);
+        delete(dir);
+
+    }
+
+    public void testFreshAnswerIsNotAskedForAgain() throws IOException {
+
+        String page = IMDbPageScannerTest.fixture("shawshank.html");
+        WebClient client = client(page);
+
+        for (int i = 0; i < 3; i++)
+            assertEquals(page, client.getString(url("/fresh")));
+        assertEquals(1, requests.get());
+        assertEquals(0, notModified.get());
+
+    }
+
+    public void testStaleAnswerIsRevalidated() throws IOException {
+
+        String page = IMDbPageScannerTest.fixture("shawshank.html");
+        WebClient client = client(page);
+
+        // Asked for, revalidated twice, then fresh for a minute after the second 304
+        for (int i = 0; i < 4; i++)
+            assertEquals(page, client.getString(url("/stale")));
+        assertEquals(3, requests.get());
+        assertEquals(2, notModified.get());
+
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() throws IOException {
+
+        byte[] body = new byte[10000];
+        new Random(1).nextBytes(body);
+        HttpCache cache = new HttpCache(dir, 25000);
+        for (String url : new String[] {"http://a/", "http://b/"})
+            cache.put(url, null, null, "image/jpeg", 0, new ByteArrayInputStream(body));
+        assertTrue(cache.size() > 20000);
+
+        // Using a makes b the least recently used
+        assertNotNull(cache.get("http://a/"));
+        cache.put("http://c/", null, null, "image/jpeg", 0, new ByteArrayInputStream(body));
+        assertTrue(cache.size() <= 25000);
+        assertNotNull(cache.get("http://a/"));
+        assertNull(cache.get("http://b/"));
+        assertNotNull(cache.get("http://c/"));
+
+        // The order is kept on disk for the next start
+        assertNull(new HttpCache(dir, 25000).get("http://b/"));
+
+    }
+
+    public void testOfflineScrapeUsesCache() throws IOException {
+
+        HttpCache cache = new HttpCache(dir, 1L << 30);
+        WebClient.shared().setCache(cache);
+        WebClient.shared().setOffline(true);
+
+        for (String name : new String[] {"amelie.html", "shawshank.html", "no-poster.html"}) {
+            String page = IMDbPageScannerTest.fixture(name);
+            String link = "https://www.imdb.com/title/" + name + "/";
+            cache.put(link, null, null, "text/html; charset=utf-8", 0,
+                    new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+
+            Metadata expected = IMDbPageScanner.scan(page, link);
+            Metadata scraped = IMDbScraper.scrape(link);
+            assertEquals(name, expected.getTitle(), scraped.getTitle());
+            assertEquals(name, expected.getInfo(), scraped.getInfo());
+        }
+
+        try {
+            WebClient.shared().getString("https://www.imdb.com/title/tt0000000/");
+            fail("An uncached page was fetched offline");
+        } catch (IOException e) {
+            // Expected, offline there is nothing but the cache
+        }
+
+    }
+
+    /**
+     * Starts a server answering /fresh with a page that is fresh for a minute, and
+     * anything else with one that has to be revalidated until the second "not
+     * modified", which makes it fresh for a minute.
+     * @return a client caching in the temp folder.
+     */
+    private WebClient client(String page) throws IOException {
+
+        byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            boolean fresh = exchange.getRequestURI().getPath().equals("/fresh");
+            boolean matches = "\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"));
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            if (matches) {
+                exchange.getResponseHeaders().set("Cache-Control",
+                        notModified.incrementAndGet() < 2 ? "no-cache" : "max-age=60");
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.getResponseHeaders().set("Cache-Control", fresh ? "public, max-age=60" : "no-cache");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        WebClient client = new WebClient();
+        client.setCache(new HttpCache(dir, 1L << 30));
+        return client;
+
+    }
+
+    private String url(String path) {
+
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+
+    }
+
+    private static void delete(File file) {
+
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+
+    }
+
+}
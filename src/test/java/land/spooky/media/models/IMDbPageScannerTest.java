@@ -0,0 +1,102 @@
+package land.spooky.media.models;
+
+import junit.framework.TestCase;
+import org.jsoup.Jsoup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Reads the saved IMDb pages in src/test/resources/fixtures/imdb with IMDbPageScanner
+ * and checks every field it finds, and that the jsoup getters of IMDbScraper read the
+ * same from each page.
+ */
+public class IMDbPageScannerTest extends TestCase {
+
+    private static final String LINK = "https://www.imdb.com/title/tt0000000/";
+
+    public void testAmelie() throws IOException {
+
+        Metadata metadata = scan("amelie.html");
+        assertEquals("Le fabuleux destin d'Am\u00e9lie Poulain", metadata.getTitle());
+        assertEquals("2001", metadata.getYear());
+        assertEquals("R | 2h 2min | Comedy, Romance | 8 February 2002 (USA)", metadata.getInfo());
+        assertEquals("Despite being caught in her imaginative world, Am\u00e9lie, a young waitress, decides"
+                + " to help people find happiness. Her quest to spread joy leads her on a journey where she"
+                + " finds true love. See full summary \u00bb", metadata.getDescription());
+        assertEquals("https://m.media-amazon.com/images/M/MV5BNDg4NjM1YjMtYmNhZC00MjM0LWFiZmYtNGY1YjA3MzZm"
+                + "ODc5XkEyXkFqcGdeQXVyNDk3NzU2MTQ@._V1_UX182_CR0,0,182,268_AL_.jpg", metadata.getPosterUrl());
+        assertEquals(LINK, metadata.getLink());
+
+    }
+
+    public void testShawshank() throws IOException {
+
+        Metadata metadata = scan("shawshank.html");
+        assertEquals("The Shawshank Redemption", metadata.getTitle());
+        assertEquals("1994", metadata.getYear());
+        assertEquals("R | 2h 22min | Drama | 14 October 1994 (USA)", metadata.getInfo());
+        assertEquals("Two imprisoned men bond over a number of years, finding solace and eventual redemption"
+                + " through acts of common decency.", metadata.getDescription());
+        assertEquals("https://m.media-amazon.com/images/M/MV5BMDFkYTc0MGEtZmNhMC00ZDIzLWFmNTEtODM1ZmRlYWMw"
+                + "MWFmXkEyXkFqcGdeQXVyMTMxODk2OTU@._V1_UX182_CR0,0,182,268_AL_.jpg", metadata.getPosterUrl());
+
+    }
+
+    public void testNoPoster() throws IOException {
+
+        Metadata metadata = scan("no-poster.html");
+        assertEquals("An Obscure Short & Other Things", metadata.getTitle());
+        assertEquals("1987", metadata.getYear());
+        assertEquals("12min | Short", metadata.getInfo());
+        assertEquals("Add a Plot \u00bb", metadata.getDescription());
+        assertNull(metadata.getPosterUrl());
+
+    }
+
+    public void testSameAsScraper() throws IOException {
+
+        for (String name : new String[] {"amelie.html", "shawshank.html", "no-poster.html"}) {
+            String html = fixture(name);
+            Metadata scanned = IMDbPageScanner.scan(html, LINK);
+            Metadata dom = new IMDbScraper(Jsoup.parse(html, LINK), LINK).getMetadata();
+            assertEquals(name, dom.getTitle(), scanned.getTitle());
+            assertEquals(name, dom.getYear(), scanned.getYear());
+            assertEquals(name, dom.getInfo(), scanned.getInfo());
+            assertEquals(name, dom.getDescription(), scanned.getDescription());
+            assertEquals(name, dom.getPosterUrl(), scanned.getPosterUrl());
+        }
+
+    }
+
+    private static Metadata scan(String name) throws IOException {
+
+        return IMDbPageScanner.scan(fixture(name), LINK);
+
+    }
+
+    /**
+     * @return a saved page from the test resources.
+     */
+    static String fixture(String name) throws IOException {
+
+        try (InputStream in = IMDbPageScannerTest.class.getResourceAsStream("/fixtures/imdb/" + name)) {
+            assertNotNull("No fixture " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                out.write(buffer, 0, read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package land.spooky.media.models;
+
+import org.jsoup.Jsoup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * @author Daniel Gelber
+ * @version 1.0
+ * Created 2026-10-18
+ * Last Modified 2026-10-18
+ *
+ * Compares the two ways of reading an IMDb title page on the saved pages in
+ * src/test/resources/fixtures/imdb: a jsoup document with the getters of IMDbScraper,
+ * and the single pass of IMDbPageScanner. It checks both read the same metadata, then
+ * prints the time and the bytes allocated per page for each. Run it with
+ *
+ *   mvn test-compile
+ *   java -cp target/test-classes:target/classes:jsoup.jar land.spooky.media.models.IMDbScraperBenchmark
+ *
+ * An optional argument is the number of rounds, 2000 by default. This is a benchmark,
+ * not a test, and mvn test doesn't run it; IMDbPageScannerTest checks the fields.
+ */
+public class IMDbScraperBenchmark {
+
+    public static void main(String[] args) throws IOException {
+
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        File dir = new File("src/test/resources/fixtures/imdb");
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".html"));
+        if (files == null || files.length == 0) {
+            System.out.println("No fixtures in " + dir.getAbsolutePath());
+            return;
+        }
+
+        List<String> pages = new ArrayList<>();
+        for (File file : files) {
+            String html = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            pages.add(html);
+            String link = "https://www.imdb.com/title/" + file.getName() + "/";
+            Metadata dom = dom(html, link);
+            Metadata scanned = IMDbPageScanner.scan(html, link);
+            System.out.println(file.getName() + ": " + scanned.getTitle() + " | " + scanned.getYear() + " | "
+                    + scanned.getInfo() + " | " + scanned.getPosterUrl());
+            if (!same(dom, scanned))
+                System.out.println("  MISMATCH, the document reads: " + dom.getTitle() + " | " + dom.getYear()
+                        + " | " + dom.getInfo() + " | " + dom.getDescription() + " | " + dom.getPosterUrl());
+        }
+
+        // Warm both up before measuring
+        run(pages, rounds / 4, true);
+        run(pages, rounds / 4, false);
+        report("jsoup document", pages.size() * (long)rounds, run(pages, rounds, true));
+        report("single pass", pages.size() * (long)rounds, run(pages, rounds, false));
+
+    }
+
+    /**
+     * Reads every page some number of times.
+     * @return the nanoseconds and the bytes allocated.
+     */
+    private static long[] run(List<String> pages, int rounds, boolean dom) {
+
+        long bytes = allocated();
+        long start = System.nanoTime();
+        int found = 0;
+        for (int round = 0; round < rounds; round++)
+            for (String html : pages) {
+                Metadata metadata = dom ? dom(html, "") : IMDbPageScanner.scan(html, "");
+                if (metadata.getTitle() != null)
+                    found++;
+            }
+        long nanos = System.nanoTime() - start;
+        if (found < 0)
+            System.out.println(found);
+        return new long[] {nanos, allocated() - bytes};
+
+    }
+
+    private static void report(String name, long parsed, long[] result) {
+
+        System.out.println(String.format("%-15s %8.1f us/page %10.1f KB allocated/page", name,
+                result[0] / 1000.0 / parsed, result[1] < 0 ? Double.NaN : result[1] / 1024.0 / parsed));
+
+    }
+
+    private static Metadata dom(String html, String link) {
+
+        return new IMDbScraper(Jsoup.parse(html, link), link).getMetadata();
+
+    }
+
+    private static boolean same(Metadata a, Metadata b) {
+
+        return Objects.equals(a.getTitle(), b.getTitle()) && Objects.equals(a.getYear(), b.getYear())
+                && Objects.equals(a.getInfo(), b.getInfo()) && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getPosterUrl(), b.getPosterUrl());
+
+    }
+
+    /**
+     * @return the bytes this thread has allocated, or -1 where the JVM can't tell.
+     */
+    private static long allocated() {
+
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+
+    }
+
+}